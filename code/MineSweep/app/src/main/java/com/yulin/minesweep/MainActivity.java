@@ -1,42 +1,145 @@
 package com.yulin.minesweep;
 
+import android.content.DialogInterface;
 import android.content.Intent;
 import android.os.Bundle;
+import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
 import android.view.View;
+import android.widget.EditText;
+import android.widget.TextView;
+import android.widget.Toast;
 
 import com.yulin.minesweep.advance.AdvanceActivity;
+import com.yulin.minesweep.base.BoardCodes;
+import com.yulin.minesweep.endless.EndlessActivity;
+import com.yulin.minesweep.engine.stats.GameRecord;
+import com.yulin.minesweep.engine.stats.StatsStore;
 import com.yulin.minesweep.medium.MediumActivity;
+import com.yulin.minesweep.perf.Perf;
 import com.yulin.minesweep.simple.SimpleActivity;
+import com.yulin.minesweep.stats.Stats;
+
+import java.util.List;
+import java.util.Locale;
 
 public class MainActivity extends AppCompatActivity implements View.OnClickListener {
 
     private static final String TAG = "houchend_MainActivity";
 
+    // 胜率只统计最近的局数
+    private static final int RECENT_GAMES = 1000;
+
+    private TextView mTvStats;
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
         setContentView(R.layout.activity_main);
 
         findViewById(R.id.btn_level_simple).setOnClickListener(this);
+        findViewById(R.id.btn_level_simple_no_guess).setOnClickListener(this);
+        findViewById(R.id.btn_level_simple_practice).setOnClickListener(this);
         findViewById(R.id.btn_level_medium).setOnClickListener(this);
         findViewById(R.id.btn_level_advance).setOnClickListener(this);
+        findViewById(R.id.btn_level_endless).setOnClickListener(this);
+        findViewById(R.id.btn_level_board_code).setOnClickListener(this);
+
+        mTvStats = findViewById(R.id.tv_stats);
+    }
+
+    /**
+     * 在统计的后台线程中读取成绩，读完历史记录之后才执行，不阻塞界面
+     */
+    @Override
+    protected void onResume() {
+        super.onResume();
+        final StatsStore store = Stats.get(this);
+        store.execute(new Runnable() {
+            @Override
+            public void run() {
+                final String text = formatStats(store);
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        mTvStats.setText(text);
+                    }
+                });
+            }
+        });
+    }
+
+    private String formatStats(StatsStore store) {
+        StringBuilder sb = new StringBuilder();
+        int[] levels = {GameRecord.LEVEL_BEGINNER, GameRecord.LEVEL_BEGINNER_NO_GUESS,
+                GameRecord.LEVEL_INTERMEDIATE, GameRecord.LEVEL_EXPERT};
+        int[] names = {R.string.simple, R.string.simple_no_guess, R.string.medium, R.string.advance};
+        for (int i = 0; i < levels.length; i++) {
+            int games = store.getGameCount(levels[i]);
+            if (games == 0) {
+                continue;
+            }
+            List<GameRecord> best = store.getBestTimes(levels[i], 1);
+            String bestTime = best.isEmpty() ? "-" : String.format(Locale.US, "%.1f", best.get(0).getTimeMillis() / 1000f);
+            sb.append(getString(R.string.stats_summary, getString(names[i]), games,
+                    Math.round(store.getWinRate(levels[i], RECENT_GAMES) * 100), bestTime)).append('\n');
+        }
+        return sb.toString();
     }
 
     @Override
     public void onClick(View v) {
-        Log.d(TAG, "onClick: ");
+        if (Perf.LOG) {
+            Log.d(TAG, "onClick: ");
+        }
         int vid = v.getId();
         if (vid == R.id.btn_level_simple) {
             startActivity(SimpleActivity.class);
+        } else if (vid == R.id.btn_level_simple_no_guess) {
+            Intent intent = new Intent(this, SimpleActivity.class);
+            intent.putExtra(SimpleActivity.EXTRA_NO_GUESS, true);
+            startActivity(intent);
+        } else if (vid == R.id.btn_level_simple_practice) {
+            Intent intent = new Intent(this, SimpleActivity.class);
+            intent.putExtra(SimpleActivity.EXTRA_PRACTICE, true);
+            startActivity(intent);
         } else if (vid == R.id.btn_level_medium) {
             startActivity(MediumActivity.class);
         } else if (vid == R.id.btn_level_advance) {
             startActivity(AdvanceActivity.class);
+        } else if (vid == R.id.btn_level_endless) {
+            startActivity(EndlessActivity.class);
+        } else if (vid == R.id.btn_level_board_code) {
+            showBoardCodeDialog();
         }
     }
 
+    /**
+     * 输入别人分享的棋盘编码，按棋盘大小进入对应的页面开始同一局
+     */
+    private void showBoardCodeDialog() {
+        final EditText input = new EditText(this);
+        input.setSingleLine();
+        input.setHint(R.string.board_code);
+        new AlertDialog.Builder(this)
+                .setTitle(R.string.level_board_code)
+                .setView(input)
+                .setPositiveButton(R.string.board_code_start, new DialogInterface.OnClickListener() {
+                    @Override
+                    public void onClick(DialogInterface dialog, int which) {
+                        Intent intent = BoardCodes.createIntent(MainActivity.this, input.getText().toString());
+                        if (intent != null) {
+                            startActivity(intent);
+                        } else {
+                            Toast.makeText(MainActivity.this, R.string.board_code_invalid, Toast.LENGTH_SHORT).show();
+                        }
+                    }
+                })
+                .setNegativeButton(android.R.string.cancel, null)
+                .show();
+    }
+
     private void startActivity(Class clz) {
         startActivity(new Intent(this, clz));
     }
@@ -1,15 +1,43 @@
 package com.yulin.minesweep.advance;
 
-import android.os.Bundle;
+import com.yulin.minesweep.base.ZoomBoardActivity;
+import com.yulin.minesweep.engine.stats.GameRecord;
 
-import com.yulin.minesweep.R;
-import com.yulin.minesweep.base.BaseActivity;
+/**
+ * 专家：16行30列，99个雷。也可以通过Intent传入自定义的行列数和雷数
+ */
+public class AdvanceActivity extends ZoomBoardActivity {
 
-public class AdvanceActivity extends BaseActivity {
+    public static final String EXTRA_ROW_COUNT = "row_count";
+    public static final String EXTRA_COLUMN_COUNT = "column_count";
+    public static final String EXTRA_MINE_COUNT = "mine_count";
+
+    private static final int ROW_COUNT = 16;
+    private static final int COLUMN_COUNT = 30;
+    private static final int MINE_COUNT = 99;
+
+    @Override
+    protected int getLevel() {
+        if (getIntent().hasExtra(EXTRA_ROW_COUNT) || getIntent().hasExtra(EXTRA_COLUMN_COUNT)
+                || getIntent().hasExtra(EXTRA_MINE_COUNT)) {
+            return GameRecord.LEVEL_CUSTOM;
+        }
+        return GameRecord.LEVEL_EXPERT;
+    }
 
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_advance);
+    protected int getRowCount() {
+        return getIntent().getIntExtra(EXTRA_ROW_COUNT, ROW_COUNT);
     }
+
+    @Override
+    protected int getColumnCount() {
+        return getIntent().getIntExtra(EXTRA_COLUMN_COUNT, COLUMN_COUNT);
+    }
+
+    @Override
+    protected int getMineCount() {
+        return getIntent().getIntExtra(EXTRA_MINE_COUNT, MINE_COUNT);
+    }
+
 }
@@ -1,12 +1,21 @@
 package com.yulin.minesweep.base;
 
+import android.content.SharedPreferences;
 import android.os.Bundle;
 import android.support.v7.app.ActionBar;
 import android.support.v7.app.AppCompatActivity;
+import android.view.Menu;
 import android.view.MenuItem;
 
+import com.yulin.minesweep.R;
+import com.yulin.minesweep.i.IGridView;
+
 public class BaseActivity extends AppCompatActivity {
 
+    private static final String PREFS = "settings";
+    // 即时翻开，关闭时单击等双击超时才确认，见IGridView.setInstantOpen()
+    private static final String PREF_INSTANT_OPEN = "instant_open";
+
     @Override
     protected void onCreate(Bundle savedInstanceState) {
         super.onCreate(savedInstanceState);
@@ -17,12 +26,52 @@ public class BaseActivity extends AppCompatActivity {
         }
     }
 
+    /**
+     * @return 页面上的棋盘，不为null时菜单中显示"即时翻开"开关
+     */
+    protected IGridView getGridView() {
+        return null;
+    }
+
+    @Override
+    protected void onResume() {
+        super.onResume();
+        IGridView gridView = getGridView();
+        if (gridView != null) {
+            gridView.setInstantOpen(isInstantOpen());
+        }
+    }
+
+    private SharedPreferences getPrefs() {
+        return getSharedPreferences(PREFS, MODE_PRIVATE);
+    }
+
+    private boolean isInstantOpen() {
+        return getPrefs().getBoolean(PREF_INSTANT_OPEN, true);
+    }
+
+    @Override
+    public boolean onCreateOptionsMenu(Menu menu) {
+        if (getGridView() != null) {
+            getMenuInflater().inflate(R.menu.menu_board, menu);
+            menu.findItem(R.id.menu_instant_open).setChecked(isInstantOpen());
+        }
+        return super.onCreateOptionsMenu(menu);
+    }
+
     @Override
     public boolean onOptionsItemSelected(MenuItem item) {
         if (item.getItemId() == android.R.id.home) {
             finish();
             return true;
         }
+        if (item.getItemId() == R.id.menu_instant_open) {
+            boolean instantOpen = !item.isChecked();
+            item.setChecked(instantOpen);
+            getPrefs().edit().putBoolean(PREF_INSTANT_OPEN, instantOpen).apply();
+            getGridView().setInstantOpen(instantOpen);
+            return true;
+        }
 
         return super.onOptionsItemSelected(item);
     }
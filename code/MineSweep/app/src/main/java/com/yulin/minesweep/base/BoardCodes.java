@@ -0,0 +1,58 @@
+package com.yulin.minesweep.base;
+
+import android.content.Context;
+import android.content.Intent;
+import android.util.Log;
+
+import com.yulin.minesweep.advance.AdvanceActivity;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+import com.yulin.minesweep.medium.MediumActivity;
+import com.yulin.minesweep.simple.SimpleActivity;
+
+/**
+ * 按{@link BoardCode}编码中的棋盘大小选择页面：简单、中等、专家难度进入各自的页面，其他大小作为自定义棋盘进入专家页面
+ */
+public final class BoardCodes {
+
+    private static final String TAG = "houchend_BoardCodes";
+
+    private BoardCodes() {
+    }
+
+    /**
+     * @return 开始编码对应一局的Intent，编码无效时返回null
+     */
+    public static Intent createIntent(Context context, String code) {
+        code = code.trim();
+        Board board;
+        try {
+            board = BoardCode.decode(code);
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "createIntent: " + e.getMessage());
+            return null;
+        }
+        int rows = board.getRowCount();
+        int columns = board.getColumnCount();
+        int mines = board.getMineTotal();
+        Intent intent;
+        if (rows == 9 && columns == 9 && mines == 10) {
+            intent = new Intent(context, SimpleActivity.class);
+            intent.putExtra(SimpleActivity.EXTRA_BOARD_CODE, code);
+            return intent;
+        }
+        if (rows == 16 && columns == 16 && mines == 40) {
+            intent = new Intent(context, MediumActivity.class);
+        } else {
+            intent = new Intent(context, AdvanceActivity.class);
+            if (rows != 16 || columns != 30 || mines != 99) {
+                intent.putExtra(AdvanceActivity.EXTRA_ROW_COUNT, rows);
+                intent.putExtra(AdvanceActivity.EXTRA_COLUMN_COUNT, columns);
+                intent.putExtra(AdvanceActivity.EXTRA_MINE_COUNT, mines);
+            }
+        }
+        intent.putExtra(ZoomBoardActivity.EXTRA_BOARD_CODE, code);
+        return intent;
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.yulin.minesweep.base;
+
+import android.os.Process;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardPrefetcher;
+import com.yulin.minesweep.engine.solver.NoGuessGenerator;
+
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 整个进程共用1个{@link BoardPrefetcher}，在1个后台优先级的线程中生成棋盘。
+ * 各页面在onCreate时设置自己难度的生成方式，换难度时旧的棋盘被丢弃；{@link ZoomBoardActivity}关闭时清空队列，见{@link BoardPrefetcher#clear(Object)}
+ */
+public final class Prefetch {
+
+    private static BoardPrefetcher sPrefetcher;
+
+    private Prefetch() {
+    }
+
+    public static synchronized BoardPrefetcher get() {
+        if (sPrefetcher == null) {
+            sPrefetcher = new BoardPrefetcher(Executors.newSingleThreadExecutor(new ThreadFactory() {
+                @Override
+                public Thread newThread(final Runnable r) {
+                    return new Thread(new Runnable() {
+                        @Override
+                        public void run() {
+                            Process.setThreadPriority(Process.THREAD_PRIORITY_BACKGROUND);
+                            r.run();
+                        }
+                    }, "board-prefetch");
+                }
+            }));
+        }
+        return sPrefetcher;
+    }
+
+    /**
+     * @return 区分生成方式的key
+     */
+    public static String key(int rowCount, int columnCount, int mineTotal, boolean noGuess) {
+        return String.format(Locale.US, "%dx%dx%d%s", rowCount, columnCount, mineTotal, noGuess ? ":no_guess" : "");
+    }
+
+    /**
+     * 普通棋盘，雷在第1次翻开时才布下
+     */
+    public static class PlainFactory implements BoardPrefetcher.Factory {
+
+        private final int mRowCount;
+        private final int mColumnCount;
+        private final int mMineTotal;
+
+        public PlainFactory(int rowCount, int columnCount, int mineTotal) {
+            mRowCount = rowCount;
+            mColumnCount = columnCount;
+            mMineTotal = mineTotal;
+        }
+
+        @Override
+        public Board create(AtomicBoolean cancelled) {
+            return new Board(mRowCount, mColumnCount, mMineTotal);
+        }
+    }
+
+    /**
+     * 无需猜测的棋盘，拿到后翻开firstIndex即得到检查过的局面。在生成线程中依次检查候选，不占用其它线程
+     */
+    public static class NoGuessFactory implements BoardPrefetcher.Factory {
+
+        private final int mRowCount;
+        private final int mColumnCount;
+        private final int mMineTotal;
+        private final int mFirstIndex;
+        private final NoGuessGenerator mGenerator = new NoGuessGenerator();
+
+        public NoGuessFactory(int rowCount, int columnCount, int mineTotal, int firstIndex) {
+            mRowCount = rowCount;
+            mColumnCount = columnCount;
+            mMineTotal = mineTotal;
+            mFirstIndex = firstIndex;
+        }
+
+        @Override
+        public Board create(AtomicBoolean cancelled) {
+            return mGenerator.generate(mRowCount, mColumnCount, mMineTotal, mFirstIndex, new Random().nextLong(),
+                    cancelled);
+        }
+    }
+
+}
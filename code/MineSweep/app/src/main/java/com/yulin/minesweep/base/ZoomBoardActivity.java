@@ -0,0 +1,202 @@
+package com.yulin.minesweep.base;
+
+import android.content.ClipData;
+import android.content.ClipboardManager;
+import android.os.Bundle;
+import android.util.Log;
+import android.view.View;
+import android.widget.Button;
+import android.widget.Toast;
+
+import com.yulin.minesweep.R;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+import com.yulin.minesweep.engine.stats.GameRecord;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.stats.GameRecorder;
+import com.yulin.minesweep.stats.Stats;
+import com.yulin.minesweep.widget.ZoomBoardView;
+
+/**
+ * 用{@link ZoomBoardView}显示长方形棋盘的页面，子类只提供行列数和雷数
+ */
+public abstract class ZoomBoardActivity extends BaseActivity implements View.OnClickListener {
+
+    private static final String TAG = "houchend_ZoomBoardActivity";
+
+    /**
+     * {@link BoardCode}编码，通过Intent传入时开始编码对应的一局，见{@link BoardCodes}
+     */
+    public static final String EXTRA_BOARD_CODE = "board_code";
+
+    private static final String KEY_BOARD = "board";
+    private static final String KEY_GRID_STATUS = "grid_status";
+    private static final String KEY_ELAPSED_TIME = "elapsed_time";
+    private static final String KEY_CLICKS = "clicks";
+    private static final String KEY_DISCARDED = "discarded";
+    // Bundle经过Binder传递，整个事务不能超过1MB，更大的自定义棋盘不保存，重建时开始新的一局
+    private static final int MAX_SAVED_BOARD_SIZE = 256 * 1024;
+
+    private Button mBtnOpen, mBtnInsertFlag, mBtnNewGame, mBtnShare;
+    private ZoomBoardView mBoardView;
+    private GameRecorder mGameRecorder;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_zoom_board);
+
+        mBtnOpen = findViewById(R.id.btn_open);
+        mBtnInsertFlag = findViewById(R.id.btn_insert_flag);
+        mBtnNewGame = findViewById(R.id.btn_new_game);
+        mBtnShare = findViewById(R.id.btn_share);
+
+        mBtnOpen.setOnClickListener(this);
+        mBtnInsertFlag.setOnClickListener(this);
+        mBtnNewGame.setOnClickListener(this);
+        mBtnShare.setOnClickListener(this);
+
+        mBtnOpen.setSelected(true);
+        mBtnInsertFlag.setSelected(false);
+
+        mBoardView = findViewById(R.id.zoom_board_view);
+        Prefetch.get().setFactory(getPrefetchKey(), new Prefetch.PlainFactory(getRowCount(), getColumnCount(),
+                getMineCount()));
+        byte[] saved = savedInstanceState != null ? savedInstanceState.getByteArray(KEY_BOARD) : null;
+        String code = getIntent().getStringExtra(EXTRA_BOARD_CODE);
+        if (saved != null) {
+            // 旋转屏幕或进程被杀后重建，继续原来的一局和它的用时统计
+            setBoard(Board.fromByteArray(saved));
+            mGameRecorder.restore(savedInstanceState.getLong(KEY_ELAPSED_TIME),
+                    savedInstanceState.getInt(KEY_CLICKS), savedInstanceState.getBoolean(KEY_DISCARDED));
+            if (savedInstanceState.getInt(KEY_GRID_STATUS) == IGridView.STATUS_INSERT_FLAG) {
+                onClick(mBtnInsertFlag);
+            }
+        } else if (code != null) {
+            startBoardCode(code);
+        } else {
+            newBoard();
+        }
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        Board board = mBoardView.getBoard();
+        if (board != null && (long) board.getCellCount() * 3 / 8 < MAX_SAVED_BOARD_SIZE) {
+            outState.putByteArray(KEY_BOARD, board.toByteArray());
+            outState.putInt(KEY_GRID_STATUS, mBoardView.getStatus());
+            outState.putLong(KEY_ELAPSED_TIME, mGameRecorder.getElapsedTime());
+            outState.putInt(KEY_CLICKS, mGameRecorder.getClicks());
+            outState.putBoolean(KEY_DISCARDED, mGameRecorder.isDiscarded());
+        }
+    }
+
+    @Override
+    protected IGridView getGridView() {
+        return mBoardView;
+    }
+
+    private String getPrefetchKey() {
+        return Prefetch.key(getRowCount(), getColumnCount(), getMineCount(), false);
+    }
+
+    /**
+     * 开始新的一局，优先使用后台已经准备好的棋盘。1000 × 1000的自定义棋盘分配数组也要几毫秒，提前准备可以省掉
+     */
+    private void newBoard() {
+        Board board = Prefetch.get().take(getPrefetchKey());
+        if (board == null) {
+            board = new Board(getRowCount(), getColumnCount(), getMineCount());
+        }
+        setBoard(board);
+    }
+
+    private void setBoard(Board board) {
+        mGameRecorder = new GameRecorder(board, getLevel(), Stats.get(this));
+        board.addOnBoardDeltaListener(mGameRecorder);
+        mBoardView.setBoard(board);
+    }
+
+    /**
+     * 开始编码对应的一局，编码中有第1次翻开的方格时直接翻开，不计入统计。编码无效或大小不符时开始新的一局
+     */
+    private void startBoardCode(String code) {
+        Board board = null;
+        try {
+            board = BoardCode.decode(code.trim());
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "startBoardCode: " + e.getMessage());
+        }
+        if (board == null || board.getRowCount() != getRowCount() || board.getColumnCount() != getColumnCount()
+                || board.getMineTotal() != getMineCount()) {
+            Toast.makeText(this, R.string.board_code_invalid, Toast.LENGTH_SHORT).show();
+            newBoard();
+            return;
+        }
+        setBoard(board);
+        mGameRecorder.discard();
+        if (board.getFirstIndex() >= 0) {
+            board.open(board.getFirstIndex());
+        }
+    }
+
+    /**
+     * 把当前一局的编码复制到剪贴板
+     */
+    private void shareBoard() {
+        Board board = mBoardView.getBoard();
+        if (board == null) {
+            return;
+        }
+        String code = BoardCode.encode(board);
+        ClipboardManager clipboard = (ClipboardManager) getSystemService(CLIPBOARD_SERVICE);
+        clipboard.setPrimaryClip(ClipData.newPlainText(getString(R.string.board_code), code));
+        Toast.makeText(this, getString(R.string.board_code_copied, code), Toast.LENGTH_SHORT).show();
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        Stats.get(this).flush();
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        // 退出页面时释放准备好的棋盘，自定义大棋盘的数组不应一直留在进程共用的队列里；旋转屏幕重建时保留
+        if (isFinishing()) {
+            Prefetch.get().clear(getPrefetchKey());
+        }
+    }
+
+    /**
+     * @return 统计用的难度，{@link GameRecord}中的LEVEL_*
+     */
+    protected abstract int getLevel();
+
+    protected abstract int getRowCount();
+
+    protected abstract int getColumnCount();
+
+    protected abstract int getMineCount();
+
+    @Override
+    public void onClick(View v) {
+        int vid = v.getId();
+        if (vid == R.id.btn_open) {
+            mBtnOpen.setSelected(true);
+            mBtnInsertFlag.setSelected(false);
+            mBoardView.setStatus(IGridView.STATUS_OPEN);
+        } else if (vid == R.id.btn_insert_flag) {
+            mBtnOpen.setSelected(false);
+            mBtnInsertFlag.setSelected(true);
+            mBoardView.setStatus(IGridView.STATUS_INSERT_FLAG);
+        } else if (vid == R.id.btn_new_game) {
+            newBoard();
+        } else if (vid == R.id.btn_share) {
+            shareBoard();
+        }
+    }
+
+}
@@ -0,0 +1,60 @@
+package com.yulin.minesweep.endless;
+
+import android.os.Bundle;
+import android.view.View;
+import android.widget.Button;
+
+import com.yulin.minesweep.R;
+import com.yulin.minesweep.base.BaseActivity;
+import com.yulin.minesweep.engine.endless.EndlessBoard;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.widget.EndlessBoardView;
+
+import java.util.Random;
+
+public class EndlessActivity extends BaseActivity implements View.OnClickListener {
+
+    private static final String TAG = "houchend_EndlessActivit";
+
+    // 与专家难度接近的密度
+    private static final double DENSITY = 0.2;
+
+    private Button mBtnOpen, mBtnInsertFlag;
+    private EndlessBoardView mBoardView;
+
+    @Override
+    protected void onCreate(Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_endless);
+
+        mBtnOpen = findViewById(R.id.btn_open);
+        mBtnInsertFlag = findViewById(R.id.btn_insert_flag);
+
+        mBtnOpen.setOnClickListener(this);
+        mBtnInsertFlag.setOnClickListener(this);
+
+        mBtnOpen.setSelected(true);
+        mBtnInsertFlag.setSelected(false);
+
+        EndlessBoard board = new EndlessBoard(new Random().nextLong(), DENSITY);
+        // 原点周围不布雷，从原点开始
+        board.open(0, 0);
+        mBoardView = findViewById(R.id.endless_board_view);
+        mBoardView.setBoard(board);
+    }
+
+    @Override
+    public void onClick(View v) {
+        int vid = v.getId();
+        if (vid == R.id.btn_open) {
+            mBtnOpen.setSelected(true);
+            mBtnInsertFlag.setSelected(false);
+            mBoardView.setStatus(IGridView.STATUS_OPEN);
+        } else if (vid == R.id.btn_insert_flag) {
+            mBtnOpen.setSelected(false);
+            mBtnInsertFlag.setSelected(true);
+            mBoardView.setStatus(IGridView.STATUS_INSERT_FLAG);
+        }
+    }
+
+}
@@ -0,0 +1,36 @@
+package com.yulin.minesweep.i;
+
+import com.yulin.minesweep.engine.Board;
+
+/**
+ * 显示棋盘的控件，SimpleGridLayout和BoardView都实现本接口，Activity不需要关心具体是哪种显示方式
+ */
+public interface IGridView {
+
+    // 点击时的操作： 1. 翻开  2. 插旗
+    int STATUS_OPEN = 1;
+    int STATUS_INSERT_FLAG = 2;
+
+    int getStatus();
+
+    void setStatus(int status);
+
+    /**
+     * 即时模式（默认）抬起时立即响应单击，在已打开的方格上连续点2次为双击；关闭后单击等双击超时才确认。
+     * 由{@link com.yulin.minesweep.base.BaseActivity}按菜单中的设置调用
+     */
+    void setInstantOpen(boolean instantOpen);
+
+    /**
+     * 显示新的棋盘，行列数可以和之前不同
+     */
+    void setBoard(Board board);
+
+    Board getBoard();
+
+    /**
+     * 高亮提示的方格，-1表示取消提示。方格状态变化后提示自动消失
+     */
+    void showHint(int index);
+
+}
@@ -2,20 +2,21 @@ package com.yulin.minesweep.i;
 
 public interface OnGridOperatorListener {
 
-    // 点击含有雷的方格
-    void onClickBug();
+    /**
+     * 翻开方格
+     * @param index 方格的序号
+     * */
+    void onOpen(int index);
 
     /**
-     * 点击空白方格，即周围1个雷都没有的方格
-     * @param index 空白方格的序号
+     * 插旗或问号：默认变插旗，插旗变问号，问号变回默认
+     * @param index 方格的序号
      * */
-    void onClickEmpty(int index);
+    void onMark(int index);
 
     /**
      * 双击已点开方格，若周围雷数大于0，尝试自动打开所有方格
      * */
     void onDoubleTap(int index);
 
-    void onOpened(int index);
-
 }
@@ -1,15 +1,31 @@
 package com.yulin.minesweep.medium;
 
-import android.os.Bundle;
+import com.yulin.minesweep.base.ZoomBoardActivity;
+import com.yulin.minesweep.engine.stats.GameRecord;
 
-import com.yulin.minesweep.R;
-import com.yulin.minesweep.base.BaseActivity;
+/**
+ * 中等：16 × 16，40个雷
+ */
+public class MediumActivity extends ZoomBoardActivity {
 
-public class MediumActivity extends BaseActivity {
+    @Override
+    protected int getLevel() {
+        return GameRecord.LEVEL_INTERMEDIATE;
+    }
+
+    @Override
+    protected int getRowCount() {
+        return 16;
+    }
 
     @Override
-    protected void onCreate(Bundle savedInstanceState) {
-        super.onCreate(savedInstanceState);
-        setContentView(R.layout.activity_medium);
+    protected int getColumnCount() {
+        return 16;
     }
+
+    @Override
+    protected int getMineCount() {
+        return 40;
+    }
+
 }
@@ -0,0 +1,138 @@
+package com.yulin.minesweep.perf;
+
+import android.os.Build;
+import android.os.SystemClock;
+import android.os.Trace;
+
+import com.yulin.minesweep.BuildConfig;
+
+import java.util.Locale;
+
+/**
+ * 热点路径的性能统计，release包也可以使用
+ *
+ * 日志由编译期常量{@link #LOG}控制，release包中`if (Perf.LOG)`里的代码连同字符串拼接都被编译器去掉。
+ * 计时同时输出{@link Trace}区段，用systrace/Perfetto可以看到；计数只做几次long加法，不分配内存。
+ * 只在UI线程调用
+ */
+public final class Perf {
+
+    /**
+     * 是否输出调试日志，debug包为true。日志都写成`if (Perf.LOG) Log.d(...)`
+     */
+    public static final boolean LOG = BuildConfig.PERF_LOG;
+
+    // 统计项
+    // 每次操作打开的方格数
+    public static final int MOVE_CELLS = 0;
+    // 翻开、双击在Board中的耗时，包括连续打开空白方格
+    public static final int REVEAL = 1;
+    // 把变化的方格画到缓存上的耗时
+    public static final int CACHE_DRAW = 2;
+    // 每帧onDraw/dispatchDraw的耗时
+    public static final int FRAME_DRAW = 3;
+    // 从触摸事件发生到下一帧画完的时间，包括事件分发和等待双击超时、长按超时，精度为毫秒
+    public static final int INPUT_TO_PIXEL = 4;
+    // 从触摸事件发生到Board状态变化的时间，包括等待双击超时、长按超时，精度为毫秒
+    public static final int INPUT_TO_STATE = 5;
+
+    private static final int METRIC_COUNT = 6;
+
+    // Trace区段名，也是dump时的名字
+    private static final String[] NAMES = {"move_cells", "reveal", "cache_draw", "frame_draw", "input_to_pixel",
+            "input_to_state"};
+
+    // Trace.beginSection需要API 18
+    private static final boolean TRACE = Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN_MR2;
+
+    private static final long[] sCount = new long[METRIC_COUNT];
+    private static final long[] sSum = new long[METRIC_COUNT];
+    private static final long[] sMax = new long[METRIC_COUNT];
+    private static final long[] sLast = new long[METRIC_COUNT];
+
+    // 等待画到屏幕上的触摸事件时间，SystemClock.uptimeMillis()的时间基准，0表示没有
+    private static long sInputTime;
+
+    private Perf() {
+    }
+
+    /**
+     * 开始计时，并开始Trace区段
+     * @return 开始时间，传给{@link #end(int, long)}
+     */
+    public static long begin(int metric) {
+        if (TRACE) {
+            Trace.beginSection(NAMES[metric]);
+        }
+        return System.nanoTime();
+    }
+
+    /**
+     * 结束计时和Trace区段，记录耗时
+     */
+    public static void end(int metric, long start) {
+        record(metric, System.nanoTime() - start);
+        if (TRACE) {
+            Trace.endSection();
+        }
+    }
+
+    /**
+     * 记录1个值：耗时为纳秒，计数项为个数
+     */
+    public static void record(int metric, long value) {
+        sCount[metric]++;
+        sSum[metric] += value;
+        if (value > sMax[metric]) {
+            sMax[metric] = value;
+        }
+        sLast[metric] = value;
+    }
+
+    /**
+     * 处理点击时调用，下一帧画完时调用{@link #markFrameDrawn()}得到触摸事件到屏幕的延迟
+     * @param eventTime 触摸事件的时间，MotionEvent.getEventTime()
+     */
+    public static void markInput(long eventTime) {
+        if (sInputTime == 0) {
+            sInputTime = eventTime;
+        }
+    }
+
+    public static void markFrameDrawn() {
+        if (sInputTime != 0) {
+            record(INPUT_TO_PIXEL, (SystemClock.uptimeMillis() - sInputTime) * 1000000L);
+            sInputTime = 0;
+        }
+    }
+
+    public static void reset() {
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            sCount[i] = 0;
+            sSum[i] = 0;
+            sMax[i] = 0;
+            sLast[i] = 0;
+        }
+        sInputTime = 0;
+    }
+
+    /**
+     * 所有统计项的文本，每项1行，耗时单位为微秒。用于调试浮层和写入文件，会分配内存，不要在热点路径调用
+     */
+    public static String dump() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < METRIC_COUNT; i++) {
+            long count = sCount[i];
+            long avg = count == 0 ? 0 : sSum[i] / count;
+            if (i == MOVE_CELLS) {
+                sb.append(String.format(Locale.US, "%s: n %d, avg %d, max %d, last %d\n",
+                        NAMES[i], count, avg, sMax[i], sLast[i]));
+            } else {
+                sb.append(String.format(Locale.US, "%s: n %d, avg %dus, max %dus, last %dus\n",
+                        NAMES[i], count, avg / 1000, sMax[i] / 1000, sLast[i] / 1000));
+            }
+        }
+        return sb.toString();
+    }
+
+}
@@ -1,21 +1,138 @@
 package com.yulin.minesweep.simple;
 
+import android.content.ClipData;
+import android.content.ClipboardManager;
 import android.os.Bundle;
-import android.support.v7.app.ActionBar;
 import android.util.Log;
-import android.view.MenuItem;
+import android.view.Gravity;
 import android.view.View;
+import android.view.ViewGroup;
 import android.widget.Button;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import android.widget.Toast;
 
+import com.yulin.minesweep.BuildConfig;
 import com.yulin.minesweep.R;
 import com.yulin.minesweep.base.BaseActivity;
+import com.yulin.minesweep.base.BoardCodes;
+import com.yulin.minesweep.base.Prefetch;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+import com.yulin.minesweep.engine.BoardPrefetcher;
+import com.yulin.minesweep.engine.UndoHistory;
+import com.yulin.minesweep.engine.solver.NoGuessGenerator;
+import com.yulin.minesweep.engine.solver.ProbabilityEngine;
+import com.yulin.minesweep.engine.replay.MoveLog;
+import com.yulin.minesweep.engine.solver.Solver;
+import com.yulin.minesweep.engine.stats.GameRecord;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.perf.Perf;
+import com.yulin.minesweep.stats.GameRecorder;
+import com.yulin.minesweep.stats.Stats;
+import com.yulin.minesweep.widget.BoardView;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class SimpleActivity extends BaseActivity implements View.OnClickListener {
 
     private static final String TAG = "houchend_SimpleActivity";
 
-    private Button mBtnOpen, mBtnInsertFlag;
-    private SimpleGridLayout mGridLayout;
+    /**
+     * 棋盘显示模式，通过Intent传入，默认用BoardView
+     */
+    public static final String EXTRA_RENDER_MODE = "render_mode";
+    // 1个View画出整个棋盘
+    public static final int RENDER_MODE_CANVAS = 0;
+    // 每个方格1个SquareItem
+    public static final int RENDER_MODE_VIEWS = 1;
+
+    /**
+     * 是否生成无需猜测的棋盘，通过Intent传入，默认否
+     */
+    public static final String EXTRA_NO_GUESS = "no_guess";
+
+    /**
+     * 是否练习模式，通过Intent传入，默认否。练习模式下踩雷后可以撤销，不计入统计
+     */
+    public static final String EXTRA_PRACTICE = "practice";
+
+    /**
+     * {@link BoardCode}编码，通过Intent传入时开始编码对应的一局，不读取未完成的对局
+     */
+    public static final String EXTRA_BOARD_CODE = "board_code";
+
+    private static final int ROW_COUNT = 9;
+    private static final int COLUMN_COUNT = 9;
+    private static final int MINE_COUNT = 10;
+    // 无需猜测的棋盘固定从中心方格开始
+    private static final int FIRST_INDEX = ROW_COUNT / 2 * COLUMN_COUNT + COLUMN_COUNT / 2;
+
+    // 对局记录所在目录，在getFilesDir()下
+    private static final String REPLAY_DIR = "replay";
+    private static final String REPLAY_SUFFIX = ".mlog";
+    // 最多保留的对局记录数，开始新的一局时删除最旧的
+    private static final int MAX_REPLAY_FILES = 20;
+    // 未完成的对局，在getFilesDir()下，进程被杀或退出后下次进入时继续
+    private static final String SAVE_FILE = "simple.sav";
+    private static final String SAVE_FILE_NO_GUESS = "simple_no_guess.sav";
+    private static final String SAVE_FILE_PRACTICE = "simple_practice.sav";
+    // 性能统计，在getFilesDir()下，每次onPause时覆盖
+    private static final String PERF_FILE = "perf.txt";
+    // 调试浮层的刷新间隔
+    private static final long PERF_OVERLAY_INTERVAL = 500;
+
+    private static final String KEY_BOARD = "board";
+    private static final String KEY_GRID_STATUS = "grid_status";
+    private static final String KEY_ELAPSED_TIME = "elapsed_time";
+    private static final String KEY_CLICKS = "clicks";
+    private static final String KEY_DISCARDED = "discarded";
+    private static final String KEY_MOVE_LOG_FILE = "move_log_file";
+
+    private Button mBtnOpen, mBtnInsertFlag, mBtnHint, mBtnNewGame, mBtnUndo, mBtnRedo, mBtnShare;
+    private FrameLayout mGridContainer;
+    private IGridView mGridView;
+
+    // 求解和生成棋盘共用的线程池，第1次用到时创建
+    private ExecutorService mExecutor;
+    // 读写文件用的单线程，保证追加写入的顺序
+    private ExecutorService mIoExecutor;
+    private Solver mSolver;
+    private ProbabilityEngine mProbabilityEngine;
+    // 运行NoGuessGenerator.generate()的单线程，generate()会等待mExecutor中的任务，不能在mExecutor中调用
+    private ExecutorService mGenerateExecutor;
+    // 正在生成的无需猜测棋盘的取消标志和序号，序号不是最新的结果被丢弃
+    private AtomicBoolean mGenerateCancelled;
+    private int mGeneration;
+    private boolean mDestroyed;
+
+    // 当前对局的记录，在onPause时把新增的部分追加写入文件
+    private MoveLog mMoveLog;
+    private File mMoveLogFile;
+
+    private UndoHistory mUndoHistory;
+    private GameRecorder mGameRecorder;
+
+    // 显示性能统计的调试浮层，只在debug包中显示
+    private TextView mPerfOverlay;
+    private final Runnable mUpdatePerfOverlay = new Runnable() {
+        @Override
+        public void run() {
+            mPerfOverlay.setText(Perf.dump());
+            mPerfOverlay.postDelayed(this, PERF_OVERLAY_INTERVAL);
+        }
+    };
 
     @Override
     protected void onCreate(Bundle savedInstanceState) {
@@ -24,36 +141,573 @@ public class SimpleActivity extends BaseActivity implements View.OnClickListener
 
         mBtnOpen = findViewById(R.id.btn_open);
         mBtnInsertFlag = findViewById(R.id.btn_insert_flag);
+        mBtnHint = findViewById(R.id.btn_hint);
+        mBtnNewGame = findViewById(R.id.btn_new_game);
+        mBtnUndo = findViewById(R.id.btn_undo);
+        mBtnRedo = findViewById(R.id.btn_redo);
+        mBtnShare = findViewById(R.id.btn_share);
 
         mBtnOpen.setOnClickListener(this);
         mBtnInsertFlag.setOnClickListener(this);
+        mBtnHint.setOnClickListener(this);
+        mBtnNewGame.setOnClickListener(this);
+        mBtnUndo.setOnClickListener(this);
+        mBtnRedo.setOnClickListener(this);
+        mBtnShare.setOnClickListener(this);
 
         mBtnOpen.setSelected(true);
         mBtnInsertFlag.setSelected(false);
 
-        mGridLayout = findViewById(R.id.simple_grid_layout);
+        mPerfOverlay = findViewById(R.id.perf_overlay);
+        mGridContainer = findViewById(R.id.grid_container);
+        View gridView;
+        if (getIntent().getIntExtra(EXTRA_RENDER_MODE, RENDER_MODE_CANVAS) == RENDER_MODE_VIEWS) {
+            gridView = new SimpleGridLayout(this);
+        } else {
+            gridView = new BoardView(this);
+        }
+        mGridContainer.addView(gridView, new FrameLayout.LayoutParams(ViewGroup.LayoutParams.MATCH_PARENT,
+                ViewGroup.LayoutParams.MATCH_PARENT, Gravity.CENTER_VERTICAL));
+        mGridView = (IGridView) gridView;
+
+        // 在后台准备好下几局，点新游戏时直接取用
+        BoardPrefetcher.Factory factory = isNoGuess()
+                ? new Prefetch.NoGuessFactory(ROW_COUNT, COLUMN_COUNT, MINE_COUNT, FIRST_INDEX)
+                : new Prefetch.PlainFactory(ROW_COUNT, COLUMN_COUNT, MINE_COUNT);
+        Prefetch.get().setFactory(getPrefetchKey(), factory);
+
+        byte[] saved = savedInstanceState != null ? savedInstanceState.getByteArray(KEY_BOARD) : null;
+        String code = getIntent().getStringExtra(EXTRA_BOARD_CODE);
+        if (saved == null && code != null) {
+            startBoardCode(code);
+        } else if (saved != null) {
+            // 旋转屏幕或进程被杀后重建，直接从内存中的数据恢复，不读文件
+            long start = System.nanoTime();
+            // 对局记录接着原来的文件写
+            setBoard(Board.fromByteArray(saved), savedInstanceState.getString(KEY_MOVE_LOG_FILE));
+            // 接着重建前的用时和操作数统计
+            mGameRecorder.restore(savedInstanceState.getLong(KEY_ELAPSED_TIME),
+                    savedInstanceState.getInt(KEY_CLICKS), savedInstanceState.getBoolean(KEY_DISCARDED));
+            if (Perf.LOG) {
+                Log.d(TAG, "onCreate: restore " + saved.length + " bytes, cost "
+                        + (System.nanoTime() - start) / 1000 + "us");
+            }
+            if (savedInstanceState.getInt(KEY_GRID_STATUS) == IGridView.STATUS_INSERT_FLAG) {
+                onClick(mBtnInsertFlag);
+            }
+        } else {
+            loadSavedGame();
+        }
+    }
+
+    @Override
+    protected IGridView getGridView() {
+        return mGridView;
+    }
+
+    private boolean isNoGuess() {
+        return getIntent().getBooleanExtra(EXTRA_NO_GUESS, false);
+    }
+
+    private boolean isPractice() {
+        return getIntent().getBooleanExtra(EXTRA_PRACTICE, false);
+    }
+
+    private File getSaveFile() {
+        if (isPractice()) {
+            return new File(getFilesDir(), SAVE_FILE_PRACTICE);
+        }
+        return new File(getFilesDir(), isNoGuess() ? SAVE_FILE_NO_GUESS : SAVE_FILE);
+    }
+
+    /**
+     * @return 统计用的难度，无需猜测的棋盘单独排名
+     */
+    private int getLevel() {
+        return isNoGuess() ? GameRecord.LEVEL_BEGINNER_NO_GUESS : GameRecord.LEVEL_BEGINNER;
+    }
+
+    private String getPrefetchKey() {
+        return Prefetch.key(ROW_COUNT, COLUMN_COUNT, MINE_COUNT, isNoGuess());
+    }
+
+    /**
+     * 开始新的一局，优先使用后台已经准备好的棋盘，没有时才当场生成
+     */
+    private void newBoard() {
+        Board board = Prefetch.get().take(getPrefetchKey());
+        if (board != null) {
+            setBoard(board);
+            if (isNoGuess()) {
+                board.open(FIRST_INDEX);
+            }
+            mGridContainer.setVisibility(View.VISIBLE);
+            return;
+        }
+        if (isNoGuess()) {
+            generateNoGuessBoard();
+        } else {
+            setBoard(new Board(ROW_COUNT, COLUMN_COUNT, MINE_COUNT));
+        }
+    }
+
+    /**
+     * 开始编码对应的一局，编码中有第1次翻开的方格时直接翻开。不是本难度时交给对应的页面，编码无效时开始新的一局。
+     * 编码对应的棋盘可能已经玩过或被别人解过，不计入统计
+     */
+    private void startBoardCode(String code) {
+        Board board = null;
+        try {
+            board = BoardCode.decode(code.trim());
+        } catch (IllegalArgumentException e) {
+            Log.e(TAG, "startBoardCode: " + e.getMessage());
+        }
+        if (board != null && (board.getRowCount() != ROW_COUNT || board.getColumnCount() != COLUMN_COUNT
+                || board.getMineTotal() != MINE_COUNT)) {
+            startActivity(BoardCodes.createIntent(this, code));
+            finish();
+            return;
+        }
+        if (board == null) {
+            Toast.makeText(this, R.string.board_code_invalid, Toast.LENGTH_SHORT).show();
+            newBoard();
+            return;
+        }
+        setBoard(board);
+        mGameRecorder.discard();
+        if (board.getFirstIndex() >= 0) {
+            board.open(board.getFirstIndex());
+        }
+    }
+
+    /**
+     * 把当前一局的编码复制到剪贴板
+     */
+    private void shareBoard() {
+        Board board = mGridView.getBoard();
+        if (board == null) {
+            return;
+        }
+        String code = BoardCode.encode(board);
+        ClipboardManager clipboard = (ClipboardManager) getSystemService(CLIPBOARD_SERVICE);
+        clipboard.setPrimaryClip(ClipData.newPlainText(getString(R.string.board_code), code));
+        Toast.makeText(this, getString(R.string.board_code_copied, code), Toast.LENGTH_SHORT).show();
+    }
+
+    /**
+     * 在后台线程读取上次退出时未完成的对局，没有时开始新的一局。读取期间不显示棋盘
+     */
+    private void loadSavedGame() {
+        final File file = getSaveFile();
+        mGridContainer.setVisibility(View.INVISIBLE);
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                Board board = null;
+                if (file.exists()) {
+                    DataInputStream in = null;
+                    try {
+                        in = new DataInputStream(new FileInputStream(file));
+                        byte[] data = new byte[(int) file.length()];
+                        in.readFully(data);
+                        board = Board.fromByteArray(data);
+                    } catch (IOException | IllegalArgumentException e) {
+                        Log.e(TAG, "loadSavedGame: ", e);
+                    } finally {
+                        if (in != null) {
+                            try {
+                                in.close();
+                            } catch (IOException ignored) {
+                            }
+                        }
+                    }
+                }
+                final Board result = board;
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDestroyed) {
+                            return;
+                        }
+                        if (result != null && result.getStatus() == Board.STATUS_PLAYING) {
+                            setBoard(result);
+                            // 文件中没有之前的用时，继续玩但不计入统计
+                            mGameRecorder.discard();
+                        } else {
+                            newBoard();
+                        }
+                        if (mGridView.getBoard() != null) {
+                            mGridContainer.setVisibility(View.VISIBLE);
+                        }
+                    }
+                });
+            }
+        });
+    }
+
+    /**
+     * 保存未完成的对局：在UI线程压缩成字节数组，交给后台线程写入临时文件后改名替换，写到一半被杀不会损坏旧文件。
+     * 对局已经结束或还没有开始时删除文件
+     */
+    private void saveGame() {
+        Board board = mGridView.getBoard();
+        if (board == null) {
+            return;
+        }
+        final File file = getSaveFile();
+        final byte[] data = board.getStatus() == Board.STATUS_PLAYING && board.isMinesPlaced()
+                ? board.toByteArray() : null;
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                if (data == null) {
+                    file.delete();
+                    return;
+                }
+                File temp = new File(file.getPath() + ".tmp");
+                OutputStream out = null;
+                try {
+                    out = new FileOutputStream(temp);
+                    out.write(data);
+                    out.close();
+                    out = null;
+                    if (!temp.renameTo(file)) {
+                        Log.e(TAG, "saveGame: rename failed");
+                    }
+                } catch (IOException e) {
+                    Log.e(TAG, "saveGame: ", e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onSaveInstanceState(Bundle outState) {
+        super.onSaveInstanceState(outState);
+        Board board = mGridView.getBoard();
+        if (board != null) {
+            outState.putByteArray(KEY_BOARD, board.toByteArray());
+            outState.putInt(KEY_GRID_STATUS, mGridView.getStatus());
+            outState.putLong(KEY_ELAPSED_TIME, mGameRecorder.getElapsedTime());
+            outState.putInt(KEY_CLICKS, mGameRecorder.getClicks());
+            outState.putBoolean(KEY_DISCARDED, mGameRecorder.isDiscarded());
+            outState.putString(KEY_MOVE_LOG_FILE, mMoveLogFile.getName());
+        }
+    }
+
+    private void setBoard(Board board) {
+        setBoard(board, null);
+    }
+
+    /**
+     * @param moveLogFile 页面重建前同一局的对局记录文件名，null表示新的一局，新建记录文件
+     */
+    private void setBoard(Board board, String moveLogFile) {
+        flushMoveLog();
+        mGridView.setBoard(board);
+        File replayDir = new File(getFilesDir(), REPLAY_DIR);
+        if (moveLogFile != null) {
+            mMoveLog = MoveLog.resume(board);
+            mMoveLogFile = new File(replayDir, moveLogFile);
+        } else {
+            mMoveLog = new MoveLog(board);
+            mMoveLogFile = new File(replayDir, System.currentTimeMillis() + REPLAY_SUFFIX);
+            pruneReplays(replayDir);
+        }
+        mGameRecorder = new GameRecorder(board, getLevel(), Stats.get(this));
+        if (isPractice()) {
+            mGameRecorder.discard();
+        }
+        board.addOnBoardDeltaListener(mGameRecorder);
+        mUndoHistory = new UndoHistory(board);
+        mUndoHistory.setPractice(isPractice());
+    }
+
+    /**
+     * 在后台线程删除最旧的对局记录，加上即将写入的新记录不超过{@link #MAX_REPLAY_FILES}个。文件名是开始时间，按名字排序即按时间排序
+     */
+    private void pruneReplays(final File dir) {
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                File[] files = dir.listFiles();
+                if (files == null || files.length < MAX_REPLAY_FILES) {
+                    return;
+                }
+                Arrays.sort(files, new Comparator<File>() {
+                    @Override
+                    public int compare(File a, File b) {
+                        return a.getName().compareTo(b.getName());
+                    }
+                });
+                int excess = files.length - (MAX_REPLAY_FILES - 1);
+                for (int i = 0; i < excess; i++) {
+                    if (files[i].getName().endsWith(REPLAY_SUFFIX) && !files[i].delete()) {
+                        Log.e(TAG, "pruneReplays: delete failed " + files[i]);
+                    }
+                }
+            }
+        });
+    }
+
+    private ExecutorService getIoExecutor() {
+        if (mIoExecutor == null) {
+            mIoExecutor = Executors.newSingleThreadExecutor();
+        }
+        return mIoExecutor;
+    }
+
+    /**
+     * 把对局记录新增的部分交给后台线程追加写入文件
+     */
+    private void flushMoveLog() {
+        if (mMoveLog == null) {
+            return;
+        }
+        final byte[] pending = mMoveLog.drainPending();
+        final File file = mMoveLogFile;
+        if (pending.length == 0) {
+            return;
+        }
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                file.getParentFile().mkdirs();
+                OutputStream out = null;
+                try {
+                    out = new FileOutputStream(file, true);
+                    out.write(pending);
+                } catch (IOException e) {
+                    Log.e(TAG, "flushMoveLog: ", e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private ExecutorService getExecutor() {
+        if (mExecutor == null) {
+            mExecutor = Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors());
+        }
+        return mExecutor;
+    }
+
+    private ExecutorService getGenerateExecutor() {
+        if (mGenerateExecutor == null) {
+            mGenerateExecutor = Executors.newSingleThreadExecutor();
+        }
+        return mGenerateExecutor;
+    }
+
+    /**
+     * 在后台线程生成无需猜测的棋盘，第1次点击固定为中心方格，生成后自动翻开。生成期间不显示棋盘，新游戏按钮不可用。
+     * 每次生成用自己的生成器和取消标志，再次生成或页面销毁时取消上一次，过期的结果被丢弃
+     */
+    private void generateNoGuessBoard() {
+        mGridContainer.setVisibility(View.INVISIBLE);
+        mBtnNewGame.setEnabled(false);
+        if (mGenerateCancelled != null) {
+            mGenerateCancelled.set(true);
+        }
+        final AtomicBoolean cancelled = new AtomicBoolean();
+        mGenerateCancelled = cancelled;
+        final int generation = ++mGeneration;
+        final NoGuessGenerator generator = new NoGuessGenerator(getExecutor(),
+                Runtime.getRuntime().availableProcessors());
+        final int firstIndex = FIRST_INDEX;
+        final long seed = new Random().nextLong();
+        getGenerateExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                long start = System.nanoTime();
+                final Board board = generator.generate(ROW_COUNT, COLUMN_COUNT, MINE_COUNT, firstIndex, seed,
+                        cancelled);
+                if (Perf.LOG) {
+                    Log.d(TAG, "generateNoGuessBoard: checked " + generator.getCheckedCount()
+                            + ", cost " + (System.nanoTime() - start) / 1000 + "us");
+                }
+                if (cancelled.get()) {
+                    return;
+                }
+                runOnUiThread(new Runnable() {
+                    @Override
+                    public void run() {
+                        if (mDestroyed || generation != mGeneration) {
+                            return;
+                        }
+                        mBtnNewGame.setEnabled(true);
+                        // 找不到时退回普通随机棋盘，不计入无需猜测的统计
+                        Board result = board != null ? board : new Board(ROW_COUNT, COLUMN_COUNT, MINE_COUNT);
+                        setBoard(result);
+                        if (board == null) {
+                            mGameRecorder.discard();
+                        }
+                        result.open(firstIndex);
+                        mGridContainer.setVisibility(View.VISIBLE);
+                    }
+                });
+            }
+        });
     }
 
     @Override
     protected void onResume() {
         super.onResume();
-        Log.d(TAG, "onResume: ");
+        if (Perf.LOG) {
+            Log.d(TAG, "onResume: ");
+        }
+        if (BuildConfig.PERF_OVERLAY) {
+            mPerfOverlay.setVisibility(View.VISIBLE);
+            mPerfOverlay.post(mUpdatePerfOverlay);
+        }
+    }
+
+    @Override
+    protected void onPause() {
+        super.onPause();
+        flushMoveLog();
+        saveGame();
+        Stats.get(this).flush();
+        dumpPerf();
+        if (BuildConfig.PERF_OVERLAY) {
+            mPerfOverlay.removeCallbacks(mUpdatePerfOverlay);
+        }
+    }
+
+    /**
+     * 把性能统计写入getFilesDir()下的文件，用adb取出。统计在UI线程格式化，写文件在后台线程
+     */
+    private void dumpPerf() {
+        final byte[] data = Perf.dump().getBytes();
+        final File file = new File(getFilesDir(), PERF_FILE);
+        getIoExecutor().execute(new Runnable() {
+            @Override
+            public void run() {
+                OutputStream out = null;
+                try {
+                    out = new FileOutputStream(file);
+                    out.write(data);
+                } catch (IOException e) {
+                    Log.e(TAG, "dumpPerf: ", e);
+                } finally {
+                    if (out != null) {
+                        try {
+                            out.close();
+                        } catch (IOException ignored) {
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    @Override
+    protected void onDestroy() {
+        super.onDestroy();
+        mDestroyed = true;
+        if (mGenerateCancelled != null) {
+            mGenerateCancelled.set(true);
+        }
+        if (mGenerateExecutor != null) {
+            mGenerateExecutor.shutdownNow();
+        }
+        if (mExecutor != null) {
+            mExecutor.shutdownNow();
+        }
+        if (mIoExecutor != null) {
+            // 让已提交的写入完成
+            mIoExecutor.shutdown();
+        }
     }
 
     @Override
     public void onClick(View v) {
         int vid = v.getId();
         if (vid == R.id.btn_open) {
-            Log.d(TAG, "onClick: open");
+            if (Perf.LOG) {
+                Log.d(TAG, "onClick: open");
+            }
             mBtnOpen.setSelected(true);
             mBtnInsertFlag.setSelected(false);
-            mGridLayout.setStatus(SimpleGridLayout.STATUS_OPEN);
+            mGridView.setStatus(IGridView.STATUS_OPEN);
         } else if (vid == R.id.btn_insert_flag) {
-            Log.d(TAG, "onClick: flag");
+            if (Perf.LOG) {
+                Log.d(TAG, "onClick: flag");
+            }
             mBtnOpen.setSelected(false);
             mBtnInsertFlag.setSelected(true);
-            mGridLayout.setStatus(SimpleGridLayout.STATUS_INSERT_FLAG);
+            mGridView.setStatus(IGridView.STATUS_INSERT_FLAG);
+        } else if (vid == R.id.btn_hint) {
+            showHint();
+        } else if (vid == R.id.btn_new_game) {
+            newBoard();
+        } else if (vid == R.id.btn_undo) {
+            // 用过撤销的对局不计入统计
+            if (mUndoHistory != null && mUndoHistory.undo()) {
+                mGameRecorder.discard();
+            }
+        } else if (vid == R.id.btn_redo) {
+            if (mUndoHistory != null) {
+                mUndoHistory.redo();
+            }
+        } else if (vid == R.id.btn_share) {
+            shareBoard();
+        }
+    }
+
+    /**
+     * 求解当前局面，高亮1个一定安全的方格；没有时高亮是雷的概率最小的方格。还没有翻开过方格时没有可用的信息，不提示
+     */
+    private void showHint() {
+        Board board = mGridView.getBoard();
+        if (board == null || board.getStatus() != Board.STATUS_PLAYING || board.getOpenedCount() == 0) {
+            return;
+        }
+        if (mSolver == null) {
+            mSolver = new Solver(getExecutor());
+        }
+        long start = System.nanoTime();
+        mSolver.solve(board);
+        if (Perf.LOG) {
+            Log.d(TAG, "showHint: safe " + mSolver.getSafeCellCount() + ", mines " + mSolver.getMineCellCount()
+                    + ", cost " + (System.nanoTime() - start) / 1000 + "us");
+        }
+        if (mSolver.getSafeCellCount() > 0) {
+            mGridView.showHint(mSolver.getSafeCells()[0]);
+            return;
+        }
+
+        if (mProbabilityEngine == null) {
+            mProbabilityEngine = new ProbabilityEngine();
+        }
+        start = System.nanoTime();
+        double[] probabilities = mProbabilityEngine.compute(board);
+        int best = -1;
+        for (int i = 0; i < board.getCellCount(); i++) {
+            if (board.getState(i) != Board.STATE_OPENED && (best < 0 || probabilities[i] < probabilities[best])) {
+                best = i;
+            }
+        }
+        if (Perf.LOG) {
+            Log.d(TAG, "showHint: best " + best + ", probability " + probabilities[best] + ", exact "
+                    + mProbabilityEngine.isExact() + ", cost " + (System.nanoTime() - start) / 1000 + "us");
         }
+        mGridView.showHint(best);
+        Toast.makeText(this, getString(R.string.hint_none, Math.round(probabilities[best] * 100)),
+                Toast.LENGTH_SHORT).show();
     }
 
 }
@@ -5,22 +5,25 @@ import android.graphics.Canvas;
 import android.graphics.Paint;
 import android.util.AttributeSet;
 import android.util.Log;
+import android.view.MotionEvent;
 import android.view.View;
 import android.view.ViewGroup;
 import android.widget.Toast;
 
 import com.yulin.minesweep.R;
-import com.yulin.minesweep.i.OnGridOperatorListener;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardDelta;
+import com.yulin.minesweep.engine.OnBoardDeltaListener;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.perf.Perf;
+import com.yulin.minesweep.widget.BoardInput;
 import com.yulin.minesweep.widget.SquareItem;
 
-import java.util.ArrayList;
-import java.util.LinkedList;
-import java.util.List;
-
 /**
- * 简单模式网络布局区
+ * 简单模式网络布局区，游戏规则交给{@link Board}处理，本布局只负责显示和转发点击。
+ * 触摸事件都由本布局拦截，{@link BoardInput}按坐标换算方格，方格本身不处理触摸
  */
-public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListener {
+public class SimpleGridLayout extends ViewGroup implements IGridView, BoardInput.Target, OnBoardDeltaListener {
 
     private static final String TAG = "houchenl_SimpleGridLay";
 
@@ -31,9 +34,6 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
     // 10个雷
     private static final int MINE_COUNT = 10;
 
-    public static final int STATUS_OPEN = 1;
-    public static final int STATUS_INSERT_FLAG = 2;
-
     // 方格行数
     private int mRowCount = DEFAULT_ROW_COUNT;
 
@@ -42,14 +42,13 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
 
     private Paint mGridPaint;
 
-    /**
-     * 缓存待点击的空白方格列表的序号
-     */
-    private LinkedList<Integer> mListEmptySquareIndex = new LinkedList<>();
+    private Board mBoard;
 
     private int mStatus = STATUS_OPEN;    // 点击时的操作： 1. 翻开  2. 插旗
 
-    private int mUnOpenedSquares = mRowCount * mColumnCount;
+    private int mHintIndex = -1;
+
+    private BoardInput mInput;
 
     public SimpleGridLayout(Context context) {
         this(context, null);
@@ -69,8 +68,10 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
         /*
         * 创建SimpleGridLayout对象时，addChildViews()耗时582ms，其它方法耗时0ms
         * */
+        mBoard = new Board(mRowCount, mColumnCount, MINE_COUNT);
+        mBoard.addOnBoardDeltaListener(this);
+        mInput = new BoardInput(this);
         addChildViews(context);
-        placeMineRandomly();
 
         mGridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
         mGridPaint.setStyle(Paint.Style.STROKE);
@@ -84,9 +85,7 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
     private void addChildViews(Context context) {
         int count = mRowCount * mColumnCount;
         for (int i = 0; i < count; i++) {
-            SquareItem item = new SquareItem(context, i, this);
-            item.setOperatorListener(this);
-            addView(item);
+            addView(new SquareItem(context, i, this));
         }
     }
 
@@ -100,14 +99,13 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
         // Get the height based on the measure specs
         heightSize = getDefaultSize(0, heightMeasureSpec);
 
-        int majorDimension = Math.min(widthSize, heightSize);
-        // Measure all child views
-        int blockDimension = majorDimension / mColumnCount;
+        // 方格为正方形，边长取能放下所有行、列的最大值，行列数不同时棋盘为长方形
+        int blockDimension = Math.min(widthSize / mColumnCount, heightSize / mRowCount);
         int blockSpec = MeasureSpec.makeMeasureSpec(blockDimension, MeasureSpec.EXACTLY);
         measureChildren(blockSpec, blockSpec);
 
         // Must call this to save our own dimensions
-        setMeasuredDimension(majorDimension, majorDimension);
+        setMeasuredDimension(blockDimension * mColumnCount, blockDimension * mRowCount);
     }
 
     @Override
@@ -126,151 +124,62 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
 
     @Override
     protected void dispatchDraw(Canvas canvas) {
+        long start = Perf.begin(Perf.FRAME_DRAW);
         super.dispatchDraw(canvas);
 
         // Draw the grid lines
         for (int i = 0; i <= getWidth(); i += (getWidth() / mColumnCount)) {
             canvas.drawLine(i, 0, i, getHeight(), mGridPaint);
         }
-        for (int i = 0; i < getHeight(); i += (getHeight() / mColumnCount)) {
+        for (int i = 0; i < getHeight(); i += (getHeight() / mRowCount)) {
             canvas.drawLine(0, i, getWidth(), i, mGridPaint);
         }
+        Perf.end(Perf.FRAME_DRAW, start);
+        Perf.markFrameDrawn();
     }
 
-    /**
-     * 将10个雷随机分布在方格中
-     */
-    private void placeMineRandomly() {
-        for (int i = 0; i < MINE_COUNT; i++) {
-            while (true) {
-                // 分布第i个雷；先获取雷放置在空格序号，如果该空格已有雷，重新获取序号
-                int index = (int) (Math.random() * getChildCount());
-                SquareItem item = getItem(index);
-                if (item != null) {
-                    if (!item.isMine()) {
-                        // 没有雷，设置有雷
-                        item.setMine(true);
-                        updateMineCount(index);
-                        break;
-                    }
-                    // 已有雷，继续获取新方格
-                }
-            }
-        }
-    }
-
-    /**
-     * 每设置1个方格含雷，将它周围8个方格的周围雷的数量加1
-     */
-    private void updateMineCount(int index) {
-        // 获取含雷方格的行、列数
-        int r = getRow(index);
-        int c = getColumn(index);
-
-        increaseMineCount(r - 1, c - 1);
-        increaseMineCount(r, c - 1);
-        increaseMineCount(r + 1, c - 1);
-        increaseMineCount(r - 1, c);
-        increaseMineCount(r + 1, c);
-        increaseMineCount(r - 1, c + 1);
-        increaseMineCount(r, c + 1);
-        increaseMineCount(r + 1, c + 1);
-    }
-
-    /**
-     * 将指定方格周围的含雷数加1
-     */
-    private void increaseMineCount(int r, int c) {
-        int index = getIndex(r, c);
+    private SquareItem getItem(int index) {
         if (index >= 0 && index < getChildCount()) {
-            SquareItem item = getItem(index);
-            if (item != null) {
-                item.increaseMinCount();
-            }
-        }
-    }
-
-    /**
-     * 方格序号转化为方格行号，行号从0开始
-     */
-    private int getRow(int index) {
-        if (index < 0 || index >= getChildCount()) {
-            return -1;
+            return (SquareItem) getChildAt(index);
         }
 
-        return index / mRowCount;
+        return null;
     }
 
     /**
-     * 方格序号转化为方格列号，列号从0开始
+     * 方格都是同样大小的正方形，按第1个方格的边长换算，不需要逐个判断方格的位置
      */
-    private int getColumn(int index) {
-        if (index < 0 || index >= getChildCount()) {
+    @Override
+    public int getIndexAt(float x, float y) {
+        View first = getChildAt(0);
+        int size = first != null ? first.getWidth() : 0;
+        if (size == 0 || x < 0 || y < 0) {
             return -1;
         }
-
-        return index % mRowCount;
+        return mBoard.getIndex((int) (y / size), (int) (x / size));
     }
 
-    /**
-     * 方格行、列数转换为序号
-     */
-    private int getIndex(int r, int c) {
-        if (r < 0 || c < 0 || r >= mRowCount || c >= mColumnCount) {
-            // 行、列号越界，返回-1
-            return -1;
-        }
-
-        // 行、列号正常，返回序号
-        return r * mRowCount + c;
+    @Override
+    public boolean onInterceptTouchEvent(MotionEvent ev) {
+        return true;
     }
 
-    private SquareItem getItem(int index) {
-        if (index >= 0 && index < getChildCount()) {
-            return (SquareItem) getChildAt(index);
-        }
-
-        return null;
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        return mInput.onTouchEvent(event);
     }
 
     @Override
-    public void onClickBug() {
-        // 踩到雷时，所有方格都打开
-        for (int i = 0; i < getChildCount(); i++) {
-            SquareItem item = getItem(i);
-            if (item != null) {
-                item.setState(SquareItem.STATE_OPENED);
-            }
-        }
+    public void onOpen(int index) {
+        long start = Perf.begin(Perf.REVEAL);
+        int opened = mBoard.open(index);
+        Perf.end(Perf.REVEAL, start);
+        Perf.record(Perf.MOVE_CELLS, opened);
     }
 
     @Override
-    public void onClickEmpty(int index) {
-        /*
-         * 点开一个空白方格后，触发周围所有方格的点击事件，把它周围所有方格都打开。如果周围仍有空白方格，会继续调用本方法，
-         * 直到打开所有连续的空白方格
-         * */
-        int r = getRow(index);
-        int c = getColumn(index);
-
-        openItem(r - 1, c - 1);
-        openItem(r, c - 1);
-        openItem(r + 1, c - 1);
-        openItem(r - 1, c);
-        openItem(r + 1, c);
-        openItem(r - 1, c + 1);
-        openItem(r, c + 1);
-        openItem(r + 1, c + 1);
-
-        // 点击缓存中下一个空白方格
-        int emptyIndex = popEmptySquareIndex();
-        Log.d(TAG, "onClickEmpty: empty size " + (mListEmptySquareIndex.size() + 1) + ", emptyIndex " + emptyIndex);
-        if (emptyIndex >= 0) {
-            SquareItem item = getItem(emptyIndex);
-            if (item != null) {
-                item.onSingleTapConfirm();
-            }
-        }
+    public void onMark(int index) {
+        mBoard.toggleMark(index);
     }
 
     /**
@@ -282,114 +191,86 @@ public class SimpleGridLayout extends ViewGroup implements OnGridOperatorListene
         * 如果周围方格中插旗的方格数和当前方格周围雷数相同，表明已全部找到周围的雷，双击自动打开剩余未插旗的方格。
         * 如果插旗错误，会将雷格打开，game over。如果条件不符合，不响应
         * */
-
-        // 获取周围所有方格
-        List<SquareItem> squaresAround = getSquaresAround(index);
-        // 获取周围方格中插旗的方格数目，如果有问号的方格，不能自动打开，直接return
-        int flagCount = 0;
-        for (int i = 0; i < squaresAround.size(); i++) {
-            if (squaresAround.get(i).isQuestion()) {
-                return;
-            }
-            if (squaresAround.get(i).isFlaged()) {
-                flagCount++;
-            }
+        long start = Perf.begin(Perf.REVEAL);
+        int opened = mBoard.chord(index);
+        Perf.end(Perf.REVEAL, start);
+        Perf.record(Perf.MOVE_CELLS, opened);
+        if (Perf.LOG) {
+            Log.d(TAG, "onDoubleTap: opened " + opened);
         }
-        // 如果周围插旗方格个数等于当前方格周围雷的个数，尝试打开周围所有未插旗且未打开状态为默认的方格
-        SquareItem currentItem = getItem(index);
-        if (currentItem != null && currentItem.getMineCount() == flagCount) {
-            for (SquareItem item : squaresAround) {
-                if (item.isIdle()) {
-                    item.onSingleTapConfirm();
-                }
-            }
-        }
-        Log.d(TAG, "onDoubleTap: flag count " + flagCount);
     }
 
+    /**
+     * 每个方格自己invalidate，同1帧内的多次变化由系统合并成1次绘制
+     */
     @Override
-    public void onOpened(int index) {
-        mUnOpenedSquares--;
-        if (mUnOpenedSquares == MINE_COUNT) {
-            Toast.makeText(getContext(), "success", Toast.LENGTH_SHORT).show();
-        }
-    }
-
-    // 打开指定位置的方格
-    private void openItem(int r, int c) {
-        int index = getIndex(r, c);
-        if (index >= 0 && index < getChildCount()) {
-            SquareItem item = getItem(index);
+    public void onDelta(BoardDelta delta) {
+        long start = Perf.begin(Perf.CACHE_DRAW);
+        for (int i = 0; i < delta.size(); i++) {
+            SquareItem item = getItem(delta.getCell(i));
             if (item != null) {
-                if (item.isEmptySquare() && !item.isOpened()) {
-                    Log.d(TAG, "openItem: r " + r + ", c " + c + ", index " + index + ", isEmptySquare && !isOpened, add");
-                    addEmptySquareIndex(index);
-                }
-                item.setState(SquareItem.STATE_OPENED);
+                item.updateDisplay();
             }
         }
-    }
-
-    private int popEmptySquareIndex() {
-        if (mListEmptySquareIndex.size() > 0) {
-            return mListEmptySquareIndex.pop();
-        }
-        return -1;
-    }
-
-    private void addEmptySquareIndex(int index) {
-        if (!mListEmptySquareIndex.contains(index)) {
-            mListEmptySquareIndex.push(index);
+        Perf.end(Perf.CACHE_DRAW, start);
+        if (delta.isWin()) {
+            Toast.makeText(getContext(), "success", Toast.LENGTH_SHORT).show();
         }
     }
 
+    @Override
     public int getStatus() {
         return mStatus;
     }
 
+    @Override
     public void setStatus(int status) {
         mStatus = status;
     }
 
-    /**
-     * 获取指定方格周围的所有方格
-     * @param index 指定方格的序号
-     * */
-    private List<SquareItem> getSquaresAround(int index) {
-        return getSquaresAround(index, -1);
+    @Override
+    public void setInstantOpen(boolean instantOpen) {
+        mInput.setInstantOpen(instantOpen);
     }
 
-    /**
-     * 获取指定方格周围指定状态的所有方格
-     * @param index 指定方格的序号
-     * @param state 指定状态
-     * */
-    private List<SquareItem> getSquaresAround(int index, int state) {
-        List<SquareItem> items = new ArrayList<>();
-
-        int r = getRow(index);
-        int c = getColumn(index);
-
-        addItem(items, getItem(getIndex(r - 1, c - 1)), state);
-        addItem(items, getItem(getIndex(r, c - 1)), state);
-        addItem(items, getItem(getIndex(r + 1, c - 1)), state);
-        addItem(items, getItem(getIndex(r - 1, c)), state);
-        addItem(items, getItem(getIndex(r + 1, c)), state);
-        addItem(items, getItem(getIndex(r - 1, c + 1)), state);
-        addItem(items, getItem(getIndex(r, c + 1)), state);
-        addItem(items, getItem(getIndex(r + 1, c + 1)), state);
-
-        return items;
+    @Override
+    public void setBoard(Board board) {
+        if (mBoard != null) {
+            mBoard.removeOnBoardDeltaListener(this);
+        }
+        mBoard = board;
+        mBoard.addOnBoardDeltaListener(this);
+        mInput.reset();
+        showHint(-1);
+        // 行列数不变时复用已有的方格，只刷新显示
+        if (mRowCount == board.getRowCount() && mColumnCount == board.getColumnCount()) {
+            for (int i = 0; i < getChildCount(); i++) {
+                ((SquareItem) getChildAt(i)).updateDisplay();
+            }
+            return;
+        }
+        mRowCount = board.getRowCount();
+        mColumnCount = board.getColumnCount();
+        removeAllViews();
+        addChildViews(getContext());
+        requestLayout();
     }
 
-    /**
-     * @param state -1表示所有状态
-     * */
-    private void addItem(List<SquareItem> items, SquareItem item, int state) {
-        if (items != null && item != null && item.getState() == state) {
-            if (item.getState() == state || state == -1) {
-                items.add(item);
-            }
+    @Override
+    public Board getBoard() {
+        return mBoard;
+    }
+
+    @Override
+    public void showHint(int index) {
+        SquareItem old = getItem(mHintIndex);
+        if (old != null) {
+            old.setHint(false);
+        }
+        mHintIndex = index;
+        SquareItem item = getItem(index);
+        if (item != null) {
+            item.setHint(true);
         }
     }
 
@@ -0,0 +1,84 @@
+package com.yulin.minesweep.stats;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardDelta;
+import com.yulin.minesweep.engine.OnBoardDeltaListener;
+import com.yulin.minesweep.engine.stats.GameRecord;
+import com.yulin.minesweep.engine.stats.StatsStore;
+
+/**
+ * 统计1局的用时和操作数，结束时把结果加入{@link StatsStore}。用{@link Board#addOnBoardDeltaListener}注册
+ *
+ * 用时从本对象收到的第1个操作开始计算。旋转屏幕等重建时用{@link #getElapsedTime()}等保存进度，
+ * 在新的对象上调用{@link #restore(long, int, boolean)}继续计时；无法恢复进度的对局（例如从文件读取的）应当{@link #discard()}
+ */
+public class GameRecorder implements OnBoardDeltaListener {
+
+    private final Board mBoard;
+    private final int mLevel;
+    private final StatsStore mStore;
+
+    private long mStartTime;
+    private int mClicks;
+    private boolean mRecorded;
+
+    public GameRecorder(Board board, int level, StatsStore store) {
+        mBoard = board;
+        mLevel = level;
+        mStore = store;
+    }
+
+    /**
+     * 本局不计入统计，例如用过撤销。已经结束并记录的对局不受影响
+     */
+    public void discard() {
+        mRecorded = true;
+    }
+
+    /**
+     * 接着之前的进度继续统计，在棋盘的第1个操作之前调用
+     * @param elapsedTime 之前已经用的时间，毫秒
+     * @param clicks 之前的操作数
+     * @param discarded 之前已经不计入统计
+     */
+    public void restore(long elapsedTime, int clicks, boolean discarded) {
+        mClicks = clicks;
+        mStartTime = System.currentTimeMillis() - elapsedTime;
+        mRecorded |= discarded;
+    }
+
+    /**
+     * @return 从第1个操作到现在的时间，毫秒，还没有操作时为0
+     */
+    public long getElapsedTime() {
+        return mClicks == 0 ? 0 : System.currentTimeMillis() - mStartTime;
+    }
+
+    public int getClicks() {
+        return mClicks;
+    }
+
+    /**
+     * @return 已经记录或者不计入统计
+     */
+    public boolean isDiscarded() {
+        return mRecorded;
+    }
+
+    @Override
+    public void onDelta(BoardDelta delta) {
+        if (!delta.isMove()) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        if (mClicks == 0) {
+            mStartTime = now;
+        }
+        mClicks++;
+        if (!mRecorded && delta.isGameOver()) {
+            mRecorded = true;
+            mStore.add(new GameRecord(mBoard, mLevel, (int) (now - mStartTime), mClicks, now));
+        }
+    }
+
+}
@@ -0,0 +1,32 @@
+package com.yulin.minesweep.stats;
+
+import android.content.Context;
+
+import com.yulin.minesweep.engine.stats.StatsStore;
+
+import java.io.File;
+import java.util.concurrent.Executors;
+
+/**
+ * 整个进程共用1个{@link StatsStore}，第1次用到时创建并在后台线程开始读取历史记录
+ */
+public final class Stats {
+
+    // 在getFilesDir()下
+    private static final String FILE = "stats.bin";
+
+    private static StatsStore sStore;
+
+    private Stats() {
+    }
+
+    public static synchronized StatsStore get(Context context) {
+        if (sStore == null) {
+            File file = new File(context.getApplicationContext().getFilesDir(), FILE);
+            sStore = new StatsStore(file, Executors.newSingleThreadExecutor());
+            sStore.load();
+        }
+        return sStore;
+    }
+
+}
@@ -0,0 +1,231 @@
+package com.yulin.minesweep.widget;
+
+import android.os.SystemClock;
+import android.view.HapticFeedbackConstants;
+import android.view.MotionEvent;
+import android.view.View;
+import android.view.ViewConfiguration;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.i.OnGridOperatorListener;
+import com.yulin.minesweep.perf.Perf;
+
+/**
+ * 整个棋盘共用1个的触摸处理，按坐标算出方格序号，不需要每个方格1个GestureDetector
+ *
+ * 即时模式（默认）手指抬起时立即翻开或插旗，不等双击超时，下一帧就能画出结果；
+ * 在已打开的方格上连续点2次为双击。普通模式和GestureDetector相同，单击等双击超时后才确认，双击时不触发单击。
+ * 两种模式下长按未打开的方格都是插旗。移动超过触摸阈值、多指触摸时不算点击，由View自己处理拖动和缩放。
+ * 从触摸事件到Board状态变化的时间记为{@link Perf#INPUT_TO_STATE}，到下一帧画完的时间记为{@link Perf#INPUT_TO_PIXEL}
+ */
+public class BoardInput {
+
+    /**
+     * 使用BoardInput的棋盘控件
+     */
+    public interface Target extends OnGridOperatorListener {
+
+        /**
+         * View坐标转换为方格序号，不在棋盘内时返回-1
+         */
+        int getIndexAt(float x, float y);
+
+        Board getBoard();
+
+        int getStatus();
+    }
+
+    private final View mView;
+    private final Target mTarget;
+
+    private final int mTouchSlopSquare;
+    private final int mDoubleTapTimeout = ViewConfiguration.getDoubleTapTimeout();
+    private final int mLongPressTimeout = ViewConfiguration.getLongPressTimeout();
+
+    private boolean mInstantOpen = true;
+
+    // 按下的位置和方格，-1表示本次触摸已经不是点击
+    private float mDownX;
+    private float mDownY;
+    private int mDownIndex = -1;
+    private long mDownTime;
+
+    // 上1次点击的方格和抬起时间，用于判断双击
+    private int mLastTapIndex = -1;
+    private long mLastTapTime;
+
+    // 普通模式下等待双击超时的单击和抬起时间，-1表示没有
+    private int mPendingTapIndex = -1;
+    private long mPendingTapTime;
+
+    private final Runnable mLongPress = new Runnable() {
+        @Override
+        public void run() {
+            onLongPress();
+        }
+    };
+
+    private final Runnable mConfirmTap = new Runnable() {
+        @Override
+        public void run() {
+            int index = mPendingTapIndex;
+            mPendingTapIndex = -1;
+            tap(index, mPendingTapTime);
+        }
+    };
+
+    public <T extends View & Target> BoardInput(T view) {
+        mView = view;
+        mTarget = view;
+        int slop = ViewConfiguration.get(view.getContext()).getScaledTouchSlop();
+        mTouchSlopSquare = slop * slop;
+    }
+
+    /**
+     * @param instantOpen true抬起时立即响应单击；false等双击超时后再确认单击
+     */
+    public void setInstantOpen(boolean instantOpen) {
+        if (!instantOpen) {
+            confirmPendingTap();
+        }
+        mInstantOpen = instantOpen;
+    }
+
+    public boolean isInstantOpen() {
+        return mInstantOpen;
+    }
+
+    /**
+     * 由View的onTouchEvent调用
+     * @return 总是true，接收之后的事件
+     */
+    public boolean onTouchEvent(MotionEvent event) {
+        switch (event.getActionMasked()) {
+            case MotionEvent.ACTION_DOWN:
+                mDownX = event.getX();
+                mDownY = event.getY();
+                mDownTime = event.getEventTime();
+                mDownIndex = mTarget.getBoard() != null ? mTarget.getIndexAt(mDownX, mDownY) : -1;
+                if (mDownIndex >= 0) {
+                    mView.postDelayed(mLongPress, mLongPressTimeout);
+                }
+                break;
+            case MotionEvent.ACTION_MOVE:
+                if (mDownIndex >= 0) {
+                    float dx = event.getX() - mDownX;
+                    float dy = event.getY() - mDownY;
+                    if (dx * dx + dy * dy > mTouchSlopSquare) {
+                        cancel();
+                    }
+                }
+                break;
+            case MotionEvent.ACTION_UP:
+                mView.removeCallbacks(mLongPress);
+                if (mDownIndex >= 0) {
+                    onTap(mDownIndex, event.getEventTime());
+                }
+                mDownIndex = -1;
+                break;
+            case MotionEvent.ACTION_POINTER_DOWN:
+            case MotionEvent.ACTION_CANCEL:
+                cancel();
+                break;
+        }
+        return true;
+    }
+
+    /**
+     * 本次触摸不再当作点击或长按，例如开始缩放
+     */
+    public void cancel() {
+        mView.removeCallbacks(mLongPress);
+        mDownIndex = -1;
+    }
+
+    /**
+     * 丢弃等待中的单击和双击状态，例如换了棋盘
+     */
+    public void reset() {
+        cancel();
+        mView.removeCallbacks(mConfirmTap);
+        mPendingTapIndex = -1;
+        mLastTapIndex = -1;
+    }
+
+    private void onTap(int index, long time) {
+        boolean doubleTap = index == mLastTapIndex && time - mLastTapTime <= mDoubleTapTimeout;
+        if (mInstantOpen) {
+            // 只有点在已打开方格上的才可能是双击的第1次，翻开后马上再点不会误触双击
+            boolean opened = mTarget.getBoard().getState(index) == Board.STATE_OPENED;
+            mLastTapIndex = opened && !doubleTap ? index : -1;
+            mLastTapTime = time;
+            if (doubleTap) {
+                doubleTap(index, time);
+            } else if (!opened) {
+                tap(index, time);
+            }
+            return;
+        }
+
+        if (doubleTap && mPendingTapIndex >= 0) {
+            mView.removeCallbacks(mConfirmTap);
+            mPendingTapIndex = -1;
+            mLastTapIndex = -1;
+            doubleTap(index, time);
+            return;
+        }
+        confirmPendingTap();
+        mPendingTapIndex = index;
+        mPendingTapTime = time;
+        mLastTapIndex = index;
+        mLastTapTime = time;
+        mView.postDelayed(mConfirmTap, mDoubleTapTimeout);
+    }
+
+    // 还在等待的单击立即确认
+    private void confirmPendingTap() {
+        if (mPendingTapIndex >= 0) {
+            mView.removeCallbacks(mConfirmTap);
+            mConfirmTap.run();
+        }
+    }
+
+    private void tap(int index, long time) {
+        Perf.markInput(time);
+        if (mTarget.getStatus() == IGridView.STATUS_OPEN) {
+            mTarget.onOpen(index);
+        } else {
+            mTarget.onMark(index);
+        }
+        recordLatency(time);
+    }
+
+    // 双击已打开的数字方格，尝试自动打开周围的方格
+    private void doubleTap(int index, long time) {
+        Board board = mTarget.getBoard();
+        if (board.getState(index) == Board.STATE_OPENED && board.getMineCount(index) > 0) {
+            Perf.markInput(time);
+            mTarget.onDoubleTap(index);
+            recordLatency(time);
+        }
+    }
+
+    private void onLongPress() {
+        int index = mDownIndex;
+        mDownIndex = -1;
+        if (index < 0 || mTarget.getBoard().getState(index) == Board.STATE_OPENED) {
+            return;
+        }
+        mView.performHapticFeedback(HapticFeedbackConstants.LONG_PRESS);
+        long time = mDownTime + mLongPressTimeout;
+        Perf.markInput(time);
+        mTarget.onMark(index);
+        recordLatency(time);
+    }
+
+    private static void recordLatency(long eventTime) {
+        Perf.record(Perf.INPUT_TO_STATE, (SystemClock.uptimeMillis() - eventTime) * 1000000L);
+    }
+
+}
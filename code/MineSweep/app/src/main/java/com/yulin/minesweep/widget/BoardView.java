@@ -0,0 +1,331 @@
+package com.yulin.minesweep.widget;
+
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+import android.support.v4.view.ViewCompat;
+import android.util.AttributeSet;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.Toast;
+
+import com.yulin.minesweep.R;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardDelta;
+import com.yulin.minesweep.engine.DeltaCoalescer;
+import com.yulin.minesweep.engine.OnBoardDeltaListener;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.perf.Perf;
+
+/**
+ * 用1个View画出整个棋盘，代替每个方格1个SquareItem的方式
+ *
+ * 方格位置由行列号直接算出，不需要measure/layout子View。整个棋盘先画在缓存Bitmap上，
+ * 只重画状态变化的方格，再把缓存贴到屏幕上。同1帧内的多次操作合并后只重画1次。点击由{@link BoardInput}按坐标换算
+ */
+public class BoardView extends View implements IGridView, BoardInput.Target, OnBoardDeltaListener {
+
+    private static final String TAG = "houchenl_BoardView";
+
+    private static final char[] NUMBERS = {'0', '1', '2', '3', '4', '5', '6', '7', '8'};
+
+    private Board mBoard;
+
+    private int mStatus = STATUS_OPEN;
+
+    // 每个方格的边长
+    private int mCellSize;
+
+    private int mColorDefault;
+    private int mColorOpened;
+    private int mColorHint;
+
+    // 提示的方格，-1表示没有
+    private int mHintIndex = -1;
+
+    private Paint mFillPaint;
+    private Paint mGridPaint;
+    private Paint mTextPaint;
+
+    private Rect mCellRect = new Rect();
+    // 缓存中已重画、还没有刷新到屏幕上的区域
+    private Rect mDirtyRect = new Rect();
+
+    private Bitmap mCacheBitmap;
+    private Canvas mCacheCanvas;
+
+    private SpriteAtlas mSpriteAtlas;
+
+    private BoardInput mInput;
+
+    // 本帧还没有重画的变化，在下一帧的动画阶段合并处理
+    private DeltaCoalescer mPendingDeltas;
+    private final Runnable mFlushDeltas = new Runnable() {
+        @Override
+        public void run() {
+            flushDeltas();
+        }
+    };
+
+    public BoardView(Context context) {
+        this(context, null);
+    }
+
+    public BoardView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public BoardView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        mColorDefault = getResources().getColor(R.color.grid_bg_default);
+        mColorOpened = getResources().getColor(R.color.grid_bg_opened);
+        mColorHint = getResources().getColor(R.color.grid_bg_hint);
+
+        mFillPaint = new Paint();
+        mFillPaint.setStyle(Paint.Style.FILL);
+
+        mGridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mGridPaint.setStyle(Paint.Style.STROKE);
+        mGridPaint.setColor(getResources().getColor(R.color.grid_line));
+        mGridPaint.setStrokeWidth(3);
+
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(getResources().getColor(R.color.grid_text));
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+
+        mInput = new BoardInput(this);
+    }
+
+    @Override
+    public void setBoard(Board board) {
+        if (mBoard != null) {
+            mBoard.removeOnBoardDeltaListener(this);
+        }
+        mBoard = board;
+        mHintIndex = -1;
+        mBoard.addOnBoardDeltaListener(this);
+        mInput.reset();
+        if (mPendingDeltas == null || mPendingDeltas.getCellCount() != board.getCellCount()) {
+            mPendingDeltas = new DeltaCoalescer(board.getCellCount());
+        } else {
+            mPendingDeltas.clear();
+        }
+        requestLayout();
+        redrawAll();
+    }
+
+    @Override
+    public Board getBoard() {
+        return mBoard;
+    }
+
+    @Override
+    public int getStatus() {
+        return mStatus;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        mStatus = status;
+    }
+
+    @Override
+    public void setInstantOpen(boolean instantOpen) {
+        mInput.setInstantOpen(instantOpen);
+    }
+
+    @Override
+    public void showHint(int index) {
+        int old = mHintIndex;
+        mHintIndex = index;
+        if (old >= 0) {
+            drawCell(old);
+        }
+        if (index >= 0) {
+            drawCell(index);
+        }
+        invalidateDirty();
+    }
+
+    @Override
+    protected void onMeasure(int widthMeasureSpec, int heightMeasureSpec) {
+        int widthSize = getDefaultSize(0, widthMeasureSpec);
+        int heightSize = getDefaultSize(0, heightMeasureSpec);
+        if (mBoard == null) {
+            setMeasuredDimension(widthSize, heightSize);
+            return;
+        }
+
+        // 方格为正方形，边长取能放下所有行、列的最大值
+        mCellSize = Math.min(widthSize / mBoard.getColumnCount(), heightSize / mBoard.getRowCount());
+        setMeasuredDimension(mCellSize * mBoard.getColumnCount(), mCellSize * mBoard.getRowCount());
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        if (mCacheBitmap != null) {
+            mCacheBitmap.recycle();
+            mCacheBitmap = null;
+            mCacheCanvas = null;
+        }
+        if (w > 0 && h > 0) {
+            mCacheBitmap = Bitmap.createBitmap(w, h, Bitmap.Config.ARGB_8888);
+            mCacheCanvas = new Canvas(mCacheBitmap);
+        }
+        if (mCellSize > 0) {
+            mSpriteAtlas = SpriteAtlas.obtain(getResources(), mCellSize);
+        }
+        mTextPaint.setTextSize(mCellSize * 0.6f);
+        redrawAll();
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long start = Perf.begin(Perf.FRAME_DRAW);
+        super.onDraw(canvas);
+        if (mCacheBitmap != null) {
+            canvas.drawBitmap(mCacheBitmap, 0, 0, null);
+        }
+        mDirtyRect.setEmpty();
+        Perf.end(Perf.FRAME_DRAW, start);
+        Perf.markFrameDrawn();
+    }
+
+    // 重画缓存中的所有方格
+    private void redrawAll() {
+        if (mBoard == null || mCacheCanvas == null || mSpriteAtlas == null) {
+            return;
+        }
+        for (int i = 0; i < mBoard.getCellCount(); i++) {
+            drawCell(i);
+        }
+        invalidate();
+    }
+
+    // 把1个方格画到缓存上，并记录需要刷新的区域
+    private void drawCell(int index) {
+        if (mCacheCanvas == null || mSpriteAtlas == null) {
+            return;
+        }
+        int left = mBoard.getColumn(index) * mCellSize;
+        int top = mBoard.getRow(index) * mCellSize;
+        mCellRect.set(left, top, left + mCellSize, top + mCellSize);
+
+        int state = mBoard.getState(index);
+        if (state == Board.STATE_OPENED) {
+            mFillPaint.setColor(mColorOpened);
+        } else if (index == mHintIndex) {
+            mFillPaint.setColor(mColorHint);
+        } else {
+            mFillPaint.setColor(mColorDefault);
+        }
+        mCacheCanvas.drawRect(mCellRect, mFillPaint);
+
+        // 如果已打开，如果是雷，画雷，如果旁边数字大于0，显示数字
+        if (state == Board.STATE_OPENED) {
+            if (mBoard.isMine(index)) {
+                mSpriteAtlas.draw(mCacheCanvas, SpriteAtlas.SPRITE_BUG, left, top);
+            } else if (mBoard.getMineCount(index) > 0) {
+                float y = top + mCellSize / 2f - (mTextPaint.descent() + mTextPaint.ascent()) / 2;
+                mCacheCanvas.drawText(NUMBERS, mBoard.getMineCount(index), 1, left + mCellSize / 2f, y, mTextPaint);
+            }
+        } else if (state == Board.STATE_FLAG) {
+            mSpriteAtlas.draw(mCacheCanvas, SpriteAtlas.SPRITE_FLAG, left, top);
+        } else if (state == Board.STATE_QUESTION) {
+            mSpriteAtlas.draw(mCacheCanvas, SpriteAtlas.SPRITE_QUESTION, left, top);
+        }
+
+        mCacheCanvas.drawRect(mCellRect, mGridPaint);
+        mDirtyRect.union(mCellRect);
+    }
+
+    // 只刷新重画过的区域
+    private void invalidateDirty() {
+        if (!mDirtyRect.isEmpty()) {
+            invalidate(mDirtyRect);
+        }
+    }
+
+    /**
+     * 输入在同1帧的动画阶段之前处理，这里合并后在动画阶段重画，不会晚1帧显示
+     */
+    @Override
+    public void onDelta(BoardDelta delta) {
+        if (mPendingDeltas.isEmpty()) {
+            ViewCompat.postOnAnimation(this, mFlushDeltas);
+        }
+        mPendingDeltas.add(delta);
+    }
+
+    private void flushDeltas() {
+        BoardDelta delta = mPendingDeltas.drain();
+        if (delta == null) {
+            return;
+        }
+        long start = Perf.begin(Perf.CACHE_DRAW);
+        for (int i = 0; i < delta.size(); i++) {
+            drawCell(delta.getCell(i));
+        }
+        clearHintIfChanged();
+        invalidateDirty();
+        Perf.end(Perf.CACHE_DRAW, start);
+        if (delta.isWin()) {
+            Toast.makeText(getContext(), "success", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // 提示的方格被打开或插旗后，提示失效
+    private void clearHintIfChanged() {
+        if (mHintIndex >= 0 && mBoard.getState(mHintIndex) != Board.STATE_IDLE) {
+            mHintIndex = -1;
+        }
+    }
+
+    /**
+     * 坐标转换为方格序号，不在棋盘内时返回-1
+     */
+    @Override
+    public int getIndexAt(float x, float y) {
+        if (mBoard == null || mCellSize == 0 || x < 0 || y < 0) {
+            return -1;
+        }
+        return mBoard.getIndex((int) (y / mCellSize), (int) (x / mCellSize));
+    }
+
+    @Override
+    public void onOpen(int index) {
+        long start = Perf.begin(Perf.REVEAL);
+        int opened = mBoard.open(index);
+        Perf.end(Perf.REVEAL, start);
+        Perf.record(Perf.MOVE_CELLS, opened);
+    }
+
+    @Override
+    public void onMark(int index) {
+        mBoard.toggleMark(index);
+    }
+
+    /*
+    * 双击已打开的数字方格，尝试自动打开周围所有方格
+    * */
+    @Override
+    public void onDoubleTap(int index) {
+        long start = Perf.begin(Perf.REVEAL);
+        int opened = mBoard.chord(index);
+        Perf.end(Perf.REVEAL, start);
+        Perf.record(Perf.MOVE_CELLS, opened);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mBoard == null) {
+            return super.onTouchEvent(event);
+        }
+        return mInput.onTouchEvent(event);
+    }
+
+}
@@ -0,0 +1,202 @@
+package com.yulin.minesweep.widget;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.View;
+import android.widget.Toast;
+
+import com.yulin.minesweep.R;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.endless.EndlessBoard;
+import com.yulin.minesweep.i.IGridView;
+
+/**
+ * 无尽模式棋盘，拖动浏览，只画屏幕内的方格，画到哪里区块就生成到哪里
+ */
+public class EndlessBoardView extends View implements EndlessBoard.OnChangeListener {
+
+    private static final String TAG = "houchenl_EndlessBoardVi";
+
+    private static final int CELL_SIZE_DP = 40;
+
+    private static final char[] NUMBERS = {'0', '1', '2', '3', '4', '5', '6', '7', '8'};
+
+    private EndlessBoard mBoard;
+
+    private int mStatus = IGridView.STATUS_OPEN;
+
+    private int mCellSize;
+
+    // 屏幕左上角对应的世界坐标，单位px
+    private float mOffsetX;
+    private float mOffsetY;
+
+    private int mColorDefault;
+    private int mColorOpened;
+
+    private Paint mFillPaint;
+    private Paint mGridPaint;
+    private Paint mTextPaint;
+
+    private SpriteAtlas mSpriteAtlas;
+
+    private GestureDetector mGestureDetector;
+
+    public EndlessBoardView(Context context) {
+        this(context, null);
+    }
+
+    public EndlessBoardView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public EndlessBoardView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        mCellSize = (int) (CELL_SIZE_DP * getResources().getDisplayMetrics().density);
+
+        mColorDefault = getResources().getColor(R.color.grid_bg_default);
+        mColorOpened = getResources().getColor(R.color.grid_bg_opened);
+
+        mFillPaint = new Paint();
+        mFillPaint.setStyle(Paint.Style.FILL);
+
+        mGridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mGridPaint.setStyle(Paint.Style.STROKE);
+        mGridPaint.setColor(getResources().getColor(R.color.grid_line));
+        mGridPaint.setStrokeWidth(3);
+
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(getResources().getColor(R.color.grid_text));
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(mCellSize * 0.6f);
+
+        mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                mOffsetX += distanceX;
+                mOffsetY += distanceY;
+                invalidate();
+                return true;
+            }
+
+            @Override
+            public boolean onSingleTapConfirmed(MotionEvent e) {
+                int x = getCellX(e.getX());
+                int y = getCellY(e.getY());
+                if (mStatus == IGridView.STATUS_OPEN) {
+                    mBoard.open(x, y);
+                } else if (mStatus == IGridView.STATUS_INSERT_FLAG) {
+                    mBoard.toggleMark(x, y);
+                }
+                return true;
+            }
+
+            @Override
+            public boolean onDoubleTap(MotionEvent e) {
+                mBoard.chord(getCellX(e.getX()), getCellY(e.getY()));
+                return true;
+            }
+        });
+    }
+
+    public void setBoard(EndlessBoard board) {
+        mBoard = board;
+        mBoard.setOnChangeListener(this);
+        invalidate();
+    }
+
+    public void setStatus(int status) {
+        mStatus = status;
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 原点方格显示在屏幕中央
+        mOffsetX = (mCellSize - w) / 2f;
+        mOffsetY = (mCellSize - h) / 2f;
+        mSpriteAtlas = SpriteAtlas.obtain(getResources(), mCellSize);
+    }
+
+    private int getCellX(float x) {
+        return (int) Math.floor((x + mOffsetX) / mCellSize);
+    }
+
+    private int getCellY(float y) {
+        return (int) Math.floor((y + mOffsetY) / mCellSize);
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        super.onDraw(canvas);
+        if (mBoard == null || mSpriteAtlas == null) {
+            return;
+        }
+
+        // 只遍历屏幕内的方格
+        int firstX = getCellX(0);
+        int lastX = getCellX(getWidth());
+        int firstY = getCellY(0);
+        int lastY = getCellY(getHeight());
+        for (int y = firstY; y <= lastY; y++) {
+            int top = (int) (y * (long) mCellSize - mOffsetY);
+            for (int x = firstX; x <= lastX; x++) {
+                int left = (int) (x * (long) mCellSize - mOffsetX);
+                drawCell(canvas, x, y, left, top);
+            }
+        }
+    }
+
+    private void drawCell(Canvas canvas, int x, int y, int left, int top) {
+        int state = mBoard.getState(x, y);
+        mFillPaint.setColor(state == Board.STATE_OPENED ? mColorOpened : mColorDefault);
+        canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mFillPaint);
+
+        if (state == Board.STATE_OPENED) {
+            if (mBoard.isMine(x, y)) {
+                mSpriteAtlas.draw(canvas, SpriteAtlas.SPRITE_BUG, left, top);
+            } else {
+                int count = mBoard.getMineCount(x, y);
+                if (count > 0) {
+                    float textY = top + mCellSize / 2f - (mTextPaint.descent() + mTextPaint.ascent()) / 2;
+                    canvas.drawText(NUMBERS, count, 1, left + mCellSize / 2f, textY, mTextPaint);
+                }
+            }
+        } else if (state == Board.STATE_FLAG) {
+            mSpriteAtlas.draw(canvas, SpriteAtlas.SPRITE_FLAG, left, top);
+        } else if (state == Board.STATE_QUESTION) {
+            mSpriteAtlas.draw(canvas, SpriteAtlas.SPRITE_QUESTION, left, top);
+        }
+        canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mGridPaint);
+    }
+
+    @Override
+    public void onCellsChanged(long[] cells, int count) {
+        invalidate();
+    }
+
+    @Override
+    public void onGameOver(int x, int y) {
+        Toast.makeText(getContext(), getResources().getString(R.string.endless_game_over, mBoard.getOpenedCount()),
+                Toast.LENGTH_LONG).show();
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mBoard != null && mGestureDetector.onTouchEvent(event)) {
+            return true;
+        }
+        return super.onTouchEvent(event);
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.yulin.minesweep.widget;
+
+import android.content.res.Resources;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.graphics.Rect;
+
+import com.yulin.minesweep.R;
+
+/**
+ * 雷、旗、问号图片的进程级缓存
+ *
+ * 每张图片只解码1次，并缩放到方格大小后横向拼在同1张Bitmap上，画的时候按方格大小1:1复制，不再每次缩放。
+ * 所有方格和棋盘共用1份，内存和方格数量无关。只能在主线程使用
+ */
+public final class SpriteAtlas {
+
+    public static final int SPRITE_BUG = 0;
+    public static final int SPRITE_FLAG = 1;
+    public static final int SPRITE_QUESTION = 2;
+
+    private static final int[] DRAWABLES = {R.drawable.bug, R.drawable.flag, R.drawable.question};
+
+    private static SpriteAtlas sInstance;
+
+    private final Bitmap mAtlas;
+    private final int mSize;
+
+    private final Rect mSrcRect = new Rect();
+    private final Rect mDstRect = new Rect();
+    private final Paint mPaint = new Paint(Paint.FILTER_BITMAP_FLAG);
+
+    /**
+     * 获取指定方格大小的图片缓存，方格大小变化时重新生成。旧的缓存可能仍被其它控件引用，不主动recycle
+     * @param size 方格边长，单位px
+     * */
+    public static SpriteAtlas obtain(Resources res, int size) {
+        if (sInstance == null || sInstance.mSize != size) {
+            sInstance = new SpriteAtlas(res, size);
+        }
+        return sInstance;
+    }
+
+    private SpriteAtlas(Resources res, int size) {
+        mSize = size;
+        mAtlas = Bitmap.createBitmap(size * DRAWABLES.length, size, Bitmap.Config.ARGB_8888);
+        Canvas canvas = new Canvas(mAtlas);
+        for (int i = 0; i < DRAWABLES.length; i++) {
+            Bitmap sprite = decode(res, DRAWABLES[i], size);
+            mDstRect.set(i * size, 0, (i + 1) * size, size);
+            canvas.drawBitmap(sprite, null, mDstRect, mPaint);
+            sprite.recycle();
+        }
+    }
+
+    /**
+     * 按2的幂降采样解码，解码结果不小于方格大小，再由调用方缩放到方格大小
+     */
+    private static Bitmap decode(Resources res, int resId, int size) {
+        BitmapFactory.Options options = new BitmapFactory.Options();
+        options.inJustDecodeBounds = true;
+        BitmapFactory.decodeResource(res, resId, options);
+
+        int sampleSize = 1;
+        while (options.outWidth / (sampleSize * 2) >= size && options.outHeight / (sampleSize * 2) >= size) {
+            sampleSize *= 2;
+        }
+        options.inJustDecodeBounds = false;
+        options.inSampleSize = sampleSize;
+        return BitmapFactory.decodeResource(res, resId, options);
+    }
+
+    /**
+     * 在指定位置画出1个图片，大小为方格大小
+     * @param sprite SPRITE_BUG, SPRITE_FLAG, SPRITE_QUESTION
+     * */
+    public void draw(Canvas canvas, int sprite, int left, int top) {
+        mSrcRect.set(sprite * mSize, 0, (sprite + 1) * mSize, mSize);
+        mDstRect.set(left, top, left + mSize, top + mSize);
+        canvas.drawBitmap(mAtlas, mSrcRect, mDstRect, null);
+    }
+
+    public int getSize() {
+        return mSize;
+    }
+
+}
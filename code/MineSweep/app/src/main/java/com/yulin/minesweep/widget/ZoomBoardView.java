@@ -0,0 +1,411 @@
+package com.yulin.minesweep.widget;
+
+import android.content.Context;
+import android.graphics.Canvas;
+import android.graphics.Paint;
+import android.util.AttributeSet;
+import android.view.GestureDetector;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
+import android.view.View;
+import android.widget.Toast;
+
+import com.yulin.minesweep.R;
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardDelta;
+import com.yulin.minesweep.engine.OnBoardDeltaListener;
+import com.yulin.minesweep.i.IGridView;
+import com.yulin.minesweep.perf.Perf;
+
+/**
+ * 可缩放、拖动的长方形棋盘，用于中等、专家和自定义大小
+ *
+ * 每帧只画屏幕内的方格，点击由{@link BoardInput}只换算1次坐标，画1帧的耗时取决于屏幕上的方格数，和棋盘大小无关。
+ * 方格按固定边长画在棋盘坐标中，缩放和拖动由Canvas的变换完成。缩小时方格最小为{@link #MIN_CELL_SIZE_DP}，
+ * 屏幕上的方格数有上限
+ */
+public class ZoomBoardView extends View implements IGridView, BoardInput.Target, OnBoardDeltaListener {
+
+    private static final String TAG = "houchenl_ZoomBoardView";
+
+    // 缩放为1时方格的边长
+    private static final int CELL_SIZE_DP = 40;
+    // 缩小时方格在屏幕上的最小边长
+    private static final int MIN_CELL_SIZE_DP = 12;
+    // 最大放大倍数
+    private static final float MAX_SCALE = 2f;
+
+    private static final char[] NUMBERS = {'0', '1', '2', '3', '4', '5', '6', '7', '8'};
+
+    private Board mBoard;
+
+    private int mStatus = STATUS_OPEN;
+
+    // 棋盘坐标中方格的边长，单位px
+    private int mCellSize;
+    private float mMinScale;
+    private float mScale = 1f;
+
+    // 屏幕左上角对应的棋盘坐标乘以缩放，单位为屏幕px：屏幕x = 棋盘x * mScale - mOffsetX
+    private float mOffsetX;
+    private float mOffsetY;
+
+    private int mColorDefault;
+    private int mColorOpened;
+    private int mColorHint;
+
+    // 提示的方格，-1表示没有
+    private int mHintIndex = -1;
+
+    private Paint mFillPaint;
+    private Paint mGridPaint;
+    private Paint mTextPaint;
+
+    // 画网格线用，每条线4个数，按屏幕能放下的最多行列数分配
+    private float[] mGridLines;
+
+    private SpriteAtlas mSpriteAtlas;
+
+    // 只处理拖动，点击由mInput处理
+    private GestureDetector mGestureDetector;
+    private ScaleGestureDetector mScaleDetector;
+    private BoardInput mInput;
+
+    public ZoomBoardView(Context context) {
+        this(context, null);
+    }
+
+    public ZoomBoardView(Context context, AttributeSet attrs) {
+        this(context, attrs, 0);
+    }
+
+    public ZoomBoardView(Context context, AttributeSet attrs, int defStyleAttr) {
+        super(context, attrs, defStyleAttr);
+
+        float density = getResources().getDisplayMetrics().density;
+        mCellSize = (int) (CELL_SIZE_DP * density);
+
+        mColorDefault = getResources().getColor(R.color.grid_bg_default);
+        mColorOpened = getResources().getColor(R.color.grid_bg_opened);
+        mColorHint = getResources().getColor(R.color.grid_bg_hint);
+
+        mFillPaint = new Paint();
+        mFillPaint.setStyle(Paint.Style.FILL);
+
+        mGridPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mGridPaint.setStyle(Paint.Style.STROKE);
+        mGridPaint.setColor(getResources().getColor(R.color.grid_line));
+        mGridPaint.setStrokeWidth(3);
+
+        mTextPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        mTextPaint.setColor(getResources().getColor(R.color.grid_text));
+        mTextPaint.setTextAlign(Paint.Align.CENTER);
+        mTextPaint.setTextSize(mCellSize * 0.6f);
+
+        mGestureDetector = new GestureDetector(context, new GestureDetector.SimpleOnGestureListener() {
+            @Override
+            public boolean onDown(MotionEvent e) {
+                return true;
+            }
+
+            @Override
+            public boolean onScroll(MotionEvent e1, MotionEvent e2, float distanceX, float distanceY) {
+                mOffsetX += distanceX;
+                mOffsetY += distanceY;
+                clampOffset();
+                invalidate();
+                return true;
+            }
+        });
+        // 长按由mInput处理
+        mGestureDetector.setIsLongpressEnabled(false);
+
+        mScaleDetector = new ScaleGestureDetector(context, new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+            @Override
+            public boolean onScale(ScaleGestureDetector detector) {
+                setScale(mScale * detector.getScaleFactor(), detector.getFocusX(), detector.getFocusY());
+                return true;
+            }
+        });
+        mInput = new BoardInput(this);
+    }
+
+    @Override
+    public void setBoard(Board board) {
+        if (mBoard != null) {
+            mBoard.removeOnBoardDeltaListener(this);
+        }
+        mBoard = board;
+        mHintIndex = -1;
+        mBoard.addOnBoardDeltaListener(this);
+        mInput.reset();
+        updateScaleRange();
+        invalidate();
+    }
+
+    @Override
+    public Board getBoard() {
+        return mBoard;
+    }
+
+    @Override
+    public int getStatus() {
+        return mStatus;
+    }
+
+    @Override
+    public void setStatus(int status) {
+        mStatus = status;
+    }
+
+    @Override
+    public void setInstantOpen(boolean instantOpen) {
+        mInput.setInstantOpen(instantOpen);
+    }
+
+    @Override
+    public void showHint(int index) {
+        mHintIndex = index;
+        if (index >= 0) {
+            scrollToCell(index);
+        }
+        invalidate();
+    }
+
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        mSpriteAtlas = SpriteAtlas.obtain(getResources(), mCellSize);
+        updateScaleRange();
+    }
+
+    /**
+     * 最小缩放取整个棋盘放进屏幕和方格最小边长中较大的一个，大棋盘缩到最小时也只显示一部分
+     */
+    private void updateScaleRange() {
+        if (mBoard == null || getWidth() == 0 || getHeight() == 0) {
+            return;
+        }
+        float fit = Math.min((float) getWidth() / (mBoard.getColumnCount() * mCellSize),
+                (float) getHeight() / (mBoard.getRowCount() * mCellSize));
+        float min = MIN_CELL_SIZE_DP * getResources().getDisplayMetrics().density / mCellSize;
+        mMinScale = Math.min(Math.max(fit, min), MAX_SCALE);
+
+        // 屏幕上最多的行列数，多1格给部分露出的方格
+        float minCellOnScreen = mCellSize * mMinScale;
+        int maxColumns = (int) (getWidth() / minCellOnScreen) + 2;
+        int maxRows = (int) (getHeight() / minCellOnScreen) + 2;
+        mGridLines = new float[(maxColumns + maxRows + 2) * 4];
+
+        // 新棋盘从最小缩放开始，尽量显示整个棋盘
+        mScale = mMinScale;
+        mOffsetX = 0;
+        mOffsetY = 0;
+        clampOffset();
+    }
+
+    // 以屏幕上的(focusX, focusY)为中心缩放，该点下的方格位置不变
+    private void setScale(float scale, float focusX, float focusY) {
+        scale = Math.max(mMinScale, Math.min(scale, MAX_SCALE));
+        if (scale == mScale) {
+            return;
+        }
+        mOffsetX = (focusX + mOffsetX) * scale / mScale - focusX;
+        mOffsetY = (focusY + mOffsetY) * scale / mScale - focusY;
+        mScale = scale;
+        clampOffset();
+        invalidate();
+    }
+
+    // 棋盘比屏幕小时居中，比屏幕大时不能拖出边界
+    private void clampOffset() {
+        if (mBoard == null) {
+            return;
+        }
+        float boardWidth = mBoard.getColumnCount() * mCellSize * mScale;
+        float boardHeight = mBoard.getRowCount() * mCellSize * mScale;
+        mOffsetX = clamp(mOffsetX, boardWidth, getWidth());
+        mOffsetY = clamp(mOffsetY, boardHeight, getHeight());
+    }
+
+    private static float clamp(float offset, float boardSize, int viewSize) {
+        if (boardSize <= viewSize) {
+            return (boardSize - viewSize) / 2;
+        }
+        return Math.max(0, Math.min(offset, boardSize - viewSize));
+    }
+
+    // 方格不在屏幕内时，把它移到屏幕中央
+    private void scrollToCell(int index) {
+        float size = mCellSize * mScale;
+        float left = mBoard.getColumn(index) * size - mOffsetX;
+        float top = mBoard.getRow(index) * size - mOffsetY;
+        if (left < 0 || top < 0 || left + size > getWidth() || top + size > getHeight()) {
+            mOffsetX += left - (getWidth() - size) / 2;
+            mOffsetY += top - (getHeight() - size) / 2;
+            clampOffset();
+        }
+    }
+
+    @Override
+    protected void onDraw(Canvas canvas) {
+        long start = Perf.begin(Perf.FRAME_DRAW);
+        super.onDraw(canvas);
+        if (mBoard != null && mSpriteAtlas != null) {
+            drawVisibleCells(canvas);
+        }
+        Perf.end(Perf.FRAME_DRAW, start);
+        Perf.markFrameDrawn();
+    }
+
+    /**
+     * 只画屏幕内的方格：先用1个矩形铺满未打开的底色，再逐格画打开的方格和图标，最后1次画出所有网格线
+     */
+    private void drawVisibleCells(Canvas canvas) {
+        float size = mCellSize * mScale;
+        int firstColumn = Math.max(0, (int) (mOffsetX / size));
+        int lastColumn = Math.min(mBoard.getColumnCount() - 1, (int) ((mOffsetX + getWidth()) / size));
+        int firstRow = Math.max(0, (int) (mOffsetY / size));
+        int lastRow = Math.min(mBoard.getRowCount() - 1, (int) ((mOffsetY + getHeight()) / size));
+        if (firstColumn > lastColumn || firstRow > lastRow) {
+            return;
+        }
+
+        canvas.save();
+        canvas.translate(-mOffsetX, -mOffsetY);
+        canvas.scale(mScale, mScale);
+
+        int left = firstColumn * mCellSize;
+        int top = firstRow * mCellSize;
+        int right = (lastColumn + 1) * mCellSize;
+        int bottom = (lastRow + 1) * mCellSize;
+        mFillPaint.setColor(mColorDefault);
+        canvas.drawRect(left, top, right, bottom, mFillPaint);
+
+        int columnCount = mBoard.getColumnCount();
+        for (int r = firstRow; r <= lastRow; r++) {
+            int y = r * mCellSize;
+            int index = r * columnCount + firstColumn;
+            for (int c = firstColumn; c <= lastColumn; c++, index++) {
+                drawCell(canvas, index, c * mCellSize, y);
+            }
+        }
+
+        int n = 0;
+        for (int c = firstColumn; c <= lastColumn + 1; c++) {
+            float x = c * mCellSize;
+            mGridLines[n++] = x;
+            mGridLines[n++] = top;
+            mGridLines[n++] = x;
+            mGridLines[n++] = bottom;
+        }
+        for (int r = firstRow; r <= lastRow + 1; r++) {
+            float y = r * mCellSize;
+            mGridLines[n++] = left;
+            mGridLines[n++] = y;
+            mGridLines[n++] = right;
+            mGridLines[n++] = y;
+        }
+        canvas.drawLines(mGridLines, 0, n, mGridPaint);
+        canvas.restore();
+    }
+
+    // 未打开的底色已经铺好，这里只画和底色不同的部分
+    private void drawCell(Canvas canvas, int index, int left, int top) {
+        int state = mBoard.getState(index);
+        if (state == Board.STATE_OPENED) {
+            mFillPaint.setColor(mColorOpened);
+            canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mFillPaint);
+            if (mBoard.isMine(index)) {
+                mSpriteAtlas.draw(canvas, SpriteAtlas.SPRITE_BUG, left, top);
+            } else if (mBoard.getMineCount(index) > 0) {
+                float y = top + mCellSize / 2f - (mTextPaint.descent() + mTextPaint.ascent()) / 2;
+                canvas.drawText(NUMBERS, mBoard.getMineCount(index), 1, left + mCellSize / 2f, y, mTextPaint);
+            }
+        } else if (state == Board.STATE_FLAG) {
+            mSpriteAtlas.draw(canvas, SpriteAtlas.SPRITE_FLAG, left, top);
+        } else if (state == Board.STATE_QUESTION) {
+            mSpriteAtlas.draw(canvas, SpriteAtlas.SPRITE_QUESTION, left, top);
+        } else if (index == mHintIndex) {
+            mFillPaint.setColor(mColorHint);
+            canvas.drawRect(left, top, left + mCellSize, top + mCellSize, mFillPaint);
+        }
+    }
+
+    /**
+     * 每帧重画屏幕内的所有方格，只需要invalidate，同1帧内的多次变化自然合并
+     */
+    @Override
+    public void onDelta(BoardDelta delta) {
+        clearHintIfChanged();
+        invalidate();
+        if (delta.isWin()) {
+            Toast.makeText(getContext(), "success", Toast.LENGTH_SHORT).show();
+        }
+    }
+
+    // 提示的方格被打开或插旗后，提示失效
+    private void clearHintIfChanged() {
+        if (mHintIndex >= 0 && mBoard.getState(mHintIndex) != Board.STATE_IDLE) {
+            mHintIndex = -1;
+        }
+    }
+
+    /**
+     * 屏幕坐标转换为方格序号，不在棋盘内时返回-1
+     */
+    @Override
+    public int getIndexAt(float x, float y) {
+        if (mBoard == null) {
+            return -1;
+        }
+        float size = mCellSize * mScale;
+        float bx = x + mOffsetX;
+        float by = y + mOffsetY;
+        if (bx < 0 || by < 0) {
+            return -1;
+        }
+        return mBoard.getIndex((int) (by / size), (int) (bx / size));
+    }
+
+    @Override
+    public void onOpen(int index) {
+        long start = Perf.begin(Perf.REVEAL);
+        int opened = mBoard.open(index);
+        Perf.end(Perf.REVEAL, start);
+        Perf.record(Perf.MOVE_CELLS, opened);
+    }
+
+    @Override
+    public void onMark(int index) {
+        mBoard.toggleMark(index);
+    }
+
+    /*
+    * 双击已打开的数字方格，尝试自动打开周围所有方格
+    * */
+    @Override
+    public void onDoubleTap(int index) {
+        long start = Perf.begin(Perf.REVEAL);
+        int opened = mBoard.chord(index);
+        Perf.end(Perf.REVEAL, start);
+        Perf.record(Perf.MOVE_CELLS, opened);
+    }
+
+    @Override
+    public boolean onTouchEvent(MotionEvent event) {
+        if (mBoard == null) {
+            return super.onTouchEvent(event);
+        }
+        mScaleDetector.onTouchEvent(event);
+        // 双指缩放时不当作拖动和点击
+        if (mScaleDetector.isInProgress()) {
+            mInput.cancel();
+        } else {
+            mGestureDetector.onTouchEvent(event);
+            mInput.onTouchEvent(event);
+        }
+        return true;
+    }
+
+}
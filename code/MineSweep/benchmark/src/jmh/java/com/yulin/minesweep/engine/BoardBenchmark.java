@@ -0,0 +1,121 @@
+package com.yulin.minesweep.engine;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 棋盘热点：布雷、计算周围雷数、翻开（连续打开空白方格）、双击自动打开
+ *
+ * 和Board放在同一个包中，才能单独测量包内可见的computeMineCounts()
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class BoardBenchmark {
+
+    // 行x列x雷数：初级、中级、专家、超大棋盘，以及雷很稀、翻开时连续打开大片空白的超大棋盘
+    @Param({"9x9x10", "16x16x40", "16x30x99", "1000x1000x150000", "1000x1000x10000"})
+    public String level;
+
+    private Board mBoard;
+    private int mFirstIndex;
+    private long mSeed;
+
+    // 第1次翻开后，周围有未打开的非雷方格的数字方格
+    private int mChordIndex;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] parts = level.split("x");
+        int rowCount = Integer.parseInt(parts[0]);
+        int columnCount = Integer.parseInt(parts[1]);
+        int mineTotal = Integer.parseInt(parts[2]);
+        mBoard = new Board(rowCount, columnCount, mineTotal, 1);
+        mFirstIndex = mBoard.getIndex(rowCount / 2, columnCount / 2);
+        mBoard.placeMines(mFirstIndex);
+        mBoard.open(mFirstIndex);
+        mChordIndex = findChordCell();
+    }
+
+    private int findChordCell() {
+        for (int i = 0; i < mBoard.getCellCount(); i++) {
+            if (mBoard.getState(i) != Board.STATE_OPENED || mBoard.getMineCount(i) == 0) {
+                continue;
+            }
+            int r = mBoard.getRow(i);
+            int c = mBoard.getColumn(i);
+            for (int nr = r - 1; nr <= r + 1; nr++) {
+                for (int nc = c - 1; nc <= c + 1; nc++) {
+                    int n = mBoard.getIndex(nr, nc);
+                    if (n >= 0 && mBoard.getState(n) == Board.STATE_IDLE && !mBoard.isMine(n)) {
+                        return i;
+                    }
+                }
+            }
+        }
+        return mFirstIndex;
+    }
+
+    /**
+     * 布雷，包括计算周围雷数
+     */
+    @Benchmark
+    public Board placeMines() {
+        mBoard.reset(mSeed++);
+        mBoard.placeMines(mFirstIndex);
+        return mBoard;
+    }
+
+    @Benchmark
+    public int computeMineCounts() {
+        mBoard.computeMineCounts();
+        return mBoard.getMineCount(mFirstIndex);
+    }
+
+    /**
+     * 重玩同一局并翻开第1个方格，雷很稀的棋盘会连续打开大片空白
+     */
+    @Benchmark
+    public int reveal() {
+        mBoard.restart();
+        return mBoard.open(mFirstIndex);
+    }
+
+    /**
+     * 在reveal()的基础上，给1个数字方格周围的雷插旗后双击，减去reveal()的时间即为插旗和双击的时间
+     */
+    @Benchmark
+    public int chord() {
+        mBoard.restart();
+        mBoard.open(mFirstIndex);
+        int r = mBoard.getRow(mChordIndex);
+        int c = mBoard.getColumn(mChordIndex);
+        for (int nr = r - 1; nr <= r + 1; nr++) {
+            for (int nc = c - 1; nc <= c + 1; nc++) {
+                int n = mBoard.getIndex(nr, nc);
+                if (n >= 0 && mBoard.isMine(n)) {
+                    mBoard.toggleMark(n);
+                }
+            }
+        }
+        return mBoard.chord(mChordIndex);
+    }
+
+    /**
+     * 周围插旗数不等于雷数时双击不响应，棋盘不变，只测量比较增量维护的插旗数的部分
+     */
+    @Benchmark
+    public int chordRejected() {
+        return mBoard.chord(mChordIndex);
+    }
+
+}
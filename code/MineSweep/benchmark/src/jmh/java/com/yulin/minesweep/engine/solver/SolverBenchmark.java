@@ -0,0 +1,94 @@
+package com.yulin.minesweep.engine.solver;
+
+import com.yulin.minesweep.engine.Board;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 求解和概率计算：先用solveStep()把棋盘推进到需要猜测的局面，再反复对这个局面求解，棋盘不变
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SolverBenchmark {
+
+    // 行x列x雷数：初级、中级、专家、超大棋盘
+    @Param({"9x9x10", "16x16x40", "16x30x99", "1000x1000x150000"})
+    public String level;
+
+    // 准备局面时最多推进的步数，超大棋盘推进到底太慢
+    private static final int MAX_STEPS = 200;
+
+    private Board mBoard;
+    private Solver mSolver;
+    private ProbabilityEngine mProbabilityEngine;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        String[] parts = level.split("x");
+        int rowCount = Integer.parseInt(parts[0]);
+        int columnCount = Integer.parseInt(parts[1]);
+        int mineTotal = Integer.parseInt(parts[2]);
+        mSolver = new Solver();
+        mProbabilityEngine = new ProbabilityEngine();
+
+        // 找1局第1次翻开后没有直接赢的棋盘
+        for (long seed = 1; ; seed++) {
+            mBoard = new Board(rowCount, columnCount, mineTotal, seed);
+            mBoard.open(mBoard.getIndex(rowCount / 2, columnCount / 2));
+            for (int step = 0; step < MAX_STEPS && mBoard.getStatus() == Board.STATUS_PLAYING; step++) {
+                if (!mSolver.solveStep(mBoard) || mSolver.getSafeCellCount() == 0) {
+                    break;
+                }
+                int[] safeCells = mSolver.getSafeCells();
+                int count = mSolver.getSafeCellCount();
+                for (int i = 0; i < count; i++) {
+                    mBoard.open(safeCells[i]);
+                }
+            }
+            if (mBoard.getStatus() == Board.STATUS_PLAYING) {
+                break;
+            }
+        }
+        mProbabilityEngine.compute(mBoard);
+    }
+
+    @Benchmark
+    public int solve() {
+        mSolver.solve(mBoard);
+        return mSolver.getSafeCellCount();
+    }
+
+    @Benchmark
+    public int solveStep() {
+        mSolver.solveStep(mBoard);
+        return mSolver.getSafeCellCount();
+    }
+
+    /**
+     * 局面没有变化，所有分量都命中缓存
+     */
+    @Benchmark
+    public double[] probabilityCached() {
+        return mProbabilityEngine.compute(mBoard);
+    }
+
+    /**
+     * 新的实例，所有分量都要穷举
+     */
+    @Benchmark
+    public double[] probabilityCold() {
+        return new ProbabilityEngine().compute(mBoard);
+    }
+
+}
@@ -0,0 +1,335 @@
+package com.yulin.minesweep.engine;
+
+import java.util.Arrays;
+
+/**
+ * 按行对齐的位图，一次处理64个方格：计算周围雷数、连续打开空白方格
+ *
+ * 每行占mWords个long，第c列在第c >>> 6个long的第c & 63位，行尾多余的位总是0。
+ * 左右相邻方格是同一行左移、右移1位，上下相邻方格是相邻行的同一位，不需要逐格查表。
+ * <ul>
+ * <li>周围雷数：上下3行的雷位图各移位，得到8个“周围这一格是雷”的位图，用按位的加法器累加成4个位平面，
+ * 每个位平面是周围雷数的1个二进制位，最后逐格拼成字节。同时得到“不是雷且周围没有雷”的空白位图</li>
+ * <li>连续打开：空白且未打开、未标记的方格为可扩展区域，从起点反复向周围8格膨胀、和可扩展区域求交，直到不再变化，
+ * 最后再膨胀1次、和未打开未标记的方格求交，就是要打开的方格。一行中连续的1用加法的进位1次填满，
+ * 上下方向逐行向下、再逐行向上交替扫描，一般几遍就收敛，只扫描区域所在的行</li>
+ * </ul>
+ * 方格状态仍由{@link Board}按字节保存，这里只在连续打开时按需由状态生成扫描到的行的位图。不是线程安全的
+ */
+final class BitBoard {
+
+    private final int mRowCount;
+    private final int mColumnCount;
+    // 每行的long数
+    private final int mWords;
+    // 每行最后1个long中有效的位
+    private final long mLastMask;
+
+    // 空白方格：不是雷且周围雷数为0
+    private final long[] mEmpty;
+    private boolean mEmptyValid;
+
+    // 连续打开时的区域、未打开未标记的方格、可扩展的方格（空白且未打开未标记）
+    private final long[] mRegion;
+    private final long[] mIdle;
+    private final long[] mPassable;
+    // 每行的位图在第几次连续打开时生成，不等于mStamp时需要重新生成
+    private final int[] mRowStamps;
+    private int mStamp;
+    // 1行的临时位图
+    private final long[] mRow;
+    private final long[] mRowAbove;
+    private final long[] mRowBelow;
+
+    BitBoard(int rowCount, int columnCount) {
+        mRowCount = rowCount;
+        mColumnCount = columnCount;
+        mWords = (columnCount + 63) >>> 6;
+        mLastMask = -1L >>> (-columnCount & 63);
+        int size = rowCount * mWords;
+        mEmpty = new long[size];
+        mRegion = new long[size];
+        mIdle = new long[size];
+        mPassable = new long[size];
+        mRowStamps = new int[rowCount];
+        mRow = new long[mWords];
+        mRowAbove = new long[mWords];
+        mRowBelow = new long[mWords];
+    }
+
+    /**
+     * 雷被逐个改过，空白位图下次连续打开时由周围雷数重新生成
+     */
+    void invalidate() {
+        mEmptyValid = false;
+    }
+
+    /**
+     * 由雷位图计算所有方格的周围雷数，同时生成空白位图
+     * @param mines 按方格序号的雷位图，和{@link Board}中的相同
+     * @param counts 写入每个方格的周围雷数
+     */
+    void computeMineCounts(long[] mines, byte[] counts) {
+        int words = mWords;
+        long[] up = mRowAbove;
+        long[] row = mRow;
+        long[] down = mRowBelow;
+        Arrays.fill(up, 0);
+        loadRow(mines, 0, row);
+        for (int r = 0; r < mRowCount; r++) {
+            if (r + 1 < mRowCount) {
+                loadRow(mines, r + 1, down);
+            } else {
+                Arrays.fill(down, 0);
+            }
+            int base = r * mColumnCount;
+            for (int w = 0; w < words; w++) {
+                long a = up[w];
+                long b = shiftLeft(up, w);
+                long c = shiftRight(up, w);
+                long d = shiftLeft(row, w);
+                long e = shiftRight(row, w);
+                long f = down[w];
+                long g = shiftLeft(down, w);
+                long h = shiftRight(down, w);
+                // 8个1位数相加：先3个一组用全加器得到和与进位，再把同权的位相加
+                long s1 = a ^ b ^ c;
+                long k1 = (a & b) | (c & (a ^ b));
+                long s2 = d ^ e ^ f;
+                long k2 = (d & e) | (f & (d ^ e));
+                long s3 = g ^ h;
+                long k3 = g & h;
+                long b0 = s1 ^ s2 ^ s3;
+                long k4 = (s1 & s2) | (s3 & (s1 ^ s2));
+                long t = k1 ^ k2 ^ k3;
+                long m1 = (k1 & k2) | (k3 & (k1 ^ k2));
+                long b1 = t ^ k4;
+                long m2 = t & k4;
+                long b2 = m1 ^ m2;
+                long b3 = m1 & m2;
+
+                long valid = w == words - 1 ? mLastMask : -1L;
+                mEmpty[r * words + w] = ~(b0 | b1 | b2 | b3 | row[w]) & valid;
+
+                int offset = base + (w << 6);
+                int end = Math.min(64, mColumnCount - (w << 6));
+                for (int j = 0; j < end; j++) {
+                    counts[offset + j] = (byte) (((b0 >>> j) & 1) | (((b1 >>> j) & 1) << 1)
+                            | (((b2 >>> j) & 1) << 2) | (((b3 >>> j) & 1) << 3));
+                }
+            }
+            long[] next = up;
+            up = row;
+            row = down;
+            down = next;
+        }
+        mEmptyValid = true;
+    }
+
+    // 从按方格序号的位图中取出第r行
+    private void loadRow(long[] bits, int r, long[] out) {
+        int base = r * mColumnCount;
+        for (int w = 0; w < mWords; w++) {
+            int offset = base + (w << 6);
+            int i = offset >>> 6;
+            int shift = offset & 63;
+            long v = bits[i] >>> shift;
+            if (shift != 0 && i + 1 < bits.length) {
+                v |= bits[i + 1] << (64 - shift);
+            }
+            out[w] = v;
+        }
+        out[mWords - 1] &= mLastMask;
+    }
+
+    // 第w个long整体左移1位，即每个方格取左边1格的值
+    private static long shiftLeft(long[] row, int w) {
+        return w > 0 ? (row[w] << 1) | (row[w - 1] >>> 63) : row[w] << 1;
+    }
+
+    // 第w个long整体右移1位，即每个方格取右边1格的值
+    private static long shiftRight(long[] row, int w) {
+        return w + 1 < row.length ? (row[w] >>> 1) | (row[w + 1] << 63) : row[w] >>> 1;
+    }
+
+    // 由周围雷数重新生成空白位图
+    private void rebuildEmpty(long[] mines, byte[] counts) {
+        Arrays.fill(mEmpty, 0);
+        for (int r = 0; r < mRowCount; r++) {
+            int base = r * mColumnCount;
+            for (int c = 0; c < mColumnCount; c++) {
+                int i = base + c;
+                if (counts[i] == 0 && (mines[i >>> 6] & (1L << i)) == 0) {
+                    mEmpty[r * mWords + (c >>> 6)] |= 1L << c;
+                }
+            }
+        }
+        mEmptyValid = true;
+    }
+
+    /**
+     * 连续打开空白方格：cells[0, size)中空白方格周围的未打开方格，遇到空白方格继续扩展。插旗或问号的方格不会打开
+     * @param cells 已经打开的方格，要打开的方格按行追加在后面
+     * @param states 方格状态，这里不修改
+     * @return 追加后cells中的方格数
+     */
+    int fill(int[] cells, int size, long[] mines, byte[] states, byte[] counts) {
+        int lo = mRowCount;
+        int hi = -1;
+        int stamp = nextStamp();
+        for (int i = 0; i < size; i++) {
+            int index = cells[i];
+            if (counts[index] != 0 || (mines[index >>> 6] & (1L << index)) != 0) {
+                continue;
+            }
+            if (!mEmptyValid) {
+                rebuildEmpty(mines, counts);
+            }
+            int r = index / mColumnCount;
+            int c = index - r * mColumnCount;
+            prepareRow(r, stamp, states);
+            mRegion[r * mWords + (c >>> 6)] |= 1L << c;
+            lo = Math.min(lo, r);
+            hi = Math.max(hi, r);
+        }
+        if (hi < 0) {
+            return size;
+        }
+
+        boolean changed = true;
+        while (changed) {
+            changed = false;
+            for (int r = Math.max(lo - 1, 0); r <= hi + 1 && r < mRowCount; r++) {
+                if (grow(r, stamp, states)) {
+                    changed = true;
+                    lo = Math.min(lo, r);
+                    hi = Math.max(hi, r);
+                }
+            }
+            for (int r = Math.min(hi + 1, mRowCount - 1); r >= lo - 1 && r >= 0; r--) {
+                if (grow(r, stamp, states)) {
+                    changed = true;
+                    lo = Math.min(lo, r);
+                    hi = Math.max(hi, r);
+                }
+            }
+        }
+
+        // 区域再膨胀1次就是要打开的方格
+        for (int r = Math.max(lo - 1, 0); r <= hi + 1 && r < mRowCount; r++) {
+            int offset = r * mWords;
+            int base = r * mColumnCount;
+            for (int w = 0; w < mWords; w++) {
+                long bits = dilate(r, w) & mIdle[offset + w];
+                while (bits != 0) {
+                    cells[size++] = base + (w << 6) + Long.numberOfTrailingZeros(bits);
+                    bits &= bits - 1;
+                }
+            }
+        }
+        return size;
+    }
+
+    private int nextStamp() {
+        if (++mStamp == 0) {
+            Arrays.fill(mRowStamps, 0);
+            mStamp = 1;
+        }
+        return mStamp;
+    }
+
+    // 第1次扫描到第r行时清空区域，由方格状态生成未打开和可扩展的位图
+    private void prepareRow(int r, int stamp, byte[] states) {
+        if (r < 0 || r >= mRowCount || mRowStamps[r] == stamp) {
+            return;
+        }
+        mRowStamps[r] = stamp;
+        int offset = r * mWords;
+        int base = r * mColumnCount;
+        for (int w = 0; w < mWords; w++) {
+            int start = w << 6;
+            int end = Math.min(64, mColumnCount - start);
+            long idle = 0;
+            for (int j = 0; j < end; j++) {
+                if (states[base + start + j] == Board.STATE_IDLE) {
+                    idle |= 1L << j;
+                }
+            }
+            mRegion[offset + w] = 0;
+            mIdle[offset + w] = idle;
+            mPassable[offset + w] = idle & mEmpty[offset + w];
+        }
+    }
+
+    /**
+     * 周围8格在区域中的可扩展方格加入第r行的区域，并沿行内连续的可扩展方格填满
+     * @return 第r行的区域是否变大
+     */
+    private boolean grow(int r, int stamp, byte[] states) {
+        prepareRow(r - 1, stamp, states);
+        prepareRow(r, stamp, states);
+        prepareRow(r + 1, stamp, states);
+        int offset = r * mWords;
+        boolean grown = false;
+        for (int w = 0; w < mWords; w++) {
+            long added = dilate(r, w) & mPassable[offset + w] & ~mRegion[offset + w];
+            mRow[w] = added;
+            grown |= added != 0;
+        }
+        if (!grown) {
+            return false;
+        }
+        fillRuns(mRow, mPassable, offset);
+        for (int w = 0; w < mWords; w++) {
+            mRegion[offset + w] |= mRow[w];
+        }
+        return true;
+    }
+
+    // 区域中第r - 1、r、r + 1行的并集再左右各扩展1格，即第r行中周围8格或自身在区域中的方格
+    private long dilate(int r, int w) {
+        long[] region = mRegion;
+        int offset = r * mWords + w;
+        long v = region[offset];
+        long left = w > 0 ? region[offset - 1] : 0;
+        long right = w + 1 < mWords ? region[offset + 1] : 0;
+        if (r > 0) {
+            int o = offset - mWords;
+            v |= region[o];
+            left |= w > 0 ? region[o - 1] : 0;
+            right |= w + 1 < mWords ? region[o + 1] : 0;
+        }
+        if (r + 1 < mRowCount) {
+            int o = offset + mWords;
+            v |= region[o];
+            left |= w > 0 ? region[o - 1] : 0;
+            right |= w + 1 < mWords ? region[o + 1] : 0;
+        }
+        return v | (v << 1) | (left >>> 63) | (v >>> 1) | (right << 63);
+    }
+
+    /**
+     * 把x扩展为passable中包含x的各段连续的1，x必须是passable第offset起1行的子集。
+     * x加到passable上时进位沿着连续的1传到这一段的末尾，异或得到从x到段尾的位；
+     * 位序反转后再做1次得到从x到段首的位。跨long时用进位继续
+     */
+    private void fillRuns(long[] x, long[] passable, int offset) {
+        long carry = 0;
+        for (int w = 0; w < mWords; w++) {
+            long p = passable[offset + w];
+            long v = x[w] | (carry & p);
+            long f = ((p ^ (p + v)) | v) & p;
+            x[w] = f;
+            carry = f >>> 63;
+        }
+        carry = 0;
+        for (int w = mWords - 1; w >= 0; w--) {
+            long p = Long.reverse(passable[offset + w]);
+            long v = Long.reverse(x[w]) | (carry & p);
+            long f = ((p ^ (p + v)) | v) & p;
+            x[w] = Long.reverse(f);
+            carry = f >>> 63;
+        }
+    }
+
+}
@@ -0,0 +1,713 @@
+package com.yulin.minesweep.engine;
+
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * 扫雷棋盘，纯Java实现，不依赖Android
+ *
+ * 所有方格数据存放在扁平数组中，按序号 index = row * columnCount + column 访问：
+ * 是否含雷用long[]位图，周围雷数和方格状态各用1个byte。
+ * 雷在第1次翻开方格时才由{@link MinePlacer}按种子布下，保证第1次点击不会踩到雷
+ */
+public class Board {
+
+    // 4种状态：未打开默认、未打开插旗、未打开问号、打开
+    public static final byte STATE_IDLE = 0;
+    public static final byte STATE_FLAG = 1;
+    public static final byte STATE_QUESTION = 2;
+    public static final byte STATE_OPENED = 3;
+
+    // 游戏状态：进行中、胜利、失败
+    public static final int STATUS_PLAYING = 0;
+    public static final int STATUS_WON = 1;
+    public static final int STATUS_LOST = 2;
+
+    // toByteArray()的格式版本
+    private static final byte FORMAT_VERSION = 1;
+
+    // 玩家操作：翻开、插旗或问号、双击
+    public static final int MOVE_OPEN = 0;
+    public static final int MOVE_MARK = 1;
+    public static final int MOVE_CHORD = 2;
+
+    private static final int BITS_FILL_MIN = 1024;
+
+    private static final OnBoardDeltaListener[] NO_LISTENERS = new OnBoardDeltaListener[0];
+
+    private final int mRowCount;
+    private final int mColumnCount;
+    private final int mCellCount;
+    private final int mMineTotal;
+
+    // 布雷用的种子
+    private long mSeed;
+    private boolean mMinesPlaced;
+    // 雷由setMine()逐个放置，不能由种子重新生成
+    private boolean mCustomMines;
+    // 第1次翻开的方格，布雷时避开它和周围8格
+    private int mFirstIndex = -1;
+    private MinePlacer mPlacer;
+
+    // 是否含雷，每个方格1位
+    private final long[] mMines;
+    // 本方格周围九宫格范围内雷的个数
+    private final byte[] mMineCounts;
+    // 方格状态
+    private final byte[] mStates;
+    // 按行对齐的位图，计算周围雷数和连续打开空白方格时64格并行
+    private final BitBoard mBits;
+    // 逐格连续打开超过这个方格数后改用mBits。位图每扫描1行的耗时和列数成正比，小片空白逐格扩展更快
+    private final int mBitsFillSize;
+    // 周围8格中插旗、问号的个数，标记变化时增量更新，双击时不用再数
+    private final byte[] mFlagsAround;
+    private final byte[] mQuestionsAround;
+    private final NeighborTable mNeighbors;
+
+    /*
+    * 一次操作中状态变化的方格序号，同时作为连续打开空白方格时的队列：方格入队时即置为打开状态，
+    * 打开状态本身就是已访问标记，每个方格最多入队一次，整个过程不递归、不装箱。
+    * 踩雷后打开的方格、胜利时自动插旗的雷也追加在后面，操作结束时复制成1个BoardDelta通知
+    * */
+    private final int[] mOpened;
+    // mOpened中每个方格变化前的状态，撤销时恢复
+    private final byte[] mOldStates;
+    private int mOpenedSize;
+
+    private int mOpenedCount;
+    private int mFlagCount;
+    private int mStatus = STATUS_PLAYING;
+
+    // 注册很少、通知很多，注册时复制整个数组，通知时不用加锁或复制
+    private OnBoardDeltaListener[] mDeltaListeners = NO_LISTENERS;
+
+    public Board(int rowCount, int columnCount, int mineTotal) {
+        this(rowCount, columnCount, mineTotal, new Random().nextLong());
+    }
+
+    public Board(int rowCount, int columnCount, int mineTotal, long seed) {
+        if (rowCount <= 0 || columnCount <= 0) {
+            throw new IllegalArgumentException("rowCount " + rowCount + ", columnCount " + columnCount);
+        }
+        if (mineTotal < 0 || mineTotal >= rowCount * columnCount) {
+            throw new IllegalArgumentException("mineTotal " + mineTotal);
+        }
+        mRowCount = rowCount;
+        mColumnCount = columnCount;
+        mCellCount = rowCount * columnCount;
+        mMineTotal = mineTotal;
+        mSeed = seed;
+
+        mMines = new long[(mCellCount + 63) >>> 6];
+        mMineCounts = new byte[mCellCount];
+        mStates = new byte[mCellCount];
+        mOpened = new int[mCellCount];
+        mOldStates = new byte[mCellCount];
+        mFlagsAround = new byte[mCellCount];
+        mQuestionsAround = new byte[mCellCount];
+        mNeighbors = NeighborTable.get(rowCount, columnCount);
+        mBits = new BitBoard(rowCount, columnCount);
+        mBitsFillSize = Math.max(BITS_FILL_MIN, columnCount * 4);
+    }
+
+    /**
+     * 注册变化监听，之后每次操作回调1次。没有监听者时操作不分配内存
+     */
+    public void addOnBoardDeltaListener(OnBoardDeltaListener listener) {
+        OnBoardDeltaListener[] listeners = Arrays.copyOf(mDeltaListeners, mDeltaListeners.length + 1);
+        listeners[mDeltaListeners.length] = listener;
+        mDeltaListeners = listeners;
+    }
+
+    public void removeOnBoardDeltaListener(OnBoardDeltaListener listener) {
+        for (int i = 0; i < mDeltaListeners.length; i++) {
+            if (mDeltaListeners[i] == listener) {
+                OnBoardDeltaListener[] listeners = new OnBoardDeltaListener[mDeltaListeners.length - 1];
+                System.arraycopy(mDeltaListeners, 0, listeners, 0, i);
+                System.arraycopy(mDeltaListeners, i + 1, listeners, i, listeners.length - i);
+                mDeltaListeners = listeners;
+                return;
+            }
+        }
+    }
+
+    /**
+     * 用新的种子重新开始，行列数和雷数不变。复用所有数组，不分配内存，适合大量连续对局
+     */
+    public void reset(long seed) {
+        mSeed = seed;
+        mMinesPlaced = false;
+        mCustomMines = false;
+        mFirstIndex = -1;
+        Arrays.fill(mMines, 0);
+        Arrays.fill(mMineCounts, (byte) 0);
+        mBits.invalidate();
+        Arrays.fill(mStates, STATE_IDLE);
+        Arrays.fill(mFlagsAround, (byte) 0);
+        Arrays.fill(mQuestionsAround, (byte) 0);
+        mOpenedSize = 0;
+        mOpenedCount = 0;
+        mFlagCount = 0;
+        mStatus = STATUS_PLAYING;
+    }
+
+    /**
+     * 雷的位置不变，所有方格恢复未打开，重玩同一局
+     */
+    public void restart() {
+        Arrays.fill(mStates, STATE_IDLE);
+        Arrays.fill(mFlagsAround, (byte) 0);
+        Arrays.fill(mQuestionsAround, (byte) 0);
+        mOpenedSize = 0;
+        mOpenedCount = 0;
+        mFlagCount = 0;
+        mStatus = STATUS_PLAYING;
+    }
+
+    /**
+     * 按种子布雷，避开指定方格及其周围8格
+     * @param safeIndex 第1次翻开的方格，-1表示没有限制
+     */
+    public void placeMines(int safeIndex) {
+        if (mPlacer == null) {
+            mPlacer = new MinePlacer();
+        }
+        mPlacer.place(this, mSeed, safeIndex);
+        mFirstIndex = safeIndex;
+        mMinesPlaced = true;
+        mCustomMines = false;
+    }
+
+    void clearMines() {
+        Arrays.fill(mMines, 0);
+    }
+
+    // 雷已由setMine()放好，棋盘上没有雷时也算已布雷
+    void markCustomMines() {
+        mMinesPlaced = true;
+        mCustomMines = true;
+    }
+
+    // 只设置含雷，周围雷数由computeMineCounts()统一计算
+    void putMine(int index) {
+        mMines[index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * 一次遍历计算所有方格的周围雷数：逐行把上下3行的雷位图移位相加，每次算64个方格，见{@link BitBoard}
+     */
+    void computeMineCounts() {
+        mBits.computeMineCounts(mMines, mMineCounts);
+    }
+
+    /**
+     * 设置方格含雷，并将它周围8个方格的周围雷数加1
+     */
+    public void setMine(int index) {
+        mMinesPlaced = true;
+        mCustomMines = true;
+        if (isMine(index)) {
+            return;
+        }
+        mMines[index >>> 6] |= 1L << index;
+        mBits.invalidate();
+
+        int mask = mNeighbors.getMask(index);
+        while (mask != 0) {
+            int k = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            mMineCounts[index + mNeighbors.getOffset(k)]++;
+        }
+    }
+
+    // 周围8格的计数加上delta
+    private void addAround(byte[] counts, int index, int delta) {
+        int mask = mNeighbors.getMask(index);
+        while (mask != 0) {
+            int k = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            counts[index + mNeighbors.getOffset(k)] += delta;
+        }
+    }
+
+    /**
+     * 翻开方格。踩到雷时游戏失败，所有方格都打开；翻开空白方格时，连续打开周围所有方格
+     * @return 本次打开的方格数
+     */
+    public int open(int index) {
+        if (mStatus != STATUS_PLAYING || !isValidIndex(index)) {
+            return 0;
+        }
+        // 插旗或问号的方格不可翻开
+        if (mStates[index] != STATE_IDLE) {
+            return 0;
+        }
+        if (!mMinesPlaced) {
+            placeMines(index);
+        }
+
+        if (isMine(index)) {
+            onLose();
+            notifyDelta(MOVE_OPEN, index, true);
+            return 0;
+        }
+
+        mOpenedSize = 0;
+        openCell(index);
+        floodFill();
+        int opened = finishOpen();
+        notifyDelta(MOVE_OPEN, index, mStatus != STATUS_PLAYING);
+        return opened;
+    }
+
+    // 打开未打开且没有标记的方格并加入队列
+    private void openCell(int index) {
+        mStates[index] = STATE_OPENED;
+        mOpenedCount++;
+        mOldStates[mOpenedSize] = STATE_IDLE;
+        mOpened[mOpenedSize++] = index;
+    }
+
+    // 打开周围所有未打开且没有标记的方格
+    private void openAround(int index) {
+        int mask = mNeighbors.getMask(index);
+        while (mask != 0) {
+            int k = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            int n = index + mNeighbors.getOffset(k);
+            if (mStates[n] == STATE_IDLE) {
+                openCell(n);
+            }
+        }
+    }
+
+    /**
+     * 从队列中依次取出方格，空白方格打开周围所有未打开方格并加入队列，直到打开所有连续的空白方格。
+     * 插旗或问号的方格不会被自动打开。
+     * 打开的方格超过mBitsFillSize后是大片空白，剩下的部分由{@link BitBoard}按整行扩展，要打开的方格按行追加到mOpened
+     */
+    private void floodFill() {
+        int head = 0;
+        while (head < mOpenedSize) {
+            if (mOpenedSize > mBitsFillSize) {
+                int size = mBits.fill(mOpened, mOpenedSize, mMines, mStates, mMineCounts);
+                for (int i = mOpenedSize; i < size; i++) {
+                    mStates[mOpened[i]] = STATE_OPENED;
+                    mOldStates[i] = STATE_IDLE;
+                }
+                mOpenedCount += size - mOpenedSize;
+                mOpenedSize = size;
+                return;
+            }
+            int index = mOpened[head++];
+            if (mMineCounts[index] != 0) {
+                continue;
+            }
+            openAround(index);
+        }
+    }
+
+    /**
+     * 插旗或问号：默认变插旗，插旗变问号，问号变回默认。已打开方格无反应
+     * @return 方格的新状态
+     */
+    public int toggleMark(int index) {
+        if (mStatus != STATUS_PLAYING || !isValidIndex(index)) {
+            return -1;
+        }
+        byte state = mStates[index];
+        mOpenedSize = 0;
+        if (state == STATE_IDLE) {
+            recordState(index, STATE_FLAG);
+        } else if (state == STATE_FLAG) {
+            recordState(index, STATE_QUESTION);
+        } else if (state == STATE_QUESTION) {
+            recordState(index, STATE_IDLE);
+        } else {
+            return state;
+        }
+        notifyDelta(MOVE_MARK, index, false);
+        return mStates[index];
+    }
+
+    /**
+     * 双击已打开方格：如果周围插旗数和周围雷数相同，自动打开周围剩余未插旗的方格。
+     * 如果插旗错误，会打开雷格，game over。周围有问号时不响应
+     * @return 本次打开的方格数
+     */
+    public int chord(int index) {
+        if (mStatus != STATUS_PLAYING || !canChord(index)) {
+            return 0;
+        }
+
+        // 周围未插旗的方格中有雷，插旗错误
+        int mask = mNeighbors.getMask(index);
+        while (mask != 0) {
+            int k = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            int n = index + mNeighbors.getOffset(k);
+            if (mStates[n] == STATE_IDLE && isMine(n)) {
+                onLose();
+                notifyDelta(MOVE_CHORD, index, true);
+                return 0;
+            }
+        }
+
+        mOpenedSize = 0;
+        openAround(index);
+        floodFill();
+        int opened = finishOpen();
+        notifyDelta(MOVE_CHORD, index, mStatus != STATUS_PLAYING);
+        return opened;
+    }
+
+    /**
+     * 是否满足双击条件：已打开的数字方格，周围没有问号，插旗数等于周围雷数。只比较增量维护的计数，O(1)
+     */
+    public boolean canChord(int index) {
+        return isValidIndex(index) && mStates[index] == STATE_OPENED && mMineCounts[index] != 0
+                && mQuestionsAround[index] == 0 && mFlagsAround[index] == mMineCounts[index];
+    }
+
+    /**
+     * 批量改变方格状态，打开数、插旗数和周围的标记计数同步更新，所有变化的方格合并成1个
+     * 操作类型为{@link BoardDelta#MOVE_NONE}的{@link BoardDelta}。只改变方格，不判断胜负
+     * @param indices 方格序号
+     * @param count 方格数
+     * @param state 新状态
+     * @return 状态实际发生变化的方格数
+     */
+    public int setStates(int[] indices, int count, byte state) {
+        if (state < STATE_IDLE || state > STATE_OPENED) {
+            throw new IllegalArgumentException("state " + state);
+        }
+        mOpenedSize = 0;
+        for (int i = 0; i < count; i++) {
+            int index = indices[i];
+            if (isValidIndex(index) && mStates[index] != state) {
+                recordState(index, state);
+            }
+        }
+        if (mOpenedSize > 0) {
+            notifyDelta(BoardDelta.MOVE_NONE, -1, false);
+        }
+        return mOpenedSize;
+    }
+
+    // 改变方格状态，并把方格和原来的状态加入本次操作的变化
+    private void recordState(int index, byte state) {
+        mOldStates[mOpenedSize] = mStates[index];
+        mOpened[mOpenedSize++] = index;
+        changeState(index, state);
+    }
+
+    // 改变1个方格的状态，同步更新打开数、插旗数和周围8格的标记计数
+    private void changeState(int index, byte state) {
+        byte old = mStates[index];
+        if (old == STATE_OPENED) {
+            mOpenedCount--;
+        } else if (old == STATE_FLAG) {
+            mFlagCount--;
+            addAround(mFlagsAround, index, -1);
+        } else if (old == STATE_QUESTION) {
+            addAround(mQuestionsAround, index, -1);
+        }
+        mStates[index] = state;
+        if (state == STATE_OPENED) {
+            mOpenedCount++;
+        } else if (state == STATE_FLAG) {
+            mFlagCount++;
+            addAround(mFlagsAround, index, 1);
+        } else if (state == STATE_QUESTION) {
+            addAround(mQuestionsAround, index, 1);
+        }
+    }
+
+    // 踩到雷时，所有方格都打开
+    private void onLose() {
+        mStatus = STATUS_LOST;
+        mOpenedSize = 0;
+        for (int i = 0; i < mCellCount; i++) {
+            if (mStates[i] != STATE_OPENED) {
+                recordState(i, STATE_OPENED);
+            }
+        }
+    }
+
+    /**
+     * 打开方格后判断是否胜利，胜利时给剩余的雷都插上旗，和打开的方格在同1个BoardDelta中
+     * @return 本次打开的方格数，不含自动插旗的雷
+     */
+    private int finishOpen() {
+        int opened = mOpenedSize;
+        boolean win = mOpenedCount == mCellCount - mMineTotal;
+        if (win) {
+            mStatus = STATUS_WON;
+            for (int i = 0; i < mCellCount; i++) {
+                if (mStates[i] != STATE_OPENED && mStates[i] != STATE_FLAG) {
+                    recordState(i, STATE_FLAG);
+                }
+            }
+        }
+        return opened;
+    }
+
+    /**
+     * 撤销1次操作：方格恢复到操作前的状态，结束游戏的操作被撤销后回到进行中
+     * @param delta 本棋盘上的操作，必须按相反顺序撤销
+     */
+    void revert(BoardDelta delta) {
+        mOpenedSize = 0;
+        for (int i = delta.size() - 1; i >= 0; i--) {
+            recordState(delta.getCell(i), (byte) delta.getOldState(i));
+        }
+        if (delta.isGameOver()) {
+            mStatus = STATUS_PLAYING;
+        }
+        notifyDelta(BoardDelta.MOVE_UNDO, delta.getIndex(), false);
+    }
+
+    /**
+     * 重做被{@link #revert(BoardDelta)}撤销的操作，不重新计算连续打开和胜负
+     */
+    void reapply(BoardDelta delta) {
+        mOpenedSize = 0;
+        for (int i = 0; i < delta.size(); i++) {
+            recordState(delta.getCell(i), (byte) delta.getState(i));
+        }
+        mStatus = delta.getStatus();
+        notifyDelta(BoardDelta.MOVE_REDO, delta.getIndex(), delta.isGameOver());
+    }
+
+    // 把mOpened中的方格复制成1个BoardDelta，通知所有监听者
+    private void notifyDelta(int move, int index, boolean gameOver) {
+        OnBoardDeltaListener[] listeners = mDeltaListeners;
+        if (listeners.length == 0) {
+            return;
+        }
+        int[] cells = Arrays.copyOf(mOpened, mOpenedSize);
+        byte[] states = new byte[mOpenedSize];
+        for (int i = 0; i < mOpenedSize; i++) {
+            states[i] = mStates[cells[i]];
+        }
+        BoardDelta delta = new BoardDelta(move, index, cells, Arrays.copyOf(mOldStates, mOpenedSize), states,
+                mStatus, gameOver, mOpenedCount, mFlagCount);
+        for (OnBoardDeltaListener listener : listeners) {
+            listener.onDelta(delta);
+        }
+    }
+
+    /**
+     * 保存整局游戏：棋盘参数、种子，每个方格1位是否含雷和2位状态，9 * 9的棋盘共约50字节
+     */
+    public byte[] toByteArray() {
+        int mineBytes = (mCellCount + 7) >>> 3;
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 * 4 + 8 + 1 + mineBytes + getPackedStatesSize());
+        buffer.put(FORMAT_VERSION);
+        buffer.putInt(mRowCount);
+        buffer.putInt(mColumnCount);
+        buffer.putInt(mMineTotal);
+        buffer.putLong(mSeed);
+        buffer.putInt(mFirstIndex);
+        buffer.put((byte) ((mMinesPlaced ? 1 : 0) | (mCustomMines ? 2 : 0)));
+        for (int i = 0; i < mineBytes; i++) {
+            buffer.put((byte) (mMines[i >>> 3] >>> ((i & 7) << 3)));
+        }
+        byte[] data = buffer.array();
+        packStates(data, buffer.position());
+        return data;
+    }
+
+    /**
+     * 恢复{@link #toByteArray()}保存的游戏，不需要重新布雷
+     * @throws IllegalArgumentException 数据不完整或格式不对
+     */
+    public static Board fromByteArray(byte[] data) {
+        try {
+            ByteBuffer buffer = ByteBuffer.wrap(data);
+            if (buffer.get() != FORMAT_VERSION) {
+                throw new IllegalArgumentException("unknown format");
+            }
+            Board board = new Board(buffer.getInt(), buffer.getInt(), buffer.getInt(), buffer.getLong());
+            board.mFirstIndex = buffer.getInt();
+            byte flags = buffer.get();
+            board.mMinesPlaced = (flags & 1) != 0;
+            board.mCustomMines = (flags & 2) != 0;
+            int mineBytes = (board.mCellCount + 7) >>> 3;
+            for (int i = 0; i < mineBytes; i++) {
+                board.mMines[i >>> 3] |= (buffer.get() & 0xffL) << ((i & 7) << 3);
+            }
+            board.computeMineCounts();
+            if (buffer.remaining() < board.getPackedStatesSize()) {
+                throw new IllegalArgumentException("truncated data");
+            }
+            board.unpackStates(data, buffer.position());
+            return board;
+        } catch (BufferUnderflowException e) {
+            throw new IllegalArgumentException("truncated data");
+        }
+    }
+
+    /**
+     * @return 压缩保存所有方格状态需要的字节数，每个方格2位
+     */
+    public int getPackedStatesSize() {
+        return (mCellCount + 3) >>> 2;
+    }
+
+    /**
+     * 把所有方格的状态按每格2位写入out
+     */
+    public void packStates(byte[] out, int offset) {
+        Arrays.fill(out, offset, offset + getPackedStatesSize(), (byte) 0);
+        for (int i = 0; i < mCellCount; i++) {
+            out[offset + (i >>> 2)] |= mStates[i] << ((i & 3) << 1);
+        }
+    }
+
+    /**
+     * 恢复{@link #packStates(byte[], int)}保存的方格状态，并重新统计打开数、插旗数和游戏状态。
+     * 有打开的方格时雷必须已经布好
+     */
+    public void unpackStates(byte[] in, int offset) {
+        mOpenedSize = 0;
+        mOpenedCount = 0;
+        mFlagCount = 0;
+        Arrays.fill(mFlagsAround, (byte) 0);
+        Arrays.fill(mQuestionsAround, (byte) 0);
+        boolean lost = false;
+        for (int i = 0; i < mCellCount; i++) {
+            byte state = (byte) ((in[offset + (i >>> 2)] >>> ((i & 3) << 1)) & 3);
+            mStates[i] = state;
+            if (state == STATE_OPENED) {
+                mOpenedCount++;
+                lost |= isMine(i);
+            } else if (state == STATE_FLAG) {
+                mFlagCount++;
+                addAround(mFlagsAround, i, 1);
+            } else if (state == STATE_QUESTION) {
+                addAround(mQuestionsAround, i, 1);
+            }
+        }
+        if (lost) {
+            mStatus = STATUS_LOST;
+        } else if (mOpenedCount == mCellCount - mMineTotal) {
+            mStatus = STATUS_WON;
+        } else {
+            mStatus = STATUS_PLAYING;
+        }
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public boolean isMinesPlaced() {
+        return mMinesPlaced;
+    }
+
+    /**
+     * @return 雷是否由{@link #setMine(int)}放置，不能由种子和第1次翻开的方格重新生成
+     */
+    public boolean hasCustomMines() {
+        return mCustomMines;
+    }
+
+    public int getFirstIndex() {
+        return mFirstIndex;
+    }
+
+    public boolean isMine(int index) {
+        return (mMines[index >>> 6] & (1L << index)) != 0;
+    }
+
+    public int getMineCount(int index) {
+        return mMineCounts[index];
+    }
+
+    public int getState(int index) {
+        return mStates[index];
+    }
+
+    /**
+     * @return 周围8格中插旗的个数
+     */
+    public int getFlagCountAround(int index) {
+        return mFlagsAround[index];
+    }
+
+    /**
+     * @return 周围8格中问号的个数
+     */
+    public int getQuestionCountAround(int index) {
+        return mQuestionsAround[index];
+    }
+
+    /**
+     * 把方格周围的方格序号写入out，不分配内存
+     * @param out 长度至少为8
+     * @return 周围方格的个数
+     */
+    public int getNeighbors(int index, int[] out) {
+        return mNeighbors.getNeighbors(index, out);
+    }
+
+    public int getStatus() {
+        return mStatus;
+    }
+
+    public int getOpenedCount() {
+        return mOpenedCount;
+    }
+
+    public int getFlagCount() {
+        return mFlagCount;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public int getCellCount() {
+        return mCellCount;
+    }
+
+    public int getMineTotal() {
+        return mMineTotal;
+    }
+
+    public boolean isValidIndex(int index) {
+        return index >= 0 && index < mCellCount;
+    }
+
+    /**
+     * 方格序号转化为方格行号，行号从0开始
+     */
+    public int getRow(int index) {
+        return index / mColumnCount;
+    }
+
+    /**
+     * 方格序号转化为方格列号，列号从0开始
+     */
+    public int getColumn(int index) {
+        return index % mColumnCount;
+    }
+
+    /**
+     * 方格行、列数转换为序号，行、列号越界时返回-1
+     */
+    public int getIndex(int r, int c) {
+        if (r < 0 || c < 0 || r >= mRowCount || c >= mColumnCount) {
+            return -1;
+        }
+        return r * mColumnCount + c;
+    }
+
+}
@@ -0,0 +1,302 @@
+package com.yulin.minesweep.engine;
+
+import java.util.Arrays;
+
+/**
+ * 棋盘编码：把1局棋盘写成可以放进URL的短字符串，分享或存档后按编码重新生成完全相同的棋盘
+ *
+ * 编码是字节序列的base64url（A-Z a-z 0-9 - _，不补=），字节序列（整数都是无符号varint）：
+ * 头部 = (布雷算法版本 << 2) | 类型，行数，列数，雷数，之后按类型：
+ * <pre>
+ * 类型0 种子：种子（8字节大端），布雷状态（0还没有布雷，1布雷时没有避开的方格，否则为第1次翻开的方格序号 + 2）
+ * 类型1 雷的间隔：每个雷和上1个雷（第1个雷和序号-1）的序号差减1，适合雷比较稀疏的棋盘
+ * 类型2 雷的位图：每个方格1位，按序号从低位到高位，适合雷比较密集的棋盘
+ * </pre>
+ * 种子编码只有十几个字节，专家难度约20个字符，同一局总是得到同一个编码，可以直接比较编码判断是否是同一局。
+ * 用{@link Board#setMine(int)}放置的雷不能由种子生成，编码为类型1或2中较短的一种，专家难度约80~130个字符。
+ * 编码只包含雷的位置，不包含方格状态
+ */
+public final class BoardCode {
+
+    private static final int KIND_SEED = 0;
+    private static final int KIND_MINE_GAPS = 1;
+    private static final int KIND_MINE_BITS = 2;
+
+    /**
+     * 解码时的最大方格数，防止错误的编码分配过大的棋盘
+     */
+    public static final int MAX_CELLS = 1 << 24;
+
+    private static final char[] ALPHABET =
+            "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-_".toCharArray();
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        Arrays.fill(DECODE, (byte) -1);
+        for (int i = 0; i < ALPHABET.length; i++) {
+            DECODE[ALPHABET[i]] = (byte) i;
+        }
+    }
+
+    private BoardCode() {
+    }
+
+    /**
+     * 编码棋盘：由种子布雷的棋盘写种子，否则写雷的位置
+     */
+    public static String encode(Board board) {
+        if (board.hasCustomMines()) {
+            return encodeMines(board);
+        }
+        Writer out = new Writer(32);
+        writeHeader(out, board, KIND_SEED);
+        out.writeLong(board.getSeed());
+        int placed = 0;
+        if (board.isMinesPlaced()) {
+            placed = board.getFirstIndex() + 2;
+        }
+        out.writeVarint(placed);
+        return toBase64(out.mBytes, out.mSize);
+    }
+
+    /**
+     * 按雷的位置编码，和布雷方式无关，任何已经布雷的棋盘都可以编码
+     * @throws IllegalStateException 还没有布雷
+     */
+    public static String encodeMines(Board board) {
+        if (!board.isMinesPlaced()) {
+            throw new IllegalStateException("mines not placed");
+        }
+        int cellCount = board.getCellCount();
+        int bitsSize = (cellCount + 7) >>> 3;
+
+        // 先按间隔编码，比位图长时改用位图
+        Writer out = new Writer(32);
+        writeHeader(out, board, KIND_MINE_GAPS);
+        int headerSize = out.mSize;
+        int last = -1;
+        for (int i = 0; i < cellCount && out.mSize - headerSize < bitsSize; i++) {
+            if (board.isMine(i)) {
+                out.writeVarint(i - last - 1);
+                last = i;
+            }
+        }
+        if (out.mSize - headerSize >= bitsSize) {
+            out.mSize = 0;
+            writeHeader(out, board, KIND_MINE_BITS);
+            out.ensureCapacity(bitsSize);
+            Arrays.fill(out.mBytes, out.mSize, out.mSize + bitsSize, (byte) 0);
+            for (int i = 0; i < cellCount; i++) {
+                if (board.isMine(i)) {
+                    out.mBytes[out.mSize + (i >>> 3)] |= 1 << (i & 7);
+                }
+            }
+            out.mSize += bitsSize;
+        }
+        return toBase64(out.mBytes, out.mSize);
+    }
+
+    private static void writeHeader(Writer out, Board board, int kind) {
+        out.writeVarint((MinePlacer.VERSION << 2) | kind);
+        out.writeVarint(board.getRowCount());
+        out.writeVarint(board.getColumnCount());
+        out.writeVarint(board.getMineTotal());
+    }
+
+    /**
+     * 按编码重新生成棋盘，所有方格未打开。种子编码中还没有布雷时，和原来的棋盘一样在第1次翻开时布雷
+     * @throws IllegalArgumentException 编码不完整、格式不对或由不同版本的布雷算法生成
+     */
+    public static Board decode(String code) {
+        byte[] data = fromBase64(code);
+        Reader in = new Reader(data);
+        int header = in.readInt();
+        int kind = header & 3;
+        int rowCount = in.readInt();
+        int columnCount = in.readInt();
+        int mineTotal = in.readInt();
+        if (rowCount <= 0 || columnCount <= 0 || (long) rowCount * columnCount > MAX_CELLS) {
+            throw new IllegalArgumentException("bad board size");
+        }
+
+        if (kind == KIND_SEED) {
+            if (header >>> 2 != MinePlacer.VERSION) {
+                throw new IllegalArgumentException("board placed by MinePlacer version " + (header >>> 2));
+            }
+            Board board = new Board(rowCount, columnCount, mineTotal, in.readLong());
+            int placed = in.readInt();
+            if (placed > 0) {
+                int firstIndex = placed - 2;
+                if (firstIndex >= board.getCellCount()) {
+                    throw new IllegalArgumentException("bad first index");
+                }
+                board.placeMines(firstIndex);
+            }
+            in.checkEnd();
+            return board;
+        }
+
+        Board board = new Board(rowCount, columnCount, mineTotal, 0);
+        int cellCount = board.getCellCount();
+        int mines = 0;
+        if (kind == KIND_MINE_GAPS) {
+            int index = -1;
+            while (!in.isEnd()) {
+                index += in.readInt() + 1;
+                if (index < 0 || index >= cellCount) {
+                    throw new IllegalArgumentException("bad mine index");
+                }
+                board.setMine(index);
+                mines++;
+            }
+        } else if (kind == KIND_MINE_BITS) {
+            byte[] bits = in.readBytes((cellCount + 7) >>> 3);
+            for (int i = 0; i < cellCount; i++) {
+                if ((bits[i >>> 3] & (1 << (i & 7))) != 0) {
+                    board.setMine(i);
+                    mines++;
+                }
+            }
+            in.checkEnd();
+        } else {
+            throw new IllegalArgumentException("unknown kind " + kind);
+        }
+        if (mines != mineTotal) {
+            throw new IllegalArgumentException("mine count " + mines + " != " + mineTotal);
+        }
+        board.markCustomMines();
+        return board;
+    }
+
+    private static String toBase64(byte[] data, int size) {
+        char[] chars = new char[(size * 8 + 5) / 6];
+        int n = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < size; i++) {
+            bits = (bits << 8) | (data[i] & 0xff);
+            bitCount += 8;
+            while (bitCount >= 6) {
+                bitCount -= 6;
+                chars[n++] = ALPHABET[(bits >>> bitCount) & 63];
+            }
+        }
+        if (bitCount > 0) {
+            chars[n++] = ALPHABET[(bits << (6 - bitCount)) & 63];
+        }
+        return new String(chars, 0, n);
+    }
+
+    private static byte[] fromBase64(String code) {
+        byte[] data = new byte[code.length() * 6 / 8];
+        int n = 0;
+        int bits = 0;
+        int bitCount = 0;
+        for (int i = 0; i < code.length(); i++) {
+            char c = code.charAt(i);
+            int value = c < DECODE.length ? DECODE[c] : -1;
+            if (value < 0) {
+                throw new IllegalArgumentException("bad character '" + c + "'");
+            }
+            bits = (bits << 6) | value;
+            bitCount += 6;
+            if (bitCount >= 8) {
+                bitCount -= 8;
+                data[n++] = (byte) (bits >>> bitCount);
+            }
+        }
+        return data;
+    }
+
+    private static final class Writer {
+
+        byte[] mBytes;
+        int mSize;
+
+        Writer(int capacity) {
+            mBytes = new byte[capacity];
+        }
+
+        void ensureCapacity(int extra) {
+            if (mSize + extra > mBytes.length) {
+                mBytes = Arrays.copyOf(mBytes, Math.max(mBytes.length * 2, mSize + extra));
+            }
+        }
+
+        void writeVarint(long value) {
+            ensureCapacity(10);
+            while ((value & ~0x7fL) != 0) {
+                mBytes[mSize++] = (byte) ((value & 0x7f) | 0x80);
+                value >>>= 7;
+            }
+            mBytes[mSize++] = (byte) value;
+        }
+
+        void writeLong(long value) {
+            ensureCapacity(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                mBytes[mSize++] = (byte) (value >>> shift);
+            }
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] mData;
+        private int mPosition;
+
+        Reader(byte[] data) {
+            mData = data;
+        }
+
+        boolean isEnd() {
+            return mPosition >= mData.length;
+        }
+
+        void checkEnd() {
+            if (!isEnd()) {
+                throw new IllegalArgumentException("trailing data");
+            }
+        }
+
+        int readInt() {
+            long value = 0;
+            for (int shift = 0; shift < 35; shift += 7) {
+                byte b = readByte();
+                value |= (long) (b & 0x7f) << shift;
+                if (b >= 0) {
+                    if (value > Integer.MAX_VALUE) {
+                        break;
+                    }
+                    return (int) value;
+                }
+            }
+            throw new IllegalArgumentException("bad number");
+        }
+
+        long readLong() {
+            long value = 0;
+            for (int i = 0; i < 8; i++) {
+                value = (value << 8) | (readByte() & 0xff);
+            }
+            return value;
+        }
+
+        byte[] readBytes(int count) {
+            if (mData.length - mPosition < count) {
+                throw new IllegalArgumentException("truncated code");
+            }
+            byte[] bytes = Arrays.copyOfRange(mData, mPosition, mPosition + count);
+            mPosition += count;
+            return bytes;
+        }
+
+        private byte readByte() {
+            if (mPosition >= mData.length) {
+                throw new IllegalArgumentException("truncated code");
+            }
+            return mData[mPosition++];
+        }
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.yulin.minesweep.engine;
+
+/**
+ * 1次操作对棋盘的全部改变：操作本身、状态变化的方格及其新状态、操作后的计数和游戏状态
+ *
+ * 创建后不再改变，可以保存或交给其它线程。方格用基本类型数组保存，不为每个方格创建对象：
+ * 1次操作分配本对象和方格、原状态、新状态3个数组，大小和变化的方格数成正比，与棋盘大小无关；没有监听者时不分配。
+ * 连续打开几千个方格也只通知每个监听者1次
+ */
+public final class BoardDelta {
+
+    /**
+     * 不是玩家操作，例如{@link Board#setStates(int[], int, byte)}
+     */
+    public static final int MOVE_NONE = -1;
+
+    /**
+     * 撤销或重做，见{@link UndoHistory}
+     */
+    public static final int MOVE_UNDO = -2;
+    public static final int MOVE_REDO = -3;
+
+    private final int mMove;
+    private final int mIndex;
+    private final int[] mCells;
+    private final byte[] mOldStates;
+    private final byte[] mStates;
+    private final int mStatus;
+    private final boolean mGameOver;
+    private final int mOpenedCount;
+    private final int mFlagCount;
+
+    /**
+     * @param cells 状态变化的方格，直接持有，调用者不能再修改
+     * @param oldStates 与cells对应的原来的状态，直接持有，调用者不能再修改
+     * @param states 与cells对应的新状态，直接持有，调用者不能再修改
+     */
+    BoardDelta(int move, int index, int[] cells, byte[] oldStates, byte[] states, int status, boolean gameOver,
+               int openedCount, int flagCount) {
+        mMove = move;
+        mIndex = index;
+        mCells = cells;
+        mOldStates = oldStates;
+        mStates = states;
+        mStatus = status;
+        mGameOver = gameOver;
+        mOpenedCount = openedCount;
+        mFlagCount = flagCount;
+    }
+
+    /**
+     * @return 操作类型：{@link Board#MOVE_OPEN}、{@link Board#MOVE_MARK}、{@link Board#MOVE_CHORD}，
+     * 或{@link #MOVE_NONE}、{@link #MOVE_UNDO}、{@link #MOVE_REDO}
+     */
+    public int getMove() {
+        return mMove;
+    }
+
+    /**
+     * @return 是否玩家的操作，不是批量设置、撤销或重做
+     */
+    public boolean isMove() {
+        return mMove >= 0;
+    }
+
+    /**
+     * @return 操作的方格序号，{@link #MOVE_NONE}时为-1，撤销或重做时为原来操作的方格
+     */
+    public int getIndex() {
+        return mIndex;
+    }
+
+    /**
+     * @return 状态变化的方格数：打开的方格、踩雷后打开的所有方格、胜利时自动插旗的雷、标记变化的方格
+     */
+    public int size() {
+        return mCells.length;
+    }
+
+    /**
+     * @return 第i个状态变化的方格序号
+     */
+    public int getCell(int i) {
+        return mCells[i];
+    }
+
+    /**
+     * @return 第i个状态变化的方格原来的状态
+     */
+    public int getOldState(int i) {
+        return mOldStates[i];
+    }
+
+    /**
+     * @return 第i个状态变化的方格的新状态，{@link Board#STATE_IDLE}等
+     */
+    public int getState(int i) {
+        return mStates[i];
+    }
+
+    /**
+     * @return 操作后的游戏状态，{@link Board#STATUS_PLAYING}等
+     */
+    public int getStatus() {
+        return mStatus;
+    }
+
+    /**
+     * @return 游戏是否由本次操作结束
+     */
+    public boolean isGameOver() {
+        return mGameOver;
+    }
+
+    /**
+     * @return 本次操作赢得游戏
+     */
+    public boolean isWin() {
+        return mGameOver && mStatus == Board.STATUS_WON;
+    }
+
+    /**
+     * @return 操作后整个棋盘已打开的方格数
+     */
+    public int getOpenedCount() {
+        return mOpenedCount;
+    }
+
+    /**
+     * @return 操作后整个棋盘插旗的方格数
+     */
+    public int getFlagCount() {
+        return mFlagCount;
+    }
+
+}
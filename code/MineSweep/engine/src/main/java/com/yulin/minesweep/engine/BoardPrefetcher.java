@@ -0,0 +1,173 @@
+package com.yulin.minesweep.engine;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 在后台线程提前准备好下几局的棋盘，开始新的一局时直接取走，不需要等待生成
+ *
+ * 队列中保持{@link #setDepth(int)}个棋盘，取走1个就补1个。生成方式用{@link #setFactory(Object, Factory)}设置，
+ * key不同时（例如换了难度）丢弃队列中的棋盘，还没有开始的生成任务被取消，正在生成的任务收到取消标志后尽早结束，结果也丢弃。
+ * 生成耗时再长，只要队列没有取空，{@link #take(Object)}都立即返回。页面关闭时用{@link #clear(Object)}释放队列。所有方法线程安全
+ */
+public class BoardPrefetcher {
+
+    public static final int DEFAULT_DEPTH = 2;
+
+    /**
+     * 生成1个棋盘，在后台线程调用，可能很耗时，例如生成无需猜测的棋盘
+     */
+    public interface Factory {
+
+        /**
+         * @param cancelled 换了生成方式时变为true，耗时的生成应当经常检查，尽早返回null
+         * @return 新的棋盘，null表示生成失败或已取消，不放入队列
+         */
+        Board create(AtomicBoolean cancelled);
+    }
+
+    private final ExecutorService mExecutor;
+    private int mDepth;
+
+    private Object mKey;
+    private Factory mFactory;
+    // 每次换生成方式加1，旧的生成任务完成后发现不一致就丢弃结果
+    private int mGeneration;
+    // 当前一代生成任务共用的取消标志和还没有完成的任务
+    private AtomicBoolean mCancelled = new AtomicBoolean();
+    private final ArrayList<Future<?>> mFutures = new ArrayList<>();
+
+    private final ArrayDeque<Board> mQueue = new ArrayDeque<>();
+    // 已提交、还没有完成的生成任务数
+    private int mPending;
+
+    /**
+     * @param executor 生成棋盘的线程池，最好是单独的低优先级线程，不要和界面共用
+     */
+    public BoardPrefetcher(ExecutorService executor) {
+        this(executor, DEFAULT_DEPTH);
+    }
+
+    public BoardPrefetcher(ExecutorService executor, int depth) {
+        mExecutor = executor;
+        setDepth(depth);
+    }
+
+    /**
+     * 设置队列中保持的棋盘数，变大时立即补充，变小时多出的棋盘在取走时自然减少
+     */
+    public synchronized void setDepth(int depth) {
+        if (depth < 0) {
+            throw new IllegalArgumentException("depth " + depth);
+        }
+        mDepth = depth;
+        fill();
+    }
+
+    /**
+     * 设置生成方式。key和当前相同时保留已生成的棋盘；不同时丢弃队列，按新的方式重新生成
+     * @param key 区分难度等生成参数，用equals比较
+     */
+    public synchronized void setFactory(Object key, Factory factory) {
+        if (mFactory != null && key.equals(mKey)) {
+            return;
+        }
+        discard();
+        mKey = key;
+        mFactory = factory;
+        fill();
+    }
+
+    /**
+     * 页面关闭时调用，丢弃队列中的棋盘并取消生成，不再为它准备棋盘。大棋盘的数组不会在页面关闭后一直占着内存
+     * @param key 和当前的key不同时（已经换了别的页面）不做任何事
+     */
+    public synchronized void clear(Object key) {
+        if (!key.equals(mKey)) {
+            return;
+        }
+        discard();
+        mKey = null;
+        mFactory = null;
+    }
+
+    // 丢弃队列，取消这一代的所有生成任务
+    private void discard() {
+        mGeneration++;
+        mCancelled.set(true);
+        mCancelled = new AtomicBoolean();
+        for (Future<?> future : mFutures) {
+            future.cancel(true);
+        }
+        mFutures.clear();
+        mQueue.clear();
+        // 旧任务仍在运行，不计入新一代的数量
+        mPending = 0;
+    }
+
+    /**
+     * 取走1个已生成的棋盘并在后台补充
+     * @param key 和{@link #setFactory(Object, Factory)}的key不同时不取，避免拿到其它难度的棋盘
+     * @return 棋盘，队列为空时返回null，调用者自己生成
+     */
+    public synchronized Board take(Object key) {
+        if (!key.equals(mKey)) {
+            return null;
+        }
+        Board board = mQueue.poll();
+        fill();
+        return board;
+    }
+
+    /**
+     * @return 队列中已生成的棋盘数
+     */
+    public synchronized int size() {
+        return mQueue.size();
+    }
+
+    // 提交生成任务，直到已生成和正在生成的棋盘数达到深度
+    private void fill() {
+        if (mFactory == null) {
+            return;
+        }
+        for (Iterator<Future<?>> it = mFutures.iterator(); it.hasNext(); ) {
+            if (it.next().isDone()) {
+                it.remove();
+            }
+        }
+        while (mQueue.size() + mPending < mDepth) {
+            mPending++;
+            final Factory factory = mFactory;
+            final int generation = mGeneration;
+            final AtomicBoolean cancelled = mCancelled;
+            mFutures.add(mExecutor.submit(new Runnable() {
+                @Override
+                public void run() {
+                    Board board = null;
+                    try {
+                        board = factory.create(cancelled);
+                    } finally {
+                        onCreated(generation, board);
+                    }
+                }
+            }));
+        }
+    }
+
+    private synchronized void onCreated(int generation, Board board) {
+        if (generation != mGeneration) {
+            return;
+        }
+        mPending--;
+        // 生成失败时不立即重试，下次take()时再补
+        if (board != null && mQueue.size() < mDepth) {
+            mQueue.add(board);
+        }
+    }
+
+}
@@ -0,0 +1,93 @@
+package com.yulin.minesweep.engine;
+
+import java.util.Arrays;
+
+/**
+ * 把多次操作的{@link BoardDelta}合并成1个，用于每帧只处理1次变化，例如每帧重画1次
+ *
+ * 同一个方格在几次操作中都变化时只保留1次、第1次变化前的状态和最后的状态，计数和游戏状态取最后1次，
+ * 其中任何1次结束了游戏，合并结果就是结束游戏。不是线程安全的
+ */
+public class DeltaCoalescer {
+
+    private final int mCellCount;
+    // 已加入的方格，每个方格1位
+    private final long[] mAdded;
+    // 按方格序号保存第1次变化前和最后的状态
+    private final byte[] mOldStates;
+    private final byte[] mStates;
+    // 按加入顺序保存方格序号
+    private int[] mCells = new int[16];
+    private int mSize;
+
+    private BoardDelta mLast;
+    private boolean mGameOver;
+
+    public DeltaCoalescer(int cellCount) {
+        mCellCount = cellCount;
+        mAdded = new long[(cellCount + 63) >>> 6];
+        mOldStates = new byte[cellCount];
+        mStates = new byte[cellCount];
+    }
+
+    public int getCellCount() {
+        return mCellCount;
+    }
+
+    public void add(BoardDelta delta) {
+        for (int i = 0; i < delta.size(); i++) {
+            int cell = delta.getCell(i);
+            mStates[cell] = (byte) delta.getState(i);
+            if ((mAdded[cell >>> 6] & (1L << cell)) != 0) {
+                continue;
+            }
+            mAdded[cell >>> 6] |= 1L << cell;
+            mOldStates[cell] = (byte) delta.getOldState(i);
+            if (mSize == mCells.length) {
+                mCells = Arrays.copyOf(mCells, Math.min(mSize * 2, mCellCount));
+            }
+            mCells[mSize++] = cell;
+        }
+        mLast = delta;
+        mGameOver |= delta.isGameOver();
+    }
+
+    public boolean isEmpty() {
+        return mLast == null;
+    }
+
+    /**
+     * 取出合并结果并清空
+     * @return 合并后的变化，操作类型和方格取最后1次；没有加入过时返回null
+     */
+    public BoardDelta drain() {
+        if (mLast == null) {
+            return null;
+        }
+        int[] cells = Arrays.copyOf(mCells, mSize);
+        byte[] oldStates = new byte[mSize];
+        byte[] states = new byte[mSize];
+        for (int i = 0; i < mSize; i++) {
+            oldStates[i] = mOldStates[cells[i]];
+            states[i] = mStates[cells[i]];
+        }
+        BoardDelta last = mLast;
+        BoardDelta merged = new BoardDelta(last.getMove(), last.getIndex(), cells, oldStates, states,
+                last.getStatus(), mGameOver, last.getOpenedCount(), last.getFlagCount());
+        clear();
+        return merged;
+    }
+
+    /**
+     * 丢弃已加入的变化，例如换了棋盘
+     */
+    public void clear() {
+        for (int i = 0; i < mSize; i++) {
+            mAdded[mCells[i] >>> 6] = 0;
+        }
+        mSize = 0;
+        mLast = null;
+        mGameOver = false;
+    }
+
+}
@@ -0,0 +1,136 @@
+package com.yulin.minesweep.engine;
+
+import java.util.Arrays;
+
+/**
+ * 布雷：用种子生成随机序列，对方格序号做部分Fisher-Yates洗牌，取前mineTotal个作为雷
+ *
+ * 洗牌只记录被交换过的位置（开放寻址的int哈希表），每个雷只取1次随机数，耗时只和雷数有关，
+ * 与密度无关。第1次点击的方格及其周围8格不布雷；方格太少放不下时只保证第1次点击的方格不是雷。
+ * 相同的(种子, 行数, 列数, 雷数, 第1次点击的方格)总是得到相同的棋盘。
+ *
+ * 内部缓存可以复用，不是线程安全的，每个线程使用自己的实例
+ */
+public class MinePlacer {
+
+    /**
+     * 布雷算法版本，算法或随机数的使用方式变化时加1，旧种子生成的棋盘不再相同
+     */
+    public static final int VERSION = 1;
+
+    private final SplitMix64 mRandom = new SplitMix64(0);
+
+    // 不布雷的方格序号，从小到大
+    private final int[] mExcluded = new int[9];
+
+    // 洗牌时被交换过的位置 -> 该位置上的方格序号，没有记录的位置上就是位置本身
+    private int[] mKeys = new int[0];
+    private int[] mValues = new int[0];
+    private int[] mUsedSlots = new int[0];
+    private int mUsedCount;
+
+    /**
+     * 布雷并计算所有方格的周围雷数
+     * @param safeIndex 第1次点击的方格，-1表示没有限制
+     */
+    public void place(Board board, long seed, int safeIndex) {
+        int mineTotal = board.getMineTotal();
+        int excludedCount = collectExcluded(board, safeIndex);
+        int n = board.getCellCount() - excludedCount;
+
+        mRandom.setSeed(seed);
+        ensureCapacity(mineTotal);
+        board.clearMines();
+        for (int i = 0; i < mineTotal; i++) {
+            // 从[i, n)中随机选1个位置和位置i交换，位置i之后不会再被访问，不需要写回
+            int j = i + mRandom.nextInt(n - i);
+            int picked = get(j);
+            put(j, get(i));
+            board.putMine(skipExcluded(picked, excludedCount));
+        }
+        clear();
+        board.computeMineCounts();
+    }
+
+    private int collectExcluded(Board board, int safeIndex) {
+        if (safeIndex < 0) {
+            return 0;
+        }
+        int count = 0;
+        int r = board.getRow(safeIndex);
+        int c = board.getColumn(safeIndex);
+        // 按行、列从小到大遍历，结果天然有序
+        for (int nr = r - 1; nr <= r + 1; nr++) {
+            for (int nc = c - 1; nc <= c + 1; nc++) {
+                int n = board.getIndex(nr, nc);
+                if (n >= 0) {
+                    mExcluded[count++] = n;
+                }
+            }
+        }
+        if (board.getCellCount() - count < board.getMineTotal()) {
+            mExcluded[0] = safeIndex;
+            count = 1;
+        }
+        return count;
+    }
+
+    /**
+     * 把[0, cellCount - excludedCount)中的序号映射到跳过不布雷方格后的方格序号
+     */
+    private int skipExcluded(int index, int excludedCount) {
+        for (int k = 0; k < excludedCount; k++) {
+            if (index >= mExcluded[k]) {
+                index++;
+            } else {
+                break;
+            }
+        }
+        return index;
+    }
+
+    private void ensureCapacity(int mineTotal) {
+        int capacity = 16;
+        while (capacity < mineTotal * 2) {
+            capacity <<= 1;
+        }
+        if (mKeys.length < capacity) {
+            mKeys = new int[capacity];
+            mValues = new int[capacity];
+            Arrays.fill(mKeys, -1);
+            mUsedSlots = new int[capacity];
+        }
+    }
+
+    private int slot(int key) {
+        int mask = mKeys.length - 1;
+        int h = key * 0x9e3779b9;
+        int slot = (h ^ (h >>> 16)) & mask;
+        while (mKeys[slot] != -1 && mKeys[slot] != key) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    private int get(int position) {
+        int slot = slot(position);
+        return mKeys[slot] == -1 ? position : mValues[slot];
+    }
+
+    private void put(int position, int value) {
+        int slot = slot(position);
+        if (mKeys[slot] == -1) {
+            mKeys[slot] = position;
+            mUsedSlots[mUsedCount++] = slot;
+        }
+        mValues[slot] = value;
+    }
+
+    private void clear() {
+        for (int i = 0; i < mUsedCount; i++) {
+            mKeys[mUsedSlots[i]] = -1;
+        }
+        mUsedCount = 0;
+    }
+
+}
@@ -0,0 +1,85 @@
+package com.yulin.minesweep.engine;
+
+/**
+ * 周围8格的查找表，每种行列数只建1次，同样大小的棋盘共用
+ *
+ * 序号相差固定的8个偏移量，加上每个方格1字节的掩码标出哪些偏移量没有越界。查找周围方格时不做除法和越界判断
+ */
+public final class NeighborTable {
+
+    // 最近用过的表，模拟器等大量对局都是同一种大小
+    private static volatile NeighborTable sLast;
+
+    private final int mRowCount;
+    private final int mColumnCount;
+    private final int[] mOffsets;
+    private final byte[] mMasks;
+
+    /**
+     * @return 指定行列数的表，和上次请求的大小相同时直接复用
+     */
+    public static NeighborTable get(int rowCount, int columnCount) {
+        NeighborTable table = sLast;
+        if (table == null || table.mRowCount != rowCount || table.mColumnCount != columnCount) {
+            table = new NeighborTable(rowCount, columnCount);
+            sLast = table;
+        }
+        return table;
+    }
+
+    private NeighborTable(int rowCount, int columnCount) {
+        mRowCount = rowCount;
+        mColumnCount = columnCount;
+        mOffsets = new int[]{
+                -columnCount - 1, -columnCount, -columnCount + 1,
+                -1, 1,
+                columnCount - 1, columnCount, columnCount + 1};
+        mMasks = new byte[rowCount * columnCount];
+        for (int r = 0; r < rowCount; r++) {
+            for (int c = 0; c < columnCount; c++) {
+                int mask = 0xff;
+                if (r == 0) {
+                    mask &= ~0x07;
+                }
+                if (r == rowCount - 1) {
+                    mask &= ~0xe0;
+                }
+                if (c == 0) {
+                    mask &= ~0x29;
+                }
+                if (c == columnCount - 1) {
+                    mask &= ~0x94;
+                }
+                mMasks[r * columnCount + c] = (byte) mask;
+            }
+        }
+    }
+
+    /**
+     * 把方格周围的方格序号写入out
+     * @param out 长度至少为8
+     * @return 周围方格的个数
+     */
+    public int getNeighbors(int index, int[] out) {
+        int mask = mMasks[index] & 0xff;
+        int count = 0;
+        while (mask != 0) {
+            int k = Integer.numberOfTrailingZeros(mask);
+            mask &= mask - 1;
+            out[count++] = index + mOffsets[k];
+        }
+        return count;
+    }
+
+    /**
+     * @return 8位掩码，第k位为1表示{@link #getOffset(int)}(k)没有越界
+     */
+    public int getMask(int index) {
+        return mMasks[index] & 0xff;
+    }
+
+    public int getOffset(int k) {
+        return mOffsets[k];
+    }
+
+}
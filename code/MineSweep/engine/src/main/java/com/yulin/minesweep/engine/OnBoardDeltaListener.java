@@ -0,0 +1,14 @@
+package com.yulin.minesweep.engine;
+
+/**
+ * 接收棋盘的变化，每次操作回调1次。显示、统计、对局记录等各自注册，互不影响。
+ * 没有产生变化的操作（例如点击已打开的方格、条件不满足的双击）不回调
+ */
+public interface OnBoardDeltaListener {
+
+    /**
+     * @param delta 本次操作的全部变化，不会再改变，可以保存
+     * */
+    void onDelta(BoardDelta delta);
+
+}
@@ -0,0 +1,76 @@
+package com.yulin.minesweep.engine;
+
+/**
+ * SplitMix64随机数生成器，算法和常量与java.util.SplittableRandom相同，相同种子得到相同序列
+ *
+ * SplittableRandom在Android API 24才有，本项目minSdkVersion为15，所以在引擎中自带1份。
+ * 可以重设种子反复使用，不是线程安全的，每个线程使用自己的实例
+ */
+public final class SplitMix64 {
+
+    private static final long GOLDEN_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private long mSeed;
+
+    public SplitMix64(long seed) {
+        mSeed = seed;
+    }
+
+    public void setSeed(long seed) {
+        mSeed = seed;
+    }
+
+    public long nextLong() {
+        return mix64(nextSeed());
+    }
+
+    public int nextInt() {
+        return mix32(nextSeed());
+    }
+
+    /**
+     * @return [0, bound)之间均匀分布的整数
+     */
+    public int nextInt(int bound) {
+        if (bound <= 0) {
+            throw new IllegalArgumentException("bound " + bound);
+        }
+        int r = mix32(nextSeed());
+        int m = bound - 1;
+        if ((bound & m) == 0) {
+            // 2的幂，直接取低位
+            r &= m;
+        } else {
+            // 拒绝落在最后不完整区间的值，保证均匀
+            for (int u = r >>> 1; u + m - (r = u % bound) < 0; u = mix32(nextSeed()) >>> 1) {
+            }
+        }
+        return r;
+    }
+
+    /**
+     * @return [0, 1)之间均匀分布的小数
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    private long nextSeed() {
+        return mSeed += GOLDEN_GAMMA;
+    }
+
+    /**
+     * 把任意long打散成均匀分布的long，也用于由多个值计算种子
+     */
+    public static long mix64(long z) {
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    private static int mix32(long z) {
+        z = (z ^ (z >>> 33)) * 0x62a9d9ed799705f5L;
+        return (int) (((z ^ (z >>> 28)) * 0xcb24d0a5c88c35b3L) >>> 32);
+    }
+
+}
@@ -0,0 +1,117 @@
+package com.yulin.minesweep.engine;
+
+import java.util.ArrayList;
+
+/**
+ * 不限步数的撤销、重做：翻开、插旗、双击都可以撤销，练习模式下还可以撤销踩雷
+ *
+ * 每步只保存这一步的{@link BoardDelta}，其中是变化的方格和变化前后的状态，不复制整个棋盘。
+ * 内存和所有操作改变的方格总数成正比，和棋盘大小、步数无关；撤销、重做1步的耗时只和这一步改变的方格数有关。
+ * 撤销、重做同样通过{@link OnBoardDeltaListener}通知，操作类型为{@link BoardDelta#MOVE_UNDO}、{@link BoardDelta#MOVE_REDO}
+ */
+public class UndoHistory implements OnBoardDeltaListener {
+
+    private final Board mBoard;
+    private final ArrayList<BoardDelta> mMoves = new ArrayList<>();
+    // 下一步撤销的是mMoves[mPosition - 1]，之后的都可以重做
+    private int mPosition;
+    private boolean mPractice;
+
+    /**
+     * 开始记录，之后board上的操作都可以撤销
+     */
+    public UndoHistory(Board board) {
+        mBoard = board;
+        board.addOnBoardDeltaListener(this);
+    }
+
+    /**
+     * 停止记录
+     */
+    public void detach() {
+        mBoard.removeOnBoardDeltaListener(this);
+    }
+
+    /**
+     * 练习模式下踩雷后可以撤销，继续这一局
+     */
+    public void setPractice(boolean practice) {
+        mPractice = practice;
+    }
+
+    public boolean isPractice() {
+        return mPractice;
+    }
+
+    @Override
+    public void onDelta(BoardDelta delta) {
+        if (delta.getMove() == BoardDelta.MOVE_UNDO || delta.getMove() == BoardDelta.MOVE_REDO) {
+            return;
+        }
+        if (!delta.isMove()) {
+            // 棋盘被批量改过，已记录的状态对不上，不能再撤销
+            clear();
+            return;
+        }
+        // 新的操作之后不能再重做被撤销的操作
+        mMoves.subList(mPosition, mMoves.size()).clear();
+        mMoves.add(delta);
+        mPosition++;
+    }
+
+    /**
+     * 是否可以撤销：有操作，游戏没有胜利；踩雷结束时只有练习模式可以撤销
+     */
+    public boolean canUndo() {
+        int status = mBoard.getStatus();
+        return mPosition > 0 && status != Board.STATUS_WON && (status != Board.STATUS_LOST || mPractice);
+    }
+
+    public boolean canRedo() {
+        return mPosition < mMoves.size();
+    }
+
+    /**
+     * 撤销最近1步
+     * @return 是否撤销了
+     */
+    public boolean undo() {
+        if (!canUndo()) {
+            return false;
+        }
+        mBoard.revert(mMoves.get(--mPosition));
+        return true;
+    }
+
+    /**
+     * 重做最近1次撤销的操作
+     * @return 是否重做了
+     */
+    public boolean redo() {
+        if (!canRedo()) {
+            return false;
+        }
+        mBoard.reapply(mMoves.get(mPosition++));
+        return true;
+    }
+
+    /**
+     * @return 已撤销的步数，即可以重做的步数
+     */
+    public int getRedoCount() {
+        return mMoves.size() - mPosition;
+    }
+
+    /**
+     * @return 可以撤销的步数，不考虑游戏是否已经结束
+     */
+    public int getUndoCount() {
+        return mPosition;
+    }
+
+    public void clear() {
+        mMoves.clear();
+        mPosition = 0;
+    }
+
+}
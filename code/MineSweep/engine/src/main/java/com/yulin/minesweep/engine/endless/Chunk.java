@@ -0,0 +1,50 @@
+package com.yulin.minesweep.engine.endless;
+
+/**
+ * 无尽模式中1个固定大小的区块，区块内的方格按 y * SIZE + x 编号
+ */
+final class Chunk {
+
+    static final int SHIFT = 5;
+    static final int SIZE = 1 << SHIFT;
+    static final int MASK = SIZE - 1;
+    static final int CELL_COUNT = SIZE * SIZE;
+
+    final long key;
+
+    // 是否含雷，由世界种子和区块坐标决定，可以随时重新生成
+    final long[] mines = new long[CELL_COUNT >>> 6];
+    // 周围雷数，需要相邻区块的雷，第1次用到时才计算
+    byte[] counts;
+    final byte[] states = new byte[CELL_COUNT];
+
+    // 是否有方格被打开、插旗或问号，只有被修改过的区块淘汰时需要保存
+    boolean modified;
+
+    Chunk(long key) {
+        this.key = key;
+    }
+
+    boolean isMine(int local) {
+        return (mines[local >>> 6] & (1L << local)) != 0;
+    }
+
+    /**
+     * 把方格状态压缩为每格2位，1个区块256字节。4种状态的取值都在0~3之间
+     */
+    long[] packStates() {
+        long[] packed = new long[CELL_COUNT >>> 5];
+        for (int i = 0; i < CELL_COUNT; i++) {
+            packed[i >>> 5] |= (long) (states[i] & 3) << ((i & 31) << 1);
+        }
+        return packed;
+    }
+
+    void unpackStates(long[] packed) {
+        for (int i = 0; i < CELL_COUNT; i++) {
+            states[i] = (byte) ((packed[i >>> 5] >>> ((i & 31) << 1)) & 3);
+        }
+        modified = true;
+    }
+
+}
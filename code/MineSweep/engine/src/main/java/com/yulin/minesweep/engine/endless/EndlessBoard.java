@@ -0,0 +1,380 @@
+package com.yulin.minesweep.engine.endless;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.SplitMix64;
+
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 无尽模式棋盘：世界按32 * 32划分为区块，区块只有在翻开或显示到它时才生成
+ *
+ * 每个区块的雷由 (世界种子, 区块坐标) 的哈希决定，随时可以重新生成。区块放在LRU缓存中，
+ * 淘汰时未修改的区块直接丢弃，修改过的区块只把方格状态压缩保存（每格2位），再次用到时重新生成雷并恢复状态。
+ * 内存只和缓存大小、修改过的区块数有关，和探索过的范围无关。
+ *
+ * 坐标原点及其周围8格不布雷，游戏从翻开原点开始。踩到雷游戏结束，没有胜利条件。
+ * 方格状态取值与{@link Board}相同
+ */
+public class EndlessBoard {
+
+    public interface OnChangeListener {
+
+        /**
+         * 一次操作中状态变化的方格
+         * @param cells 方格坐标，用{@link #pack(int, int)}打包，数组由EndlessBoard复用，只在回调期间有效
+         * @param count 方格数
+         * */
+        void onCellsChanged(long[] cells, int count);
+
+        /**
+         * 踩到雷，游戏结束
+         * */
+        void onGameOver(int x, int y);
+    }
+
+    // 默认缓存的区块数，每个区块约2.2KB
+    public static final int DEFAULT_CACHE_CHUNKS = 256;
+
+    // 密度太低时空白区域可能无限连通，一次翻开停不下来
+    public static final double MIN_DENSITY = 0.15;
+    public static final double MAX_DENSITY = 0.5;
+
+    // 一次操作最多打开的方格数，防止意外情况下一直展开
+    private static final int MAX_OPEN_PER_MOVE = 1 << 20;
+
+    private final long mSeed;
+    private final double mDensity;
+
+    private final LinkedHashMap<Long, Chunk> mChunks;
+    // 被淘汰的修改过的区块：区块坐标 -> 压缩后的方格状态
+    private final HashMap<Long, long[]> mSaved = new HashMap<>();
+
+    // 最近访问的区块，连续访问同1个区块时不查表。该区块被淘汰时清空，不会写到已淘汰的区块上
+    private Chunk mLastChunk;
+
+    private final SplitMix64 mRandom = new SplitMix64(0);
+
+    // 一次操作中状态变化的方格，同时作为连续打开空白方格的队列
+    private long[] mChanged = new long[1024];
+    private int mChangedSize;
+
+    private long mOpenedCount;
+    private boolean mGameOver;
+
+    private OnChangeListener mListener;
+
+    public EndlessBoard(long seed, double density) {
+        this(seed, density, DEFAULT_CACHE_CHUNKS);
+    }
+
+    /**
+     * @param cacheChunks LRU缓存的区块数，不能少于计算1个区块周围雷数需要的9个
+     */
+    public EndlessBoard(long seed, double density, final int cacheChunks) {
+        if (density < MIN_DENSITY || density > MAX_DENSITY) {
+            throw new IllegalArgumentException("density " + density);
+        }
+        if (cacheChunks < 16) {
+            throw new IllegalArgumentException("cacheChunks " + cacheChunks);
+        }
+        mSeed = seed;
+        mDensity = density;
+        mChunks = new LinkedHashMap<Long, Chunk>(cacheChunks * 2, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, Chunk> eldest) {
+                if (size() <= cacheChunks) {
+                    return false;
+                }
+                Chunk chunk = eldest.getValue();
+                if (chunk == mLastChunk) {
+                    mLastChunk = null;
+                }
+                if (chunk.modified) {
+                    mSaved.put(chunk.key, chunk.packStates());
+                }
+                return true;
+            }
+        };
+    }
+
+    public void setOnChangeListener(OnChangeListener listener) {
+        mListener = listener;
+    }
+
+    public static long pack(int x, int y) {
+        return ((long) y << 32) | (x & 0xffffffffL);
+    }
+
+    public static int unpackX(long cell) {
+        return (int) cell;
+    }
+
+    public static int unpackY(long cell) {
+        return (int) (cell >> 32);
+    }
+
+    private Chunk getChunk(int x, int y) {
+        int cx = x >> Chunk.SHIFT;
+        int cy = y >> Chunk.SHIFT;
+        long key = pack(cx, cy);
+        Chunk chunk = mLastChunk;
+        if (chunk != null && chunk.key == key) {
+            return chunk;
+        }
+        chunk = mChunks.get(key);
+        if (chunk == null) {
+            chunk = createChunk(key, cx, cy);
+            long[] saved = mSaved.remove(key);
+            if (saved != null) {
+                chunk.unpackStates(saved);
+            }
+            mChunks.put(key, chunk);
+        }
+        mLastChunk = chunk;
+        return chunk;
+    }
+
+    // 由世界种子和区块坐标生成区块的雷
+    private Chunk createChunk(long key, int cx, int cy) {
+        Chunk chunk = new Chunk(key);
+        mRandom.setSeed(SplitMix64.mix64(mSeed + SplitMix64.mix64(key)));
+        int baseX = cx << Chunk.SHIFT;
+        int baseY = cy << Chunk.SHIFT;
+        for (int i = 0; i < Chunk.CELL_COUNT; i++) {
+            boolean mine = mRandom.nextDouble() < mDensity;
+            if (mine && !isSafeZone(baseX + (i & Chunk.MASK), baseY + (i >>> Chunk.SHIFT))) {
+                chunk.mines[i >>> 6] |= 1L << i;
+            }
+        }
+        return chunk;
+    }
+
+    private static boolean isSafeZone(int x, int y) {
+        return x >= -1 && x <= 1 && y >= -1 && y <= 1;
+    }
+
+    private static int local(int x, int y) {
+        return ((y & Chunk.MASK) << Chunk.SHIFT) | (x & Chunk.MASK);
+    }
+
+    public boolean isMine(int x, int y) {
+        return getChunk(x, y).isMine(local(x, y));
+    }
+
+    public int getState(int x, int y) {
+        return getChunk(x, y).states[local(x, y)];
+    }
+
+    public int getMineCount(int x, int y) {
+        Chunk chunk = getChunk(x, y);
+        if (chunk.counts == null) {
+            computeCounts(chunk, x >> Chunk.SHIFT, y >> Chunk.SHIFT);
+        }
+        return chunk.counts[local(x, y)];
+    }
+
+    // 计算区块内所有方格的周围雷数，边缘方格需要读取相邻区块的雷
+    private void computeCounts(Chunk chunk, int cx, int cy) {
+        byte[] counts = new byte[Chunk.CELL_COUNT];
+        int baseX = cx << Chunk.SHIFT;
+        int baseY = cy << Chunk.SHIFT;
+        for (int i = 0; i < Chunk.CELL_COUNT; i++) {
+            int lx = i & Chunk.MASK;
+            int ly = i >>> Chunk.SHIFT;
+            int count = 0;
+            for (int dy = -1; dy <= 1; dy++) {
+                for (int dx = -1; dx <= 1; dx++) {
+                    if (dx == 0 && dy == 0) {
+                        continue;
+                    }
+                    int nx = lx + dx;
+                    int ny = ly + dy;
+                    if (nx >= 0 && nx < Chunk.SIZE && ny >= 0 && ny < Chunk.SIZE) {
+                        if (chunk.isMine((ny << Chunk.SHIFT) | nx)) {
+                            count++;
+                        }
+                    } else if (isMine(baseX + nx, baseY + ny)) {
+                        count++;
+                    }
+                }
+            }
+            counts[i] = (byte) count;
+        }
+        chunk.counts = counts;
+    }
+
+    /**
+     * 翻开方格，空白方格连续打开周围方格，可以跨越区块
+     * @return 本次打开的方格数
+     */
+    public int open(int x, int y) {
+        if (mGameOver || getState(x, y) != Board.STATE_IDLE) {
+            return 0;
+        }
+        if (isMine(x, y)) {
+            onLose(x, y);
+            return 0;
+        }
+        mChangedSize = 0;
+        openCell(x, y);
+        floodFill();
+        notifyChanged();
+        return mChangedSize;
+    }
+
+    private void openCell(int x, int y) {
+        Chunk chunk = getChunk(x, y);
+        chunk.states[local(x, y)] = Board.STATE_OPENED;
+        chunk.modified = true;
+        mOpenedCount++;
+        if (mChangedSize == mChanged.length) {
+            long[] grown = new long[mChangedSize * 2];
+            System.arraycopy(mChanged, 0, grown, 0, mChangedSize);
+            mChanged = grown;
+        }
+        mChanged[mChangedSize++] = pack(x, y);
+    }
+
+    private void floodFill() {
+        int head = 0;
+        while (head < mChangedSize && mChangedSize < MAX_OPEN_PER_MOVE) {
+            long cell = mChanged[head++];
+            int x = unpackX(cell);
+            int y = unpackY(cell);
+            if (getMineCount(x, y) != 0) {
+                continue;
+            }
+            for (int ny = y - 1; ny <= y + 1; ny++) {
+                for (int nx = x - 1; nx <= x + 1; nx++) {
+                    if (getState(nx, ny) == Board.STATE_IDLE) {
+                        openCell(nx, ny);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 插旗或问号：默认变插旗，插旗变问号，问号变回默认。已打开方格无反应
+     */
+    public void toggleMark(int x, int y) {
+        if (mGameOver) {
+            return;
+        }
+        Chunk chunk = getChunk(x, y);
+        int local = local(x, y);
+        byte state = chunk.states[local];
+        if (state == Board.STATE_IDLE) {
+            chunk.states[local] = Board.STATE_FLAG;
+        } else if (state == Board.STATE_FLAG) {
+            chunk.states[local] = Board.STATE_QUESTION;
+        } else if (state == Board.STATE_QUESTION) {
+            chunk.states[local] = Board.STATE_IDLE;
+        } else {
+            return;
+        }
+        chunk.modified = true;
+        mChangedSize = 0;
+        mChanged[mChangedSize++] = pack(x, y);
+        notifyChanged();
+    }
+
+    /**
+     * 双击已打开方格：周围插旗数和周围雷数相同时，打开周围剩余未插旗的方格。周围有问号时不响应
+     * @return 本次打开的方格数
+     */
+    public int chord(int x, int y) {
+        if (mGameOver || getState(x, y) != Board.STATE_OPENED || getMineCount(x, y) == 0) {
+            return 0;
+        }
+        int flagCount = 0;
+        for (int ny = y - 1; ny <= y + 1; ny++) {
+            for (int nx = x - 1; nx <= x + 1; nx++) {
+                int state = getState(nx, ny);
+                if (state == Board.STATE_QUESTION) {
+                    return 0;
+                }
+                if (state == Board.STATE_FLAG) {
+                    flagCount++;
+                }
+            }
+        }
+        if (flagCount != getMineCount(x, y)) {
+            return 0;
+        }
+
+        for (int ny = y - 1; ny <= y + 1; ny++) {
+            for (int nx = x - 1; nx <= x + 1; nx++) {
+                if (getState(nx, ny) == Board.STATE_IDLE && isMine(nx, ny)) {
+                    onLose(nx, ny);
+                    return 0;
+                }
+            }
+        }
+
+        mChangedSize = 0;
+        for (int ny = y - 1; ny <= y + 1; ny++) {
+            for (int nx = x - 1; nx <= x + 1; nx++) {
+                if (getState(nx, ny) == Board.STATE_IDLE) {
+                    openCell(nx, ny);
+                }
+            }
+        }
+        floodFill();
+        notifyChanged();
+        return mChangedSize;
+    }
+
+    // 踩到雷只打开这1个雷格，世界无限大，不打开所有方格
+    private void onLose(int x, int y) {
+        mGameOver = true;
+        Chunk chunk = getChunk(x, y);
+        chunk.states[local(x, y)] = Board.STATE_OPENED;
+        chunk.modified = true;
+        mChangedSize = 0;
+        mChanged[mChangedSize++] = pack(x, y);
+        notifyChanged();
+        if (mListener != null) {
+            mListener.onGameOver(x, y);
+        }
+    }
+
+    private void notifyChanged() {
+        if (mListener != null && mChangedSize > 0) {
+            mListener.onCellsChanged(mChanged, mChangedSize);
+        }
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public double getDensity() {
+        return mDensity;
+    }
+
+    public long getOpenedCount() {
+        return mOpenedCount;
+    }
+
+    public boolean isGameOver() {
+        return mGameOver;
+    }
+
+    /**
+     * @return 缓存中的区块数
+     */
+    public int getCachedChunkCount() {
+        return mChunks.size();
+    }
+
+    /**
+     * @return 已淘汰并压缩保存的区块数
+     */
+    public int getSavedChunkCount() {
+        return mSaved.size();
+    }
+
+}
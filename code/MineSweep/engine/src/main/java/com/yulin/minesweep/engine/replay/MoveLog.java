@@ -0,0 +1,251 @@
+package com.yulin.minesweep.engine.replay;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardDelta;
+import com.yulin.minesweep.engine.MinePlacer;
+import com.yulin.minesweep.engine.OnBoardDeltaListener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 对局记录：只追加的二进制日志，记录棋盘参数、种子和玩家的每一步操作
+ *
+ * 文件格式（整数都是无符号varint，除非特别说明）：
+ * 文件头：魔数"MSLG"、格式版本、布雷算法版本、行数、列数、雷数、种子（8字节大端）、开始时间（8字节大端，毫秒）、检查点间隔、
+ * 开始记录时已经布雷的第1次翻开的方格序号 + 1（0表示还没有布雷，版本1没有这一项）、
+ * 雷的来源（0按种子布雷，1用{@link Board#setMine(int)}放置，后面是雷的位图，每个方格1位，按序号从低位到高位；版本3开始有这一项）
+ * 记录：tag = (方格序号 << 2) | 类型，类型0~2为操作（见{@link Board#MOVE_OPEN}等），后面是距上一步的毫秒数；
+ * 类型3为检查点，后面是所有方格的状态，每格2位，见{@link Board#packStates(byte[], int)}。
+ * 每隔一定步数写1个检查点，回放时从最近的检查点开始，不需要从第1步重放。两个检查点之间的操作记录
+ * 至少和1个检查点一样大，大棋盘上检查点占文件的比例不超过一半。开始记录时棋盘已经布雷或有标记（例如恢复的对局），第1条记录就是检查点。
+ * 撤销、重做和批量设置状态不是操作，不能重放，发生后立即写1个检查点，回放从这里继续。
+ *
+ * 在UI线程中记录，不做磁盘读写；用{@link #drainPending()}取出新追加的字节后在后台线程写入文件，取出的字节不再留在内存中。
+ * 页面重建时用{@link #resume(Board)}接着同一个文件继续记录
+ */
+public class MoveLog implements OnBoardDeltaListener {
+
+    static final byte[] MAGIC = {'M', 'S', 'L', 'G'};
+    static final int VERSION = 3;
+
+    static final int KIND_CHECKPOINT = 3;
+
+    public static final int DEFAULT_CHECKPOINT_INTERVAL = 32;
+
+    private final Board mBoard;
+    private final int mCheckpointInterval;
+
+    // 还没有被drainPending()取走的字节
+    private byte[] mBuffer = new byte[256];
+    private int mSize;
+    // 已经被drainPending()取走的字节数
+    private int mDrained;
+
+    private int mMoveCount;
+    private int mMovesSinceCheckpoint;
+    private int mLastCheckpointEnd;
+    private long mLastTime;
+    private byte[] mStates;
+
+    public MoveLog(Board board) {
+        this(board, DEFAULT_CHECKPOINT_INTERVAL, System.currentTimeMillis());
+    }
+
+    /**
+     * 开始记录，之后board上的操作都会追加到日志中
+     * @param checkpointInterval 两个检查点之间至少间隔的步数
+     * @param startTime 对局开始时间，毫秒
+     */
+    public MoveLog(Board board, int checkpointInterval, long startTime) {
+        this(board, checkpointInterval, startTime, true);
+    }
+
+    private MoveLog(Board board, int checkpointInterval, long startTime, boolean writeHeader) {
+        if (checkpointInterval <= 0) {
+            throw new IllegalArgumentException("checkpointInterval " + checkpointInterval);
+        }
+        mBoard = board;
+        mCheckpointInterval = checkpointInterval;
+        mLastTime = startTime;
+        mStates = new byte[board.getPackedStatesSize()];
+        if (writeHeader) {
+            writeHeader(board, checkpointInterval, startTime);
+        } else {
+            // 接着已有的日志，先用检查点记下当前局面
+            writeCheckpoint();
+        }
+
+        board.addOnBoardDeltaListener(this);
+    }
+
+    /**
+     * 接着已经写入文件的日志继续记录，不再写文件头，第1条记录是当前局面的检查点，取出的字节追加到原来的文件即可。
+     * 中断期间的时间不计入操作间隔
+     * @param board 和原来的日志是同一局，例如页面重建时从{@link Board#fromByteArray(byte[])}恢复的棋盘
+     */
+    public static MoveLog resume(Board board) {
+        return new MoveLog(board, DEFAULT_CHECKPOINT_INTERVAL, System.currentTimeMillis(), false);
+    }
+
+    private void writeHeader(Board board, int checkpointInterval, long startTime) {
+        ensureCapacity(MAGIC.length);
+        System.arraycopy(MAGIC, 0, mBuffer, 0, MAGIC.length);
+        mSize = MAGIC.length;
+        writeVarint(VERSION);
+        writeVarint(MinePlacer.VERSION);
+        writeVarint(board.getRowCount());
+        writeVarint(board.getColumnCount());
+        writeVarint(board.getMineTotal());
+        writeLong(board.getSeed());
+        writeLong(startTime);
+        writeVarint(checkpointInterval);
+        writeVarint(board.isMinesPlaced() ? board.getFirstIndex() + 1 : 0);
+        if (board.hasCustomMines()) {
+            // 自定义的雷不能由种子生成，记下所有雷的位置
+            writeVarint(1);
+            writeMineBits();
+        } else {
+            writeVarint(0);
+        }
+        mLastCheckpointEnd = mSize;
+        if (board.isMinesPlaced() || hasMarks()) {
+            writeCheckpoint();
+        }
+    }
+
+    @Override
+    public void onDelta(BoardDelta delta) {
+        if (delta.isMove()) {
+            onMove(delta.getMove(), delta.getIndex(), System.currentTimeMillis());
+        } else {
+            writeCheckpoint();
+        }
+    }
+
+    /**
+     * 追加1步操作
+     * @param time 操作时间，毫秒
+     */
+    public void onMove(int move, int index, long time) {
+        writeVarint(((long) index << 2) | move);
+        writeVarint(Math.max(0, time - mLastTime));
+        mLastTime = time;
+        mMoveCount++;
+        mMovesSinceCheckpoint++;
+        if (mMovesSinceCheckpoint >= mCheckpointInterval && mSize - mLastCheckpointEnd >= mStates.length) {
+            writeCheckpoint();
+        }
+    }
+
+    // 布雷之前可能已经插旗或标问号
+    private boolean hasMarks() {
+        mBoard.packStates(mStates, 0);
+        for (byte b : mStates) {
+            if (b != 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private void writeMineBits() {
+        int cellCount = mBoard.getCellCount();
+        int size = (cellCount + 7) >>> 3;
+        ensureCapacity(size);
+        Arrays.fill(mBuffer, mSize, mSize + size, (byte) 0);
+        for (int i = 0; i < cellCount; i++) {
+            if (mBoard.isMine(i)) {
+                mBuffer[mSize + (i >>> 3)] |= 1 << (i & 7);
+            }
+        }
+        mSize += size;
+    }
+
+    private void writeCheckpoint() {
+        writeVarint(KIND_CHECKPOINT);
+        mBoard.packStates(mStates, 0);
+        ensureCapacity(mStates.length);
+        System.arraycopy(mStates, 0, mBuffer, mSize, mStates.length);
+        mSize += mStates.length;
+        mMovesSinceCheckpoint = 0;
+        mLastCheckpointEnd = mSize;
+    }
+
+    /**
+     * 停止记录
+     */
+    public void detach() {
+        mBoard.removeOnBoardDeltaListener(this);
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    /**
+     * @return 日志的总字节数，包括已经取走的部分
+     */
+    public int size() {
+        return mDrained + mSize;
+    }
+
+    /**
+     * @return 完整的日志
+     * @throws IllegalStateException 调用过{@link #drainPending()}，前面的部分已经不在内存中
+     */
+    public byte[] toByteArray() {
+        checkNotDrained();
+        return Arrays.copyOf(mBuffer, mSize);
+    }
+
+    /**
+     * 取出上次调用之后新追加的字节，依次追加写入文件即得到完整的日志。取出的字节从内存中移除，缓冲区留给之后的记录复用
+     */
+    public byte[] drainPending() {
+        byte[] pending = Arrays.copyOf(mBuffer, mSize);
+        mDrained += mSize;
+        // 检查点的位置改为相对剩下的缓冲区，可以是负数
+        mLastCheckpointEnd -= mSize;
+        mSize = 0;
+        return pending;
+    }
+
+    /**
+     * @throws IllegalStateException 调用过{@link #drainPending()}
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        checkNotDrained();
+        out.write(mBuffer, 0, mSize);
+    }
+
+    private void checkNotDrained() {
+        if (mDrained > 0) {
+            throw new IllegalStateException("move log already drained");
+        }
+    }
+
+    private void ensureCapacity(int extra) {
+        if (mSize + extra > mBuffer.length) {
+            mBuffer = Arrays.copyOf(mBuffer, Math.max(mBuffer.length * 2, mSize + extra));
+        }
+    }
+
+    private void writeVarint(long value) {
+        ensureCapacity(10);
+        while ((value & ~0x7fL) != 0) {
+            mBuffer[mSize++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        mBuffer[mSize++] = (byte) value;
+    }
+
+    private void writeLong(long value) {
+        ensureCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            mBuffer[mSize++] = (byte) (value >>> shift);
+        }
+    }
+
+}
@@ -0,0 +1,320 @@
+package com.yulin.minesweep.engine.replay;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.MinePlacer;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.Arrays;
+
+/**
+ * 读取{@link MoveLog}写下的对局记录，可以跳到任意一步
+ *
+ * 文件通过内存映射读取，打开时顺序扫描1遍，记下每步操作和每个检查点的位置。跳到第n步时从n之前最近的检查点恢复方格状态，
+ * 只重放检查点之后的操作，耗时和总步数无关。文件末尾不完整的记录（写入时进程被杀）会被忽略
+ */
+public class MoveLogReader {
+
+    private final ByteBuffer mBuffer;
+
+    private int mRowCount;
+    private int mColumnCount;
+    private int mMineTotal;
+    private long mSeed;
+    private long mStartTime;
+    private int mPackedStatesSize;
+
+    // 每步操作的tag所在位置和操作时间
+    private int[] mMoveOffsets = new int[64];
+    private long[] mMoveTimes = new long[64];
+    private int mMoveCount;
+
+    // 检查点之前的步数和方格状态所在位置
+    private int[] mCheckpointMoves = new int[8];
+    private int[] mCheckpointOffsets = new int[8];
+    private int mCheckpointCount;
+
+    // 第1次翻开的方格和它是第几步，决定布雷；在记录开始之前翻开时步数为-1
+    private int mFirstOpenIndex = -1;
+    private int mFirstOpenMove = -1;
+
+    // 自定义的雷的位图，按种子布雷时为null
+    private byte[] mMineBits;
+
+    private byte[] mStates;
+
+    // 读取varint时的当前位置
+    private int mPosition;
+
+    /**
+     * 通过内存映射读取文件
+     */
+    public MoveLogReader(File file) throws IOException {
+        this(map(file));
+    }
+
+    public MoveLogReader(ByteBuffer buffer) throws IOException {
+        mBuffer = buffer;
+        readHeader();
+        index();
+    }
+
+    private static ByteBuffer map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            // 映射建立后关闭文件，映射仍然有效
+            return channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+    }
+
+    private void readHeader() throws IOException {
+        if (mBuffer.limit() < MoveLog.MAGIC.length) {
+            throw new IOException("not a move log");
+        }
+        for (int i = 0; i < MoveLog.MAGIC.length; i++) {
+            if (mBuffer.get(i) != MoveLog.MAGIC[i]) {
+                throw new IOException("not a move log");
+            }
+        }
+        mPosition = MoveLog.MAGIC.length;
+        try {
+            int version = (int) readVarint();
+            if (version < 1 || version > MoveLog.VERSION) {
+                throw new IOException("unsupported move log version " + version);
+            }
+            int placerVersion = (int) readVarint();
+            if (placerVersion != MinePlacer.VERSION) {
+                throw new IOException("board placed by MinePlacer version " + placerVersion);
+            }
+            mRowCount = (int) readVarint();
+            mColumnCount = (int) readVarint();
+            mMineTotal = (int) readVarint();
+            mSeed = readLong();
+            mStartTime = readLong();
+            readVarint();
+            if (version >= 2) {
+                // 记录开始前已经布雷，第1次翻开不在记录中
+                mFirstOpenIndex = (int) readVarint() - 1;
+            }
+            if (version >= 3 && readVarint() != 0) {
+                mMineBits = new byte[(int) (((long) mRowCount * mColumnCount + 7) >>> 3)];
+                for (int i = 0; i < mMineBits.length; i++) {
+                    mMineBits[i] = mBuffer.get(mPosition++);
+                }
+            }
+        } catch (IndexOutOfBoundsException e) {
+            throw new IOException("truncated move log header");
+        }
+        mPackedStatesSize = (mRowCount * mColumnCount + 3) >>> 2;
+        mStates = new byte[mPackedStatesSize];
+    }
+
+    private void index() {
+        long time = mStartTime;
+        int limit = mBuffer.limit();
+        while (mPosition < limit) {
+            int offset = mPosition;
+            try {
+                long tag = readVarint();
+                int kind = (int) (tag & 3);
+                if (kind == MoveLog.KIND_CHECKPOINT) {
+                    if (mPosition + mPackedStatesSize > limit) {
+                        break;
+                    }
+                    addCheckpoint(mMoveCount, mPosition);
+                    mPosition += mPackedStatesSize;
+                } else {
+                    time += readVarint();
+                    if (kind == Board.MOVE_OPEN && mFirstOpenIndex < 0) {
+                        mFirstOpenIndex = (int) (tag >>> 2);
+                        mFirstOpenMove = mMoveCount;
+                    }
+                    addMove(offset, time);
+                }
+            } catch (IndexOutOfBoundsException e) {
+                break;
+            }
+        }
+    }
+
+    private void addMove(int offset, long time) {
+        if (mMoveCount == mMoveOffsets.length) {
+            mMoveOffsets = Arrays.copyOf(mMoveOffsets, mMoveCount * 2);
+            mMoveTimes = Arrays.copyOf(mMoveTimes, mMoveCount * 2);
+        }
+        mMoveOffsets[mMoveCount] = offset;
+        mMoveTimes[mMoveCount] = time;
+        mMoveCount++;
+    }
+
+    private void addCheckpoint(int moves, int offset) {
+        if (mCheckpointCount == mCheckpointMoves.length) {
+            mCheckpointMoves = Arrays.copyOf(mCheckpointMoves, mCheckpointCount * 2);
+            mCheckpointOffsets = Arrays.copyOf(mCheckpointOffsets, mCheckpointCount * 2);
+        }
+        mCheckpointMoves[mCheckpointCount] = moves;
+        mCheckpointOffsets[mCheckpointCount] = offset;
+        mCheckpointCount++;
+    }
+
+    private long readVarint() {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            byte b = mBuffer.get(mPosition++);
+            value |= (long) (b & 0x7f) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+    }
+
+    private long readLong() {
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (mBuffer.get(mPosition++) & 0xff);
+        }
+        return value;
+    }
+
+    /**
+     * @return 与记录的对局参数相同、尚未开始的棋盘
+     */
+    public Board createBoard() {
+        Board board = new Board(mRowCount, mColumnCount, mMineTotal, mSeed);
+        putMines(board);
+        return board;
+    }
+
+    // 按记录的位图放置自定义的雷
+    private void putMines(Board board) {
+        if (mMineBits == null) {
+            return;
+        }
+        int cellCount = mRowCount * mColumnCount;
+        for (int i = 0; i < cellCount; i++) {
+            if ((mMineBits[i >>> 3] & (1 << (i & 7))) != 0) {
+                board.setMine(i);
+            }
+        }
+    }
+
+    /**
+     * 把棋盘恢复到前moves步操作之后的局面。棋盘不能挂着{@link MoveLog}，否则重放的操作会被再次记录
+     * @param board 行列数、雷数与记录相同的棋盘，原来的状态被覆盖
+     */
+    public void seek(Board board, int moves) {
+        if (board.getRowCount() != mRowCount || board.getColumnCount() != mColumnCount
+                || board.getMineTotal() != mMineTotal) {
+            throw new IllegalArgumentException("board size does not match the move log");
+        }
+        moves = Math.max(0, Math.min(moves, mMoveCount));
+        board.reset(mSeed);
+        putMines(board);
+
+        int checkpoint = findCheckpoint(moves);
+        int start = checkpoint >= 0 ? mCheckpointMoves[checkpoint] : 0;
+        if (mMineBits == null && mFirstOpenIndex >= 0 && mFirstOpenMove < start) {
+            board.placeMines(mFirstOpenIndex);
+        }
+        if (checkpoint >= 0) {
+            int offset = mCheckpointOffsets[checkpoint];
+            for (int i = 0; i < mPackedStatesSize; i++) {
+                mStates[i] = mBuffer.get(offset + i);
+            }
+            board.unpackStates(mStates, 0);
+        }
+        for (int i = start; i < moves; i++) {
+            apply(board, i);
+        }
+    }
+
+    // 步数不超过moves的最后1个检查点，没有时返回-1
+    private int findCheckpoint(int moves) {
+        int low = 0;
+        int high = mCheckpointCount - 1;
+        int result = -1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            if (mCheckpointMoves[mid] <= moves) {
+                result = mid;
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return result;
+    }
+
+    private void apply(Board board, int move) {
+        int type = getMoveType(move);
+        int index = getMoveIndex(move);
+        if (type == Board.MOVE_OPEN) {
+            board.open(index);
+        } else if (type == Board.MOVE_MARK) {
+            board.toggleMark(index);
+        } else if (type == Board.MOVE_CHORD) {
+            board.chord(index);
+        }
+    }
+
+    private long readTag(int move) {
+        mPosition = mMoveOffsets[move];
+        return readVarint();
+    }
+
+    /**
+     * @return 第move步的操作类型，见{@link Board#MOVE_OPEN}等
+     */
+    public int getMoveType(int move) {
+        return (int) (readTag(move) & 3);
+    }
+
+    public int getMoveIndex(int move) {
+        return (int) (readTag(move) >>> 2);
+    }
+
+    /**
+     * @return 第move步的操作时间，毫秒
+     */
+    public long getMoveTime(int move) {
+        return mMoveTimes[move];
+    }
+
+    public int getMoveCount() {
+        return mMoveCount;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public int getMineTotal() {
+        return mMineTotal;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    /**
+     * @return 雷是用{@link Board#setMine(int)}放置的，不是由种子生成的
+     */
+    public boolean hasCustomMines() {
+        return mMineBits != null;
+    }
+
+    public long getStartTime() {
+        return mStartTime;
+    }
+
+}
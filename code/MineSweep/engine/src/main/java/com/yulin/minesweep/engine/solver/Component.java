@@ -0,0 +1,187 @@
+package com.yulin.minesweep.engine.solver;
+
+import java.util.Arrays;
+
+/**
+ * 边界上1个独立的约束分量：一组未打开方格和约束它们的已打开数字，与其它分量没有共同方格
+ *
+ * 用回溯穷举分量内所有满足约束的布雷方案，按方案中的雷数分别统计方案数和每个方格为雷的方案数。
+ * 内部数组可复用；不同分量可以在不同线程中同时穷举
+ */
+final class Component {
+
+    // 每个约束最多8个方格，每个方格最多属于8个约束
+    private static final int MAX_LINKS = 8;
+
+    // 方格的全局序号
+    int[] cells = new int[16];
+    int cellCount;
+
+    private int[] mConsCells = new int[16 * MAX_LINKS];
+    private int[] mConsSize = new int[16];
+    private int[] mConsValue = new int[16];
+    private int mConsCount;
+
+    private int[] mCellCons = new int[16 * MAX_LINKS];
+    private int[] mCellConsCount = new int[16];
+
+    // 穷举过程中每个约束已放的雷数和还没有决定的方格数
+    private int[] mConsMines = new int[16];
+    private int[] mConsUnassigned = new int[16];
+    private byte[] mAssign = new byte[16];
+
+    private long mNodes;
+    private long mBudget;
+    private boolean mAborted;
+
+    /**
+     * solutions[k]：分量内恰好k个雷的方案数
+     * cellSolutions[k * cellCount + i]：恰好k个雷的方案中，第i个方格是雷的方案数
+     * 方案数可能很大，用double保存
+     */
+    double[] solutions = new double[17];
+    double[] cellSolutions = new double[17 * 16];
+
+    void reset() {
+        cellCount = 0;
+        mConsCount = 0;
+    }
+
+    int addCell(int global) {
+        if (cellCount == cells.length) {
+            int size = cellCount * 2;
+            cells = Arrays.copyOf(cells, size);
+            mCellCons = Arrays.copyOf(mCellCons, size * MAX_LINKS);
+            mCellConsCount = Arrays.copyOf(mCellConsCount, size);
+            mAssign = Arrays.copyOf(mAssign, size);
+        }
+        cells[cellCount] = global;
+        mCellConsCount[cellCount] = 0;
+        return cellCount++;
+    }
+
+    /**
+     * @param localCells 约束包含的方格在本分量中的序号
+     * @param value 这些方格中的雷数
+     * */
+    void addConstraint(int[] localCells, int offset, int size, int value) {
+        if (mConsCount == mConsSize.length) {
+            int capacity = mConsCount * 2;
+            mConsCells = Arrays.copyOf(mConsCells, capacity * MAX_LINKS);
+            mConsSize = Arrays.copyOf(mConsSize, capacity);
+            mConsValue = Arrays.copyOf(mConsValue, capacity);
+            mConsMines = Arrays.copyOf(mConsMines, capacity);
+            mConsUnassigned = Arrays.copyOf(mConsUnassigned, capacity);
+        }
+        int c = mConsCount++;
+        for (int k = 0; k < size; k++) {
+            int local = localCells[offset + k];
+            mConsCells[c * MAX_LINKS + k] = local;
+            mCellCons[local * MAX_LINKS + mCellConsCount[local]++] = c;
+        }
+        mConsSize[c] = size;
+        mConsValue[c] = value;
+    }
+
+    /**
+     * 穷举所有方案
+     * @param budget 最多搜索的节点数，超过后放弃
+     * @return 是否完成穷举
+     */
+    boolean enumerate(long budget) {
+        int n = cellCount;
+        if (solutions.length < n + 1) {
+            solutions = new double[n + 1];
+        }
+        if (cellSolutions.length < (n + 1) * n) {
+            cellSolutions = new double[(n + 1) * n];
+        }
+        Arrays.fill(solutions, 0, n + 1, 0);
+        Arrays.fill(cellSolutions, 0, (n + 1) * n, 0);
+        for (int c = 0; c < mConsCount; c++) {
+            mConsMines[c] = 0;
+            mConsUnassigned[c] = mConsSize[c];
+        }
+
+        mNodes = 0;
+        mBudget = budget;
+        mAborted = false;
+        search(0, 0);
+        return !mAborted;
+    }
+
+    private void search(int depth, int mines) {
+        if (mAborted) {
+            return;
+        }
+        if (++mNodes > mBudget) {
+            mAborted = true;
+            return;
+        }
+        if (depth == cellCount) {
+            record(mines);
+            return;
+        }
+        for (byte v = 0; v <= 1; v++) {
+            mAssign[depth] = v;
+            if (assign(depth, v)) {
+                search(depth + 1, mines + v);
+            }
+            unassign(depth, v);
+        }
+    }
+
+    // 决定1个方格是否为雷，返回它所在的约束是否仍然可能满足
+    private boolean assign(int cell, int v) {
+        boolean ok = true;
+        int base = cell * MAX_LINKS;
+        for (int k = 0; k < mCellConsCount[cell]; k++) {
+            int c = mCellCons[base + k];
+            mConsUnassigned[c]--;
+            mConsMines[c] += v;
+            if (mConsMines[c] > mConsValue[c] || mConsMines[c] + mConsUnassigned[c] < mConsValue[c]) {
+                ok = false;
+            }
+        }
+        return ok;
+    }
+
+    private void unassign(int cell, int v) {
+        int base = cell * MAX_LINKS;
+        for (int k = 0; k < mCellConsCount[cell]; k++) {
+            int c = mCellCons[base + k];
+            mConsUnassigned[c]++;
+            mConsMines[c] -= v;
+        }
+    }
+
+    private void record(int mines) {
+        solutions[mines] += 1;
+        int base = mines * cellCount;
+        for (int i = 0; i < cellCount; i++) {
+            if (mAssign[i] == 1) {
+                cellSolutions[base + i] += 1;
+            }
+        }
+    }
+
+    /**
+     * @return 所有方案中第i个方格是雷的方案数
+     */
+    double mineSolutions(int i) {
+        double sum = 0;
+        for (int k = 0; k <= cellCount; k++) {
+            sum += cellSolutions[k * cellCount + i];
+        }
+        return sum;
+    }
+
+    double totalSolutions() {
+        double sum = 0;
+        for (int k = 0; k <= cellCount; k++) {
+            sum += solutions[k];
+        }
+        return sum;
+    }
+
+}
@@ -0,0 +1,174 @@
+package com.yulin.minesweep.engine.solver;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.SplitMix64;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 无需猜测的棋盘生成器
+ *
+ * 由基础种子派生出一串候选种子，每个候选按种子布雷，从第1次点击开始只用{@link Solver}推导出的安全方格一路翻开，
+ * 能翻开所有非雷方格的候选被接受。多个工作线程按序号领取候选并行检查，一旦有候选被接受，序号更大的候选不再领取，
+ * 只等序号更小、正在检查的候选结束。结果总是序号最小的可接受候选，和线程数、调度无关，
+ * 相同的(基础种子, 行数, 列数, 雷数, 第1次点击的方格)总是得到相同的棋盘。
+ *
+ * 不能在同一个实例上同时调用generate()，cancel()可以在任意线程调用
+ */
+public class NoGuessGenerator {
+
+    // 默认最多检查的候选数，雷太密时可能找不到无需猜测的棋盘
+    public static final long DEFAULT_MAX_CANDIDATES = 100000;
+
+    private static final long CANDIDATE_GAMMA = 0x9e3779b97f4a7c15L;
+
+    private final ExecutorService mExecutor;
+    private final int mParallelism;
+    private long mMaxCandidates = DEFAULT_MAX_CANDIDATES;
+
+    // 本次generate()的取消标志，可以由调用者传入
+    private volatile AtomicBoolean mCancelled = new AtomicBoolean();
+
+    // 上次generate()检查过的候选数
+    private final AtomicLong mCheckedCount = new AtomicLong();
+
+    public NoGuessGenerator() {
+        this(null, 1);
+    }
+
+    /**
+     * @param executor 检查候选的线程池，null表示在当前线程中依次检查
+     * @param parallelism 同时检查的候选数，一般取CPU核数。不能在executor的线程中调用generate()，
+     *                    否则线程池线程数不大于parallelism时会互相等待
+     */
+    public NoGuessGenerator(ExecutorService executor, int parallelism) {
+        if (parallelism <= 0) {
+            throw new IllegalArgumentException("parallelism " + parallelism);
+        }
+        mExecutor = executor;
+        mParallelism = executor == null ? 1 : parallelism;
+    }
+
+    public void setMaxCandidates(long maxCandidates) {
+        mMaxCandidates = maxCandidates;
+    }
+
+    /**
+     * 生成无需猜测的棋盘，阻塞直到找到、取消或超过最多候选数
+     * @param firstIndex 第1次点击的方格
+     * @return 尚未翻开的棋盘，翻开firstIndex后即得到检查过的局面；取消或没有找到时返回null
+     */
+    public Board generate(int rowCount, int columnCount, int mineTotal, int firstIndex, long seed) {
+        return generate(rowCount, columnCount, mineTotal, firstIndex, seed, new AtomicBoolean());
+    }
+
+    /**
+     * 同{@link #generate(int, int, int, int, long)}，由调用者持有取消标志，例如{@link com.yulin.minesweep.engine.BoardPrefetcher}
+     * @param cancelled 变为true时和调用{@link #cancel()}效果相同
+     */
+    public Board generate(final int rowCount, final int columnCount, final int mineTotal,
+                          final int firstIndex, final long seed, AtomicBoolean cancelled) {
+        mCancelled = cancelled;
+        mCheckedCount.set(0);
+        final AtomicLong next = new AtomicLong();
+        final AtomicLong accepted = new AtomicLong(Long.MAX_VALUE);
+
+        List<Callable<Void>> tasks = new ArrayList<>(mParallelism);
+        for (int i = 0; i < mParallelism; i++) {
+            tasks.add(new Callable<Void>() {
+                @Override
+                public Void call() {
+                    Solver solver = new Solver();
+                    while (!isCancelled()) {
+                        long k = next.getAndIncrement();
+                        if (k >= accepted.get() || k >= mMaxCandidates) {
+                            break;
+                        }
+                        mCheckedCount.incrementAndGet();
+                        Board board = new Board(rowCount, columnCount, mineTotal, candidateSeed(seed, k));
+                        if (isNoGuess(board, solver, firstIndex)) {
+                            // 只保留序号最小的可接受候选
+                            long current = accepted.get();
+                            while (k < current && !accepted.compareAndSet(current, k)) {
+                                current = accepted.get();
+                            }
+                            break;
+                        }
+                    }
+                    return null;
+                }
+            });
+        }
+
+        try {
+            if (mExecutor == null) {
+                tasks.get(0).call();
+            } else {
+                mExecutor.invokeAll(tasks);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (RejectedExecutionException e) {
+            // 线程池已经关闭，例如页面已销毁，当作取消
+            return null;
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+
+        long k = accepted.get();
+        if (isCancelled() || k == Long.MAX_VALUE) {
+            return null;
+        }
+        return new Board(rowCount, columnCount, mineTotal, candidateSeed(seed, k));
+    }
+
+    /**
+     * 由基础种子和候选序号得到候选棋盘的种子
+     */
+    public static long candidateSeed(long seed, long k) {
+        return SplitMix64.mix64(seed + k * CANDIDATE_GAMMA);
+    }
+
+    // 从第1次点击开始只翻开能确定安全的方格，能赢说明无需猜测
+    private boolean isNoGuess(Board board, Solver solver, int firstIndex) {
+        board.open(firstIndex);
+        while (board.getStatus() == Board.STATUS_PLAYING) {
+            if (isCancelled() || !solver.solveStep(board) || solver.getSafeCellCount() == 0) {
+                return false;
+            }
+            int[] safeCells = solver.getSafeCells();
+            int count = solver.getSafeCellCount();
+            for (int i = 0; i < count; i++) {
+                board.open(safeCells[i]);
+            }
+        }
+        return board.getStatus() == Board.STATUS_WON;
+    }
+
+    /**
+     * 取消正在进行的generate()，各线程检查完当前这一步后退出
+     */
+    public void cancel() {
+        mCancelled.set(true);
+    }
+
+    public boolean isCancelled() {
+        return mCancelled.get() || Thread.currentThread().isInterrupted();
+    }
+
+    /**
+     * @return 上次generate()检查过的候选数
+     */
+    public long getCheckedCount() {
+        return mCheckedCount.get();
+    }
+
+}
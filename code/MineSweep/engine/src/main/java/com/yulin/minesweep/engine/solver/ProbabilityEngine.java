@@ -0,0 +1,498 @@
+package com.yulin.minesweep.engine.solver;
+
+import com.yulin.minesweep.engine.Board;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * 精确计算每个未打开方格是雷的概率，考虑剩余雷总数
+ *
+ * 先用{@link Solver}的规则1、2找出能直接确定的方格，缩小边界；再把剩余边界按共同方格划分为独立分量，
+ * 穷举每个分量的所有方案，按方案用到的雷数分别计数。各分量的雷数分布做卷积，
+ * 再乘以边界外方格放下剩余雷的组合数C(边界外方格数, 剩余雷数)，得到所有局面的权重。
+ * 组合数取对数保存在缓存表中，避免溢出，也不需要每次重算。
+ *
+ * 分量的穷举结果按分量内容（方格和约束）缓存，下一步操作只影响到的分量需要重新穷举，
+ * 其它分量直接用上次的结果。超过节点预算的分量不穷举，它的方格当作边界外方格处理，此时结果不精确，见{@link #isExact()}。
+ *
+ * 玩家插的旗不作为依据。内部数组可复用，不是线程安全的
+ */
+public class ProbabilityEngine {
+
+    private static final int MAX_LINKS = 8;
+
+    private final Solver mSolver = new Solver();
+    private long mNodeBudget = Solver.DEFAULT_NODE_BUDGET;
+
+    private int mCapacity = -1;
+
+    // 每个方格是雷的概率，由compute()返回
+    private double[] mProbabilities;
+
+    // 规则1、2的结果
+    private byte[] mKnown;
+    private static final byte UNKNOWN = 0;
+    private static final byte SAFE = 1;
+    private static final byte MINE = 2;
+
+    // 约束：已打开数字周围仍未知的方格及其中的雷数
+    private int[] mConsCells;
+    private int[] mConsSize;
+    private int[] mConsValue;
+    private int mConsCount;
+    // 周围8格的序号
+    private final int[] mAround = new int[8];
+
+    // 按方格合并约束的并查集，以及每个分量的约束链表
+    private int[] mUnion;
+    private int[] mCellCons;
+    private int[] mComponentOf;
+    private int[] mConsHead;
+    private int[] mConsTail;
+    private int[] mConsNext;
+    private int[] mLocal;
+    private int[] mLocalBuffer = new int[MAX_LINKS];
+    private int[] mKeyBuffer = new int[64];
+
+    private final Component mComponent = new Component();
+
+    // 本次用到的分量结果
+    private Result[] mResults = new Result[16];
+    private int mResultCount;
+
+    // 分量内容 -> 穷举结果。每次compute()后只保留本次用到的，旧的分量不会一直堆积
+    private HashMap<Key, Result> mCache = new HashMap<>();
+    private HashMap<Key, Result> mNextCache = new HashMap<>();
+
+    // ln(n!)，按需增长
+    private double[] mLogFactorials = new double[]{0};
+
+    // 边界外方格是雷的概率
+    private double mOtherProbability;
+
+    private boolean mExact;
+    private int mEnumeratedCount;
+    private int mCachedCount;
+
+    public void setNodeBudget(long nodeBudget) {
+        mNodeBudget = nodeBudget;
+        mSolver.setNodeBudget(nodeBudget);
+    }
+
+    private void ensureCapacity(int cellCount) {
+        if (mCapacity >= cellCount) {
+            return;
+        }
+        mCapacity = cellCount;
+        mProbabilities = new double[cellCount];
+        mKnown = new byte[cellCount];
+        mConsCells = new int[cellCount * MAX_LINKS];
+        mConsSize = new int[cellCount];
+        mConsValue = new int[cellCount];
+        mUnion = new int[cellCount];
+        mCellCons = new int[cellCount];
+        mComponentOf = new int[cellCount];
+        mConsHead = new int[cellCount];
+        mConsTail = new int[cellCount];
+        mConsNext = new int[cellCount];
+        mLocal = new int[cellCount];
+        Arrays.fill(mLocal, -1);
+    }
+
+    /**
+     * 计算所有方格是雷的概率
+     * @return 按方格序号排列的概率，已打开的方格为0。数组由ProbabilityEngine复用，下次compute()前有效
+     */
+    public double[] compute(Board board) {
+        int cellCount = board.getCellCount();
+        ensureCapacity(cellCount);
+        mExact = true;
+        mEnumeratedCount = 0;
+        mCachedCount = 0;
+        Arrays.fill(mProbabilities, 0, cellCount, 0);
+        if (board.getStatus() != Board.STATUS_PLAYING) {
+            for (int i = 0; i < cellCount; i++) {
+                mProbabilities[i] = board.getState(i) != Board.STATE_OPENED && board.isMine(i) ? 1 : 0;
+            }
+            return mProbabilities;
+        }
+
+        int unknownCount = 0;
+        int remainingMines = board.getMineTotal();
+        if (board.getOpenedCount() > 0) {
+            mSolver.solve(board, Solver.MODE_RULES);
+        }
+        Arrays.fill(mKnown, 0, cellCount, UNKNOWN);
+        if (board.getOpenedCount() > 0) {
+            for (int i = 0; i < mSolver.getSafeCellCount(); i++) {
+                mKnown[mSolver.getSafeCells()[i]] = SAFE;
+            }
+            for (int i = 0; i < mSolver.getMineCellCount(); i++) {
+                mKnown[mSolver.getMineCells()[i]] = MINE;
+                mProbabilities[mSolver.getMineCells()[i]] = 1;
+                remainingMines--;
+            }
+        }
+        for (int i = 0; i < cellCount; i++) {
+            if (board.getState(i) != Board.STATE_OPENED && mKnown[i] == UNKNOWN) {
+                unknownCount++;
+            }
+        }
+
+        buildConstraints(board);
+        int frontierCount = buildResults();
+
+        // 超过预算的分量不参与卷积，它的方格算作边界外方格
+        int otherCount = unknownCount - frontierCount;
+        combine(otherCount, remainingMines);
+
+        double otherProbability = mOtherProbability;
+        for (int i = 0; i < cellCount; i++) {
+            if (board.getState(i) != Board.STATE_OPENED && mKnown[i] == UNKNOWN && mLocal[i] == -1) {
+                mProbabilities[i] = otherProbability;
+            }
+        }
+        for (int r = 0; r < mResultCount; r++) {
+            Result result = mResults[r];
+            for (int i = 0; i < result.cellCount; i++) {
+                mProbabilities[result.cells[i]] = result.probabilities[i];
+                mLocal[result.cells[i]] = -1;
+            }
+        }
+
+        HashMap<Key, Result> swap = mCache;
+        mCache = mNextCache;
+        mNextCache = swap;
+        mNextCache.clear();
+        return mProbabilities;
+    }
+
+    private void buildConstraints(Board board) {
+        mConsCount = 0;
+        int cellCount = board.getCellCount();
+        for (int i = 0; i < cellCount; i++) {
+            if (board.getState(i) != Board.STATE_OPENED || board.getMineCount(i) == 0) {
+                continue;
+            }
+            int c = mConsCount;
+            int size = 0;
+            int value = board.getMineCount(i);
+            int aroundCount = board.getNeighbors(i, mAround);
+            for (int k = 0; k < aroundCount; k++) {
+                int n = mAround[k];
+                if (board.getState(n) == Board.STATE_OPENED) {
+                    continue;
+                }
+                if (mKnown[n] == MINE) {
+                    value--;
+                } else if (mKnown[n] == UNKNOWN) {
+                    mConsCells[c * MAX_LINKS + size++] = n;
+                }
+            }
+            if (size > 0) {
+                mConsSize[c] = size;
+                mConsValue[c] = value;
+                mConsCount++;
+            }
+        }
+    }
+
+    /**
+     * 划分分量，取缓存或穷举每个分量，结果放入mResults，分量内方格的mLocal置为非-1
+     * @return 参与卷积的边界方格数
+     */
+    private int buildResults() {
+        mResultCount = 0;
+        if (mConsCount == 0) {
+            return 0;
+        }
+
+        // 约束的并查集：有共同方格的约束合并，mCellCons记录方格第1次出现时所在的约束
+        for (int c = 0; c < mConsCount; c++) {
+            mUnion[c] = c;
+            for (int k = 0; k < mConsSize[c]; k++) {
+                int cell = mConsCells[c * MAX_LINKS + k];
+                if (mLocal[cell] == -1) {
+                    mLocal[cell] = -2;
+                    mCellCons[cell] = c;
+                } else {
+                    union(mCellCons[cell], c);
+                }
+            }
+        }
+
+        // 把每个分量的约束按原顺序串成链表
+        int componentCount = 0;
+        for (int c = 0; c < mConsCount; c++) {
+            int root = find(c);
+            if (root == c) {
+                mComponentOf[c] = componentCount;
+                mConsHead[componentCount] = c;
+                mConsTail[componentCount] = c;
+                componentCount++;
+            } else {
+                int component = mComponentOf[root];
+                mComponentOf[c] = component;
+                mConsNext[mConsTail[component]] = c;
+                mConsTail[component] = c;
+            }
+            mConsNext[c] = -1;
+        }
+
+        int frontierCount = 0;
+        for (int i = 0; i < componentCount; i++) {
+            Result result = obtainResult(mConsHead[i]);
+            if (result.exact) {
+                if (mResultCount == mResults.length) {
+                    mResults = Arrays.copyOf(mResults, mResultCount * 2);
+                }
+                mResults[mResultCount++] = result;
+                frontierCount += result.cellCount;
+            } else {
+                mExact = false;
+                for (int k = 0; k < result.cellCount; k++) {
+                    mLocal[result.cells[k]] = -1;
+                }
+            }
+        }
+        return frontierCount;
+    }
+
+    // 按分量内容查缓存，没有时穷举
+    private Result obtainResult(int head) {
+        Component component = mComponent;
+        component.reset();
+        int keySize = 0;
+        for (int c = head; c != -1; c = mConsNext[c]) {
+            int size = mConsSize[c];
+            for (int k = 0; k < size; k++) {
+                int cell = mConsCells[c * MAX_LINKS + k];
+                if (mLocal[cell] < 0) {
+                    mLocal[cell] = component.addCell(cell);
+                }
+                mLocalBuffer[k] = mLocal[cell];
+            }
+            component.addConstraint(mLocalBuffer, 0, size, mConsValue[c]);
+
+            if (keySize + size + 2 > mKeyBuffer.length) {
+                mKeyBuffer = Arrays.copyOf(mKeyBuffer, (keySize + size + 2) * 2);
+            }
+            mKeyBuffer[keySize++] = mConsValue[c];
+            mKeyBuffer[keySize++] = size;
+            for (int k = 0; k < size; k++) {
+                mKeyBuffer[keySize++] = mConsCells[c * MAX_LINKS + k];
+            }
+        }
+
+        Key key = new Key(Arrays.copyOf(mKeyBuffer, keySize));
+        Result result = mCache.get(key);
+        if (result != null) {
+            mCachedCount++;
+        } else {
+            result = new Result(component, mNodeBudget);
+            mEnumeratedCount++;
+        }
+        mNextCache.put(key, result);
+        return result;
+    }
+
+    /**
+     * 卷积各分量的雷数分布，计算每个边界方格和边界外方格是雷的概率
+     * @param otherCount 边界外未知方格数
+     * @param mines 剩余的雷数
+     */
+    private void combine(int otherCount, int mines) {
+        int n = mResultCount;
+        // prefix[j]：前j个分量的卷积，suffix[j]：第j个及之后分量的卷积
+        double[][] prefix = new double[n + 1][];
+        double[][] suffix = new double[n + 1][];
+        prefix[0] = new double[]{1};
+        for (int j = 0; j < n; j++) {
+            prefix[j + 1] = convolve(prefix[j], mResults[j].weights);
+        }
+        suffix[n] = new double[]{1};
+        for (int j = n - 1; j >= 0; j--) {
+            suffix[j] = convolve(mResults[j].weights, suffix[j + 1]);
+        }
+
+        // 边界上共k个雷时，边界外的组合数，按最大值缩放
+        double[] all = prefix[n];
+        double[] binomials = new double[all.length];
+        double maxLog = Double.NEGATIVE_INFINITY;
+        for (int k = 0; k < all.length; k++) {
+            double log = logBinomial(otherCount, mines - k);
+            binomials[k] = log;
+            maxLog = Math.max(maxLog, log);
+        }
+        double total = 0;
+        double otherMines = 0;
+        for (int k = 0; k < all.length; k++) {
+            binomials[k] = binomials[k] == Double.NEGATIVE_INFINITY ? 0 : Math.exp(binomials[k] - maxLog);
+            double weight = all[k] * binomials[k];
+            total += weight;
+            otherMines += weight * (mines - k);
+        }
+        if (total == 0) {
+            // 局面与雷数矛盾，不会出现在正常游戏中
+            mOtherProbability = otherCount == 0 ? 0 : Math.max(0, Math.min(1, (double) mines / otherCount));
+            for (int j = 0; j < n; j++) {
+                Arrays.fill(mResults[j].probabilities, 0, mResults[j].cellCount, Double.NaN);
+            }
+            mExact = false;
+            return;
+        }
+        mOtherProbability = otherCount == 0 ? 0 : otherMines / total / otherCount;
+
+        for (int j = 0; j < n; j++) {
+            Result result = mResults[j];
+            double[] others = convolve(prefix[j], suffix[j + 1]);
+            // 本分量有kj个雷时所有局面的权重
+            double[] componentWeights = new double[result.weights.length];
+            for (int kj = 0; kj < componentWeights.length; kj++) {
+                double sum = 0;
+                for (int t = 0; t < others.length && kj + t < binomials.length; t++) {
+                    sum += others[t] * binomials[kj + t];
+                }
+                componentWeights[kj] = sum;
+            }
+            for (int i = 0; i < result.cellCount; i++) {
+                double sum = 0;
+                for (int kj = 0; kj < componentWeights.length; kj++) {
+                    sum += result.cellWeights[kj * result.cellCount + i] * componentWeights[kj];
+                }
+                result.probabilities[i] = sum / total;
+            }
+        }
+    }
+
+    private static double[] convolve(double[] a, double[] b) {
+        double[] result = new double[a.length + b.length - 1];
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] == 0) {
+                continue;
+            }
+            for (int j = 0; j < b.length; j++) {
+                result[i + j] += a[i] * b[j];
+            }
+        }
+        return result;
+    }
+
+    /**
+     * ln C(n, k)，k不在[0, n]时为负无穷
+     */
+    private double logBinomial(int n, int k) {
+        if (k < 0 || k > n) {
+            return Double.NEGATIVE_INFINITY;
+        }
+        if (n >= mLogFactorials.length) {
+            int size = Math.max(n + 1, mLogFactorials.length * 2);
+            double[] table = Arrays.copyOf(mLogFactorials, size);
+            for (int i = mLogFactorials.length; i < size; i++) {
+                table[i] = table[i - 1] + Math.log(i);
+            }
+            mLogFactorials = table;
+        }
+        return mLogFactorials[n] - mLogFactorials[k] - mLogFactorials[n - k];
+    }
+
+    private int find(int c) {
+        while (mUnion[c] != c) {
+            mUnion[c] = mUnion[mUnion[c]];
+            c = mUnion[c];
+        }
+        return c;
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra != rb) {
+            mUnion[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    /**
+     * @return 上次compute()是否精确，有分量超过节点预算时为false
+     */
+    public boolean isExact() {
+        return mExact;
+    }
+
+    /**
+     * @return 上次compute()中重新穷举的分量数
+     */
+    public int getEnumeratedCount() {
+        return mEnumeratedCount;
+    }
+
+    /**
+     * @return 上次compute()中直接使用缓存结果的分量数
+     */
+    public int getCachedCount() {
+        return mCachedCount;
+    }
+
+    // 分量内容：依次为每个约束的雷数、方格数和方格全局序号
+    private static final class Key {
+
+        private final int[] mData;
+        private final int mHash;
+
+        Key(int[] data) {
+            mData = data;
+            mHash = Arrays.hashCode(data);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof Key && mHash == ((Key) o).mHash && Arrays.equals(mData, ((Key) o).mData);
+        }
+    }
+
+    /**
+     * 1个分量的穷举结果，按方案总数归一化，只保存比例
+     */
+    private static final class Result {
+
+        final int[] cells;
+        final int cellCount;
+        final boolean exact;
+
+        // weights[k]：恰好k个雷的方案所占比例
+        final double[] weights;
+        // cellWeights[k * cellCount + i]：恰好k个雷且第i个方格是雷的方案所占比例
+        final double[] cellWeights;
+        // 最近一次卷积得到的每个方格是雷的概率
+        final double[] probabilities;
+
+        Result(Component component, long budget) {
+            cellCount = component.cellCount;
+            cells = Arrays.copyOf(component.cells, cellCount);
+            probabilities = new double[cellCount];
+            boolean complete = cellCount <= Solver.MAX_COMPONENT_CELLS && component.enumerate(budget);
+            double total = complete ? component.totalSolutions() : 0;
+            exact = total > 0;
+            if (!exact) {
+                weights = null;
+                cellWeights = null;
+                return;
+            }
+            weights = new double[cellCount + 1];
+            cellWeights = new double[(cellCount + 1) * cellCount];
+            for (int k = 0; k <= cellCount; k++) {
+                weights[k] = component.solutions[k] / total;
+            }
+            for (int i = 0; i < cellWeights.length; i++) {
+                cellWeights[i] = component.cellSolutions[i] / total;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,486 @@
+package com.yulin.minesweep.engine.solver;
+
+import com.yulin.minesweep.engine.Board;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * 确定性求解器：只根据玩家能看到的信息（已打开方格的数字），找出一定安全和一定是雷的方格
+ *
+ * 依次使用3种规则：
+ * 1. 单个数字：周围剩余雷数为0则其余方格安全，等于未知方格数则全是雷
+ * 2. 两个数字的包含、重叠关系：例如A的方格包含于B，B比A多出的方格中的雷数为两者之差
+ * 3. 把边界按共同方格划分为独立分量，穷举每个分量的所有布雷方案，所有方案中都安全或都是雷的方格
+ *
+ * 玩家插的旗可能是错的，不作为依据。独立分量可以交给线程池并行穷举，JVM上可传入ForkJoinPool；
+ * Android低版本没有ForkJoinPool，可以传入普通线程池或null（在当前线程中依次穷举）。
+ * 内部数组可复用，同一个实例不能同时在多个线程中调用solve()
+ */
+public class Solver {
+
+    // 穷举时每个分量最多搜索的节点数，超过后放弃该分量，保证1帧内返回
+    public static final long DEFAULT_NODE_BUDGET = 1 << 18;
+
+    // 超过这个大小的分量不穷举
+    public static final int MAX_COMPONENT_CELLS = 128;
+
+    private static final int MAX_LINKS = 8;
+
+    // solve的3种方式：使用所有规则；只用规则1、2；找到安全方格就返回
+    static final int MODE_FULL = 0;
+    static final int MODE_RULES = 1;
+    static final int MODE_STEP = 2;
+
+    private static final byte UNKNOWN = 0;
+    private static final byte SAFE = 1;
+    private static final byte MINE = 2;
+
+    private final ExecutorService mExecutor;
+    private long mNodeBudget = DEFAULT_NODE_BUDGET;
+
+    private int mCapacity = -1;
+
+    // 未打开方格推导出的结果
+    private byte[] mKnown;
+
+    private int[] mSafeCells;
+    private int mSafeCount;
+    private int[] mMineCells;
+    private int mMineCount;
+
+    // 约束：已打开数字周围仍未知的方格及其中的雷数，每个约束最多8个方格，从小到大排列
+    private int[] mConsCells;
+    private int[] mConsSize;
+    private int[] mConsValue;
+    private int mConsCount;
+
+    // 每个未知方格所属的约束
+    private int[] mCellCons;
+    private int[] mCellConsCount;
+    private int[] mTouchedCells;
+    private int mTouchedCount;
+
+    // 划分分量用的并查集、约束所属的分量，以及方格全局序号 -> 分量内序号
+    private int[] mUnion;
+    private int[] mComponentOf;
+    private int[] mLocal;
+    private int[] mLocalBuffer = new int[MAX_LINKS];
+
+    private final List<Component> mComponents = new ArrayList<>();
+    private int mComponentCount;
+
+    public Solver() {
+        this(null);
+    }
+
+    /**
+     * @param executor 并行穷举独立分量的线程池，null表示在当前线程中依次穷举
+     */
+    public Solver(ExecutorService executor) {
+        mExecutor = executor;
+    }
+
+    public void setNodeBudget(long nodeBudget) {
+        mNodeBudget = nodeBudget;
+    }
+
+    private void ensureCapacity(int cellCount) {
+        if (mCapacity >= cellCount) {
+            return;
+        }
+        mCapacity = cellCount;
+        mKnown = new byte[cellCount];
+        mSafeCells = new int[cellCount];
+        mMineCells = new int[cellCount];
+        mConsCells = new int[cellCount * MAX_LINKS];
+        mConsSize = new int[cellCount];
+        mConsValue = new int[cellCount];
+        mCellCons = new int[cellCount * MAX_LINKS];
+        mCellConsCount = new int[cellCount];
+        mTouchedCells = new int[cellCount];
+        mUnion = new int[cellCount];
+        mComponentOf = new int[cellCount];
+        mLocal = new int[cellCount];
+        Arrays.fill(mLocal, -1);
+    }
+
+    /**
+     * 求解当前局面
+     * @return 是否找到了一定安全或一定是雷的未打开方格
+     */
+    public boolean solve(Board board) {
+        return solve(board, MODE_FULL);
+    }
+
+    /**
+     * 求出一部分结果就返回：规则1、2找到安全方格时不再继续推导，也不穷举；找不到时才穷举。
+     * 找到的安全方格比solve()少，但逐步翻开到底的场景（模拟对局、生成无需猜测的棋盘）整体快得多
+     * @return 是否找到了一定安全或一定是雷的未打开方格
+     */
+    public boolean solveStep(Board board) {
+        return solve(board, MODE_STEP);
+    }
+
+    /**
+     * @param mode MODE_RULES只用规则1、2，很快，可以先缩小边界再交给{@link ProbabilityEngine}
+     */
+    boolean solve(Board board, int mode) {
+        int cellCount = board.getCellCount();
+        ensureCapacity(cellCount);
+        Arrays.fill(mKnown, 0, cellCount, UNKNOWN);
+        mSafeCount = 0;
+        mMineCount = 0;
+        if (board.getStatus() != Board.STATUS_PLAYING) {
+            return false;
+        }
+
+        // 规则1、2反复使用，直到没有新的结果
+        boolean progress = true;
+        while (progress && !(mode == MODE_STEP && mSafeCount > 0)) {
+            buildConstraints(board);
+            progress = applySingleRules();
+            if (!progress) {
+                progress = applyPairRules();
+            }
+        }
+
+        if (mode == MODE_FULL || (mode == MODE_STEP && mSafeCount == 0)) {
+            buildConstraints(board);
+            enumerateComponents();
+        }
+
+        return mSafeCount > 0 || mMineCount > 0;
+    }
+
+    private void buildConstraints(Board board) {
+        for (int i = 0; i < mTouchedCount; i++) {
+            mCellConsCount[mTouchedCells[i]] = 0;
+        }
+        mTouchedCount = 0;
+        mConsCount = 0;
+
+        // 按行列遍历，邻格范围每行只算1次，不用对每个方格做除法和越界判断
+        int rowCount = board.getRowCount();
+        int columnCount = board.getColumnCount();
+        for (int r = 0; r < rowCount; r++) {
+            int top = Math.max(r - 1, 0);
+            int bottom = Math.min(r + 1, rowCount - 1);
+            for (int col = 0; col < columnCount; col++) {
+                int i = r * columnCount + col;
+                if (board.getState(i) != Board.STATE_OPENED || board.getMineCount(i) == 0) {
+                    continue;
+                }
+                int left = Math.max(col - 1, 0);
+                int right = Math.min(col + 1, columnCount - 1);
+                int c = mConsCount;
+                int size = 0;
+                int value = board.getMineCount(i);
+                for (int nr = top; nr <= bottom; nr++) {
+                    for (int n = nr * columnCount + left, end = nr * columnCount + right; n <= end; n++) {
+                        if (board.getState(n) == Board.STATE_OPENED) {
+                            continue;
+                        }
+                        if (mKnown[n] == MINE) {
+                            value--;
+                        } else if (mKnown[n] == UNKNOWN) {
+                            mConsCells[c * MAX_LINKS + size++] = n;
+                        }
+                    }
+                }
+                if (size > 0) {
+                    addConstraint(c, size, value);
+                }
+            }
+        }
+    }
+
+    private void addConstraint(int c, int size, int value) {
+        mConsSize[c] = size;
+        mConsValue[c] = value;
+        mConsCount++;
+        for (int k = 0; k < size; k++) {
+            int n = mConsCells[c * MAX_LINKS + k];
+            if (mCellConsCount[n] == 0) {
+                mTouchedCells[mTouchedCount++] = n;
+            }
+            mCellCons[n * MAX_LINKS + mCellConsCount[n]++] = c;
+        }
+    }
+
+    private boolean applySingleRules() {
+        boolean changed = false;
+        for (int c = 0; c < mConsCount; c++) {
+            int size = mConsSize[c];
+            int value = mConsValue[c];
+            if (value != 0 && value != size) {
+                continue;
+            }
+            byte result = value == 0 ? SAFE : MINE;
+            for (int k = 0; k < size; k++) {
+                changed |= mark(mConsCells[c * MAX_LINKS + k], result);
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * 两个有共同方格的约束A、B：
+     * A包含于B时，B - A中的雷数为两者之差，为0则全部安全，等于方格数则全是雷；
+     * 否则若B比A多的雷数等于B - A的方格数，则B - A全是雷，A - B全部安全
+     */
+    private boolean applyPairRules() {
+        boolean changed = false;
+        for (int a = 0; a < mConsCount; a++) {
+            int aBase = a * MAX_LINKS;
+            for (int k = 0; k < mConsSize[a]; k++) {
+                int cell = mConsCells[aBase + k];
+                for (int j = 0; j < mCellConsCount[cell]; j++) {
+                    int b = mCellCons[cell * MAX_LINKS + j];
+                    if (b != a) {
+                        changed |= applyPairRule(a, b);
+                    }
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean applyPairRule(int a, int b) {
+        int aBase = a * MAX_LINKS;
+        int bBase = b * MAX_LINKS;
+        int aSize = mConsSize[a];
+        int bSize = mConsSize[b];
+        int shared = 0;
+        for (int i = 0, j = 0; i < aSize && j < bSize; ) {
+            int x = mConsCells[aBase + i];
+            int y = mConsCells[bBase + j];
+            if (x == y) {
+                shared++;
+                i++;
+                j++;
+            } else if (x < y) {
+                i++;
+            } else {
+                j++;
+            }
+        }
+        int onlyA = aSize - shared;
+        int onlyB = bSize - shared;
+        if (onlyB == 0) {
+            return false;
+        }
+        int diff = mConsValue[b] - mConsValue[a];
+
+        byte onlyBResult;
+        byte onlyAResult = UNKNOWN;
+        if (onlyA == 0 && diff == 0) {
+            onlyBResult = SAFE;
+        } else if (diff == onlyB) {
+            onlyBResult = MINE;
+            onlyAResult = SAFE;
+        } else {
+            return false;
+        }
+
+        boolean changed = false;
+        for (int k = 0; k < bSize; k++) {
+            int cell = mConsCells[bBase + k];
+            if (!contains(aBase, aSize, cell)) {
+                changed |= mark(cell, onlyBResult);
+            }
+        }
+        if (onlyAResult != UNKNOWN) {
+            for (int k = 0; k < aSize; k++) {
+                int cell = mConsCells[aBase + k];
+                if (!contains(bBase, bSize, cell)) {
+                    changed |= mark(cell, onlyAResult);
+                }
+            }
+        }
+        return changed;
+    }
+
+    private boolean contains(int base, int size, int cell) {
+        for (int k = 0; k < size; k++) {
+            if (mConsCells[base + k] == cell) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean mark(int cell, byte result) {
+        if (mKnown[cell] != UNKNOWN) {
+            return false;
+        }
+        mKnown[cell] = result;
+        if (result == SAFE) {
+            mSafeCells[mSafeCount++] = cell;
+        } else {
+            mMineCells[mMineCount++] = cell;
+        }
+        return true;
+    }
+
+    /**
+     * 按共同方格把约束划分为独立分量，分别穷举
+     */
+    private void enumerateComponents() {
+        buildComponents();
+        if (mComponentCount == 0) {
+            return;
+        }
+
+        if (mExecutor == null || mComponentCount == 1) {
+            for (int i = 0; i < mComponentCount; i++) {
+                Component component = mComponents.get(i);
+                if (component.cellCount <= MAX_COMPONENT_CELLS && component.enumerate(mNodeBudget)) {
+                    collect(component);
+                }
+            }
+            return;
+        }
+
+        List<Callable<Boolean>> tasks = new ArrayList<>(mComponentCount);
+        for (int i = 0; i < mComponentCount; i++) {
+            final Component component = mComponents.get(i);
+            if (component.cellCount > MAX_COMPONENT_CELLS) {
+                continue;
+            }
+            tasks.add(new Callable<Boolean>() {
+                @Override
+                public Boolean call() {
+                    return component.enumerate(mNodeBudget);
+                }
+            });
+        }
+        try {
+            List<Future<Boolean>> futures = mExecutor.invokeAll(tasks);
+            int t = 0;
+            for (int i = 0; i < mComponentCount; i++) {
+                Component component = mComponents.get(i);
+                if (component.cellCount > MAX_COMPONENT_CELLS) {
+                    continue;
+                }
+                if (futures.get(t++).get()) {
+                    collect(component);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    // 所有方案中都不是雷的方格安全，都是雷的方格是雷
+    private void collect(Component component) {
+        double total = component.totalSolutions();
+        if (total == 0) {
+            return;
+        }
+        for (int i = 0; i < component.cellCount; i++) {
+            double mines = component.mineSolutions(i);
+            if (mines == 0) {
+                mark(component.cells[i], SAFE);
+            } else if (mines == total) {
+                mark(component.cells[i], MINE);
+            }
+        }
+    }
+
+    private void buildComponents() {
+        mComponentCount = 0;
+        if (mConsCount == 0) {
+            return;
+        }
+        for (int c = 0; c < mConsCount; c++) {
+            mUnion[c] = c;
+        }
+        for (int i = 0; i < mTouchedCount; i++) {
+            int cell = mTouchedCells[i];
+            int first = mCellCons[cell * MAX_LINKS];
+            for (int j = 1; j < mCellConsCount[cell]; j++) {
+                union(first, mCellCons[cell * MAX_LINKS + j]);
+            }
+        }
+
+        // 每个根约束对应1个分量
+        for (int c = 0; c < mConsCount; c++) {
+            int root = find(c);
+            if (root == c) {
+                Component component;
+                if (mComponentCount < mComponents.size()) {
+                    component = mComponents.get(mComponentCount);
+                } else {
+                    component = new Component();
+                    mComponents.add(component);
+                }
+                component.reset();
+                mComponentOf[c] = mComponentCount++;
+            }
+            mComponentOf[c] = mComponentOf[root];
+        }
+        for (int c = 0; c < mConsCount; c++) {
+            Component component = mComponents.get(mComponentOf[c]);
+            int base = c * MAX_LINKS;
+            int size = mConsSize[c];
+            for (int k = 0; k < size; k++) {
+                int cell = mConsCells[base + k];
+                if (mLocal[cell] < 0) {
+                    mLocal[cell] = component.addCell(cell);
+                }
+                mLocalBuffer[k] = mLocal[cell];
+            }
+            component.addConstraint(mLocalBuffer, 0, size, mConsValue[c]);
+        }
+        for (int i = 0; i < mTouchedCount; i++) {
+            mLocal[mTouchedCells[i]] = -1;
+        }
+    }
+
+    private int find(int c) {
+        while (mUnion[c] != c) {
+            mUnion[c] = mUnion[mUnion[c]];
+            c = mUnion[c];
+        }
+        return c;
+    }
+
+    private void union(int a, int b) {
+        int ra = find(a);
+        int rb = find(b);
+        if (ra != rb) {
+            mUnion[Math.max(ra, rb)] = Math.min(ra, rb);
+        }
+    }
+
+    /**
+     * @return 上次solve()找到的一定安全的方格，数组由Solver复用
+     */
+    public int[] getSafeCells() {
+        return mSafeCells;
+    }
+
+    public int getSafeCellCount() {
+        return mSafeCount;
+    }
+
+    /**
+     * @return 上次solve()找到的一定是雷的方格，数组由Solver复用
+     */
+    public int[] getMineCells() {
+        return mMineCells;
+    }
+
+    public int getMineCellCount() {
+        return mMineCount;
+    }
+
+}
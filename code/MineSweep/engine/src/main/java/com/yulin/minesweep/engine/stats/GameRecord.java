@@ -0,0 +1,99 @@
+package com.yulin.minesweep.engine.stats;
+
+import com.yulin.minesweep.engine.Board;
+
+/**
+ * 1局已结束游戏的结果
+ */
+public class GameRecord {
+
+    // 难度
+    public static final int LEVEL_BEGINNER = 0;
+    public static final int LEVEL_INTERMEDIATE = 1;
+    public static final int LEVEL_EXPERT = 2;
+    public static final int LEVEL_CUSTOM = 3;
+    // 无需猜测的初级棋盘，和普通初级分开排名
+    public static final int LEVEL_BEGINNER_NO_GUESS = 4;
+
+    static final int LEVEL_COUNT = 5;
+
+    private final long mSeed;
+    private final int mLevel;
+    private final int mRowCount;
+    private final int mColumnCount;
+    private final int mMineTotal;
+    private final int mTimeMillis;
+    private final int mClicks;
+    private final int mThreeBV;
+    private final boolean mWon;
+    private final long mFinishedAt;
+
+    /**
+     * 从已结束的棋盘生成记录，3BV在这里计算
+     * @param timeMillis 用时
+     * @param clicks 生效的操作数，包括翻开、插旗和双击
+     * @param finishedAt 结束时间，System.currentTimeMillis()
+     */
+    public GameRecord(Board board, int level, int timeMillis, int clicks, long finishedAt) {
+        this(board.getSeed(), level, board.getRowCount(), board.getColumnCount(), board.getMineTotal(),
+                timeMillis, clicks, ThreeBV.compute(board), board.getStatus() == Board.STATUS_WON, finishedAt);
+    }
+
+    GameRecord(long seed, int level, int rowCount, int columnCount, int mineTotal, int timeMillis, int clicks,
+               int threeBV, boolean won, long finishedAt) {
+        if (level < 0 || level >= LEVEL_COUNT) {
+            throw new IllegalArgumentException("level " + level);
+        }
+        mSeed = seed;
+        mLevel = level;
+        mRowCount = rowCount;
+        mColumnCount = columnCount;
+        mMineTotal = mineTotal;
+        mTimeMillis = timeMillis;
+        mClicks = clicks;
+        mThreeBV = threeBV;
+        mWon = won;
+        mFinishedAt = finishedAt;
+    }
+
+    public long getSeed() {
+        return mSeed;
+    }
+
+    public int getLevel() {
+        return mLevel;
+    }
+
+    public int getRowCount() {
+        return mRowCount;
+    }
+
+    public int getColumnCount() {
+        return mColumnCount;
+    }
+
+    public int getMineTotal() {
+        return mMineTotal;
+    }
+
+    public int getTimeMillis() {
+        return mTimeMillis;
+    }
+
+    public int getClicks() {
+        return mClicks;
+    }
+
+    public int getThreeBV() {
+        return mThreeBV;
+    }
+
+    public boolean isWon() {
+        return mWon;
+    }
+
+    public long getFinishedAt() {
+        return mFinishedAt;
+    }
+
+}
@@ -0,0 +1,472 @@
+package com.yulin.minesweep.engine.stats;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * 已结束对局的本地记录和排行榜
+ *
+ * 文件只追加：文件头之后每局1条定长记录。新记录先放在内存中，攒够{@link #BATCH_SIZE}条或调用{@link #flush()}时
+ * 由后台线程一起追加写入。读文件也在后台线程，{@link #load()}立即返回。
+ * 第1次读写前先检查文件：末尾写了一半的记录截掉，文件头不对的文件改名为.bad后重新开始，保证追加的记录总是对齐的。
+ * 写入失败时记录留在内存中，下次写入时重试
+ *
+ * 所有记录按列存放在基本类型数组中，每种难度维护3个索引：按时间顺序的对局序号、胜局数的前缀和、按用时排序的胜局。
+ * 最好成绩、最近N局胜率和用时百分位都只做数组下标或二分查找，几十万条记录也在毫秒内返回。
+ * 查询方法线程安全，加载完成前只能查到本次启动后新增的记录
+ */
+public class StatsStore {
+
+    // 攒够这么多条记录才写1次文件
+    public static final int BATCH_SIZE = 16;
+
+    static final byte[] MAGIC = {'M', 'S', 'G', 'R'};
+    static final byte VERSION = 1;
+    static final int HEADER_SIZE = MAGIC.length + 1;
+
+    // seed 8, finishedAt 8, time 4, clicks 4, 3BV 4, mineTotal 4, rowCount 2, columnCount 2, level 1, won 1, 保留 2
+    static final int RECORD_SIZE = 40;
+
+    private final File mFile;
+    // 必须是单线程，保证先读完文件再追加
+    private final ExecutorService mExecutor;
+
+    // 按列存放的所有记录，序号即下标
+    private long[] mSeeds = new long[256];
+    private long[] mFinishedAts = new long[256];
+    private int[] mTimes = new int[256];
+    private int[] mClicks = new int[256];
+    private int[] mThreeBVs = new int[256];
+    private int[] mMineTotals = new int[256];
+    private short[] mRowCounts = new short[256];
+    private short[] mColumnCounts = new short[256];
+    private byte[] mLevels = new byte[256];
+    private boolean[] mWins = new boolean[256];
+    private int mCount;
+
+    private final LevelIndex[] mIndexes = new LevelIndex[GameRecord.LEVEL_COUNT];
+
+    // 还没有写入文件的记录
+    private ByteBuffer mPending = ByteBuffer.allocate(BATCH_SIZE * RECORD_SIZE);
+
+    private volatile boolean mLoaded;
+
+    // 以下只在后台线程访问：文件是否已检查过，写入失败、还没有写进文件的记录
+    private boolean mFileChecked;
+    private byte[] mUnwritten = new byte[0];
+
+    /**
+     * 每种难度的索引
+     */
+    private static final class LevelIndex {
+
+        // 按结束顺序的记录序号
+        int[] games = new int[64];
+        // winPrefix[i]：前i局中的胜局数
+        int[] winPrefix = new int[65];
+        int gameCount;
+
+        // 胜局按(用时 << 32 | 序号)升序排列，用时相同的先结束的在前
+        long[] wins = new long[64];
+        int winCount;
+
+        void add(int id, int time, boolean won) {
+            if (gameCount == games.length) {
+                games = Arrays.copyOf(games, gameCount * 2);
+                winPrefix = Arrays.copyOf(winPrefix, gameCount * 2 + 1);
+            }
+            games[gameCount] = id;
+            winPrefix[gameCount + 1] = winPrefix[gameCount] + (won ? 1 : 0);
+            gameCount++;
+            if (won) {
+                if (winCount == wins.length) {
+                    wins = Arrays.copyOf(wins, winCount * 2);
+                }
+                long key = key(time, id);
+                int pos = Arrays.binarySearch(wins, 0, winCount, key);
+                pos = -pos - 1;
+                System.arraycopy(wins, pos, wins, pos + 1, winCount - pos);
+                wins[pos] = key;
+                winCount++;
+            }
+        }
+
+        // 加载时一次加入大量记录，最后统一排序
+        void addUnsorted(int id, int time, boolean won) {
+            if (gameCount == games.length) {
+                games = Arrays.copyOf(games, gameCount * 2);
+                winPrefix = Arrays.copyOf(winPrefix, gameCount * 2 + 1);
+            }
+            games[gameCount] = id;
+            winPrefix[gameCount + 1] = winPrefix[gameCount] + (won ? 1 : 0);
+            gameCount++;
+            if (won) {
+                if (winCount == wins.length) {
+                    wins = Arrays.copyOf(wins, winCount * 2);
+                }
+                wins[winCount++] = key(time, id);
+            }
+        }
+
+        void sort() {
+            Arrays.sort(wins, 0, winCount);
+        }
+
+        static long key(int time, int id) {
+            return ((long) time << 32) | id;
+        }
+    }
+
+    public StatsStore(File file, ExecutorService executor) {
+        mFile = file;
+        mExecutor = executor;
+        for (int i = 0; i < mIndexes.length; i++) {
+            mIndexes[i] = new LevelIndex();
+        }
+    }
+
+    /**
+     * 在后台线程读取文件并建立索引，之前已经加入的记录排在文件中的记录之后
+     */
+    public void load() {
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                StatsStore loaded = new StatsStore(mFile, mExecutor);
+                try {
+                    checkFile();
+                    loaded.readFile();
+                } catch (IOException e) {
+                    // 读不出来时只丢弃已加载的历史，之后的记录照常写入
+                    loaded = new StatsStore(mFile, mExecutor);
+                }
+                merge(loaded);
+            }
+        });
+    }
+
+    public boolean isLoaded() {
+        return mLoaded;
+    }
+
+    /**
+     * 在读写文件的后台线程中执行，这时文件已经读完，查询结果包括全部历史。适合界面打开时读取排行榜
+     */
+    public void execute(Runnable task) {
+        mExecutor.execute(task);
+    }
+
+    /**
+     * 追加之前检查文件，只在后台线程调用。比文件头还短的文件删掉，下次写入时重写文件头；
+     * 文件头不对时改名为.bad，保留原文件、从空文件重新开始；末尾不完整的记录（写入时进程被杀）截掉
+     */
+    private void checkFile() throws IOException {
+        if (mFileChecked) {
+            return;
+        }
+        if (mFile.exists()) {
+            long length = mFile.length();
+            if (length < HEADER_SIZE) {
+                delete(mFile);
+            } else if (!hasValidHeader()) {
+                File bad = new File(mFile.getPath() + ".bad");
+                if (bad.exists()) {
+                    delete(bad);
+                }
+                if (!mFile.renameTo(bad)) {
+                    delete(mFile);
+                }
+            } else {
+                long aligned = HEADER_SIZE + (length - HEADER_SIZE) / RECORD_SIZE * RECORD_SIZE;
+                if (aligned != length) {
+                    RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+                    try {
+                        raf.setLength(aligned);
+                    } finally {
+                        raf.close();
+                    }
+                }
+            }
+        }
+        mFileChecked = true;
+    }
+
+    private boolean hasValidHeader() throws IOException {
+        byte[] header = new byte[HEADER_SIZE];
+        RandomAccessFile raf = new RandomAccessFile(mFile, "r");
+        try {
+            raf.readFully(header);
+        } finally {
+            raf.close();
+        }
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (header[i] != MAGIC[i]) {
+                return false;
+            }
+        }
+        return header[MAGIC.length] == VERSION;
+    }
+
+    private static void delete(File file) throws IOException {
+        if (!file.delete() && file.exists()) {
+            throw new IOException("cannot delete " + file);
+        }
+    }
+
+    private void readFile() throws IOException {
+        if (!mFile.exists() || mFile.length() < HEADER_SIZE) {
+            return;
+        }
+        ByteBuffer buffer;
+        RandomAccessFile raf = new RandomAccessFile(mFile, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+        } finally {
+            raf.close();
+        }
+        for (byte b : MAGIC) {
+            if (buffer.get() != b) {
+                throw new IOException("not a stats file");
+            }
+        }
+        if (buffer.get() != VERSION) {
+            throw new IOException("unknown version");
+        }
+        // checkFile()之后文件长度总是对齐的，这里再防止读到不完整的记录
+        while (buffer.remaining() >= RECORD_SIZE) {
+            long seed = buffer.getLong();
+            long finishedAt = buffer.getLong();
+            int time = buffer.getInt();
+            int clicks = buffer.getInt();
+            int threeBV = buffer.getInt();
+            int mineTotal = buffer.getInt();
+            short rowCount = buffer.getShort();
+            short columnCount = buffer.getShort();
+            byte level = buffer.get();
+            boolean won = buffer.get() != 0;
+            buffer.getShort();
+            if (level < 0 || level >= GameRecord.LEVEL_COUNT) {
+                continue;
+            }
+            int id = append(seed, finishedAt, time, clicks, threeBV, mineTotal, rowCount, columnCount, level, won);
+            mIndexes[level].addUnsorted(id, time, won);
+        }
+        for (LevelIndex index : mIndexes) {
+            index.sort();
+        }
+    }
+
+    // 文件中的记录在前，加载期间新增的记录接在后面
+    private synchronized void merge(StatsStore loaded) {
+        for (int i = 0; i < mCount; i++) {
+            int id = loaded.append(mSeeds[i], mFinishedAts[i], mTimes[i], mClicks[i], mThreeBVs[i],
+                    mMineTotals[i], mRowCounts[i], mColumnCounts[i], mLevels[i], mWins[i]);
+            loaded.mIndexes[mLevels[i]].add(id, mTimes[i], mWins[i]);
+        }
+        mSeeds = loaded.mSeeds;
+        mFinishedAts = loaded.mFinishedAts;
+        mTimes = loaded.mTimes;
+        mClicks = loaded.mClicks;
+        mThreeBVs = loaded.mThreeBVs;
+        mMineTotals = loaded.mMineTotals;
+        mRowCounts = loaded.mRowCounts;
+        mColumnCounts = loaded.mColumnCounts;
+        mLevels = loaded.mLevels;
+        mWins = loaded.mWins;
+        mCount = loaded.mCount;
+        System.arraycopy(loaded.mIndexes, 0, mIndexes, 0, mIndexes.length);
+        mLoaded = true;
+    }
+
+    private int append(long seed, long finishedAt, int time, int clicks, int threeBV, int mineTotal,
+                       short rowCount, short columnCount, byte level, boolean won) {
+        if (mCount == mSeeds.length) {
+            int size = mCount * 2;
+            mSeeds = Arrays.copyOf(mSeeds, size);
+            mFinishedAts = Arrays.copyOf(mFinishedAts, size);
+            mTimes = Arrays.copyOf(mTimes, size);
+            mClicks = Arrays.copyOf(mClicks, size);
+            mThreeBVs = Arrays.copyOf(mThreeBVs, size);
+            mMineTotals = Arrays.copyOf(mMineTotals, size);
+            mRowCounts = Arrays.copyOf(mRowCounts, size);
+            mColumnCounts = Arrays.copyOf(mColumnCounts, size);
+            mLevels = Arrays.copyOf(mLevels, size);
+            mWins = Arrays.copyOf(mWins, size);
+        }
+        int id = mCount++;
+        mSeeds[id] = seed;
+        mFinishedAts[id] = finishedAt;
+        mTimes[id] = time;
+        mClicks[id] = clicks;
+        mThreeBVs[id] = threeBV;
+        mMineTotals[id] = mineTotal;
+        mRowCounts[id] = rowCount;
+        mColumnCounts[id] = columnCount;
+        mLevels[id] = level;
+        mWins[id] = won;
+        return id;
+    }
+
+    /**
+     * 加入1局结果，立即可以查询。攒够{@link #BATCH_SIZE}条后在后台线程写入文件
+     */
+    public synchronized void add(GameRecord record) {
+        int id = append(record.getSeed(), record.getFinishedAt(), record.getTimeMillis(), record.getClicks(),
+                record.getThreeBV(), record.getMineTotal(), (short) record.getRowCount(),
+                (short) record.getColumnCount(), (byte) record.getLevel(), record.isWon());
+        mIndexes[record.getLevel()].add(id, record.getTimeMillis(), record.isWon());
+
+        mPending.putLong(record.getSeed());
+        mPending.putLong(record.getFinishedAt());
+        mPending.putInt(record.getTimeMillis());
+        mPending.putInt(record.getClicks());
+        mPending.putInt(record.getThreeBV());
+        mPending.putInt(record.getMineTotal());
+        mPending.putShort((short) record.getRowCount());
+        mPending.putShort((short) record.getColumnCount());
+        mPending.put((byte) record.getLevel());
+        mPending.put((byte) (record.isWon() ? 1 : 0));
+        mPending.putShort((short) 0);
+        if (!mPending.hasRemaining()) {
+            flush();
+        }
+    }
+
+    /**
+     * 把内存中还没有写入的记录交给后台线程追加到文件末尾
+     */
+    public synchronized void flush() {
+        if (mPending.position() == 0) {
+            return;
+        }
+        final byte[] data = Arrays.copyOf(mPending.array(), mPending.position());
+        mPending.clear();
+        mExecutor.execute(new Runnable() {
+            @Override
+            public void run() {
+                write(data);
+            }
+        });
+    }
+
+    /**
+     * 从记录边界追加，文件为空时先写文件头。失败时（例如存储空间不足）截掉这次写了一半的部分，
+     * 记录留在内存中，和下一批一起重试
+     */
+    private void write(byte[] data) {
+        if (mUnwritten.length > 0) {
+            byte[] all = Arrays.copyOf(mUnwritten, mUnwritten.length + data.length);
+            System.arraycopy(data, 0, all, mUnwritten.length, data.length);
+            data = all;
+        }
+        RandomAccessFile raf = null;
+        long start = -1;
+        try {
+            checkFile();
+            raf = new RandomAccessFile(mFile, "rw");
+            start = raf.length();
+            raf.seek(start);
+            if (start == 0) {
+                raf.write(MAGIC);
+                raf.write(VERSION);
+            }
+            raf.write(data);
+            mUnwritten = new byte[0];
+        } catch (IOException e) {
+            mUnwritten = data;
+            boolean truncated = false;
+            if (raf != null && start >= 0) {
+                try {
+                    raf.setLength(start);
+                    truncated = true;
+                } catch (IOException ignored) {
+                }
+            }
+            // 截不掉时下次写入前重新检查，至少保证从记录边界开始
+            mFileChecked = truncated;
+        } finally {
+            if (raf != null) {
+                try {
+                    raf.close();
+                } catch (IOException ignored) {
+                }
+            }
+        }
+    }
+
+    /**
+     * @return 该难度的总局数
+     */
+    public synchronized int getGameCount(int level) {
+        return mIndexes[level].gameCount;
+    }
+
+    /**
+     * @return 该难度用时最短的n局胜局，按用时升序
+     */
+    public synchronized List<GameRecord> getBestTimes(int level, int n) {
+        LevelIndex index = mIndexes[level];
+        int count = Math.min(n, index.winCount);
+        List<GameRecord> result = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            result.add(getRecord((int) index.wins[i]));
+        }
+        return result;
+    }
+
+    /**
+     * @return 该难度最近lastGames局的胜率，没有对局时返回0
+     */
+    public synchronized double getWinRate(int level, int lastGames) {
+        LevelIndex index = mIndexes[level];
+        int count = Math.min(lastGames, index.gameCount);
+        if (count == 0) {
+            return 0;
+        }
+        int wins = index.winPrefix[index.gameCount] - index.winPrefix[index.gameCount - count];
+        return (double) wins / count;
+    }
+
+    /**
+     * @param percentile 0到1，例如0.5为中位数
+     * @return 该难度胜局中处在该百分位的用时，没有胜局时返回-1
+     */
+    public synchronized int getTimePercentile(int level, double percentile) {
+        LevelIndex index = mIndexes[level];
+        if (index.winCount == 0) {
+            return -1;
+        }
+        int pos = (int) Math.round(percentile * (index.winCount - 1));
+        pos = Math.max(0, Math.min(pos, index.winCount - 1));
+        return (int) (index.wins[pos] >>> 32);
+    }
+
+    /**
+     * @return 该难度胜局中用时比timeMillis短的比例，0表示最好成绩
+     */
+    public synchronized double getRankOf(int level, int timeMillis) {
+        LevelIndex index = mIndexes[level];
+        if (index.winCount == 0) {
+            return 0;
+        }
+        int pos = Arrays.binarySearch(index.wins, 0, index.winCount, LevelIndex.key(timeMillis, 0));
+        if (pos < 0) {
+            pos = -pos - 1;
+        }
+        return (double) pos / index.winCount;
+    }
+
+    private GameRecord getRecord(int id) {
+        return new GameRecord(mSeeds[id], mLevels[id], mRowCounts[id], mColumnCounts[id], mMineTotals[id],
+                mTimes[id], mClicks[id], mThreeBVs[id], mWins[id], mFinishedAts[id]);
+    }
+
+}
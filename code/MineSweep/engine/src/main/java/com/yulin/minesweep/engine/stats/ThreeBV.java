@@ -0,0 +1,58 @@
+package com.yulin.minesweep.engine.stats;
+
+import com.yulin.minesweep.engine.Board;
+
+/**
+ * 3BV：不用插旗、不用双击时清空棋盘最少需要的点击数。每片连通的空白区域（连同它边上的数字）点1次，
+ * 不挨着空白区域的数字方格各点1次
+ */
+public final class ThreeBV {
+
+    private ThreeBV() {
+    }
+
+    /**
+     * 雷必须已经布好
+     */
+    public static int compute(Board board) {
+        int cellCount = board.getCellCount();
+        boolean[] covered = new boolean[cellCount];
+        int[] queue = new int[cellCount];
+        int[] around = new int[8];
+        int value = 0;
+
+        for (int i = 0; i < cellCount; i++) {
+            if (covered[i] || board.isMine(i) || board.getMineCount(i) != 0) {
+                continue;
+            }
+            // 新的空白区域，连续打开的范围内所有方格都不再单独计数
+            value++;
+            int head = 0;
+            int tail = 0;
+            covered[i] = true;
+            queue[tail++] = i;
+            while (head < tail) {
+                int index = queue[head++];
+                if (board.getMineCount(index) != 0) {
+                    continue;
+                }
+                int count = board.getNeighbors(index, around);
+                for (int k = 0; k < count; k++) {
+                    int n = around[k];
+                    if (!covered[n]) {
+                        covered[n] = true;
+                        queue[tail++] = n;
+                    }
+                }
+            }
+        }
+
+        for (int i = 0; i < cellCount; i++) {
+            if (!covered[i] && !board.isMine(i)) {
+                value++;
+            }
+        }
+        return value;
+    }
+
+}
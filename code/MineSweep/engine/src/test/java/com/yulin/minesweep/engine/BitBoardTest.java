@@ -0,0 +1,91 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class BitBoardTest {
+
+    // 行宽跨过long的边界
+    private static final int[] WIDTHS = {1, 63, 64, 65, 127};
+
+    @Test
+    public void mineCountsMatchNaive() {
+        Random random = new Random(17);
+        for (int cols : WIDTHS) {
+            for (int rows : new int[]{1, 2, 3, 37}) {
+                int cells = rows * cols;
+                long[] mines = new long[(cells + 63) >>> 6];
+                for (double density : new double[]{0, 0.1, 0.5, 1}) {
+                    java.util.Arrays.fill(mines, 0);
+                    for (int i = 0; i < cells; i++) {
+                        if (random.nextDouble() < density) {
+                            mines[i >>> 6] |= 1L << i;
+                        }
+                    }
+                    byte[] counts = new byte[cells];
+                    new BitBoard(rows, cols).computeMineCounts(mines, counts);
+                    for (int i = 0; i < cells; i++) {
+                        assertEquals(rows + "x" + cols + " cell " + i,
+                                naiveMineCount(mines, rows, cols, i), counts[i]);
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void largeFloodFillMatchesNaive() {
+        Random random = new Random(19);
+        for (int cols : WIDTHS) {
+            // 方格数远大于改用位图的阈值max(1024, 4 × 列数)
+            int rows = Math.max(40, 6000 / cols);
+            int cells = rows * cols;
+            int maxOpened = 0;
+            for (double density : new double[]{0, 0.001, 0.01, 0.05}) {
+                for (int round = 0; round < 3; round++) {
+                    Board board = FloodFillTest.randomBoard(random, rows, cols, (int) (cells * density));
+                    FloodFillTest.markRandomly(random, board, cells / 200);
+                    for (int open = 0; open < 5 && board.getStatus() == Board.STATUS_PLAYING; open++) {
+                        int before = board.getOpenedCount();
+                        FloodFillTest.openAndCompare(board, random.nextInt(cells));
+                        maxOpened = Math.max(maxOpened, board.getOpenedCount() - before);
+                    }
+                }
+            }
+            // 确实走到了位图扩展
+            assertTrue("width " + cols, maxOpened > Math.max(1024, cols * 4));
+        }
+    }
+
+    @Test
+    public void floodFillAfterSetMine() {
+        // 逐个放雷会使空白位图失效，连续打开时要重新生成
+        Board board = new Board(50, 65, 2, 0);
+        board.placeMines(0);
+        board.setMine(65 * 25 + 30);
+        board.setMine(65 * 25 + 31);
+        FloodFillTest.openAndCompare(board, 0);
+        assertEquals(Board.STATE_IDLE, board.getState(65 * 25 + 30));
+    }
+
+    private static int naiveMineCount(long[] mines, int rows, int cols, int index) {
+        int r = index / cols;
+        int c = index % cols;
+        int count = 0;
+        for (int nr = r - 1; nr <= r + 1; nr++) {
+            for (int nc = c - 1; nc <= c + 1; nc++) {
+                int n = nr * cols + nc;
+                if ((nr != r || nc != c) && nr >= 0 && nr < rows && nc >= 0 && nc < cols
+                        && (mines[n >>> 6] & (1L << n)) != 0) {
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+}
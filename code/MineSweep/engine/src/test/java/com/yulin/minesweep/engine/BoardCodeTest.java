@@ -0,0 +1,97 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BoardCodeTest {
+
+    @Test
+    public void seedCodeBeforeFirstOpen() {
+        Board board = new Board(16, 30, 99, 12345);
+        Board decoded = BoardCode.decode(BoardCode.encode(board));
+        assertFalse(decoded.isMinesPlaced());
+        assertEquals(12345, decoded.getSeed());
+        // 第1次翻开同一个方格得到同样的雷
+        board.open(200);
+        decoded.open(200);
+        assertSameMines(board, decoded);
+    }
+
+    @Test
+    public void seedCodeAfterFirstOpen() {
+        Board board = new Board(16, 30, 99, -7);
+        board.open(17);
+        String code = BoardCode.encode(board);
+        Board decoded = BoardCode.decode(code);
+        assertTrue(decoded.isMinesPlaced());
+        assertFalse(decoded.hasCustomMines());
+        assertEquals(17, decoded.getFirstIndex());
+        assertSameMines(board, decoded);
+        // 同一局总是得到同一个编码
+        assertEquals(code, BoardCode.encode(decoded));
+    }
+
+    @Test
+    public void mineCodesRoundTrip() {
+        Random random = new Random(13);
+        int[][] sizes = {{1, 1, 0}, {1, 2, 1}, {9, 9, 10}, {16, 30, 99}, {16, 30, 400}, {7, 13, 90}};
+        for (int[] size : sizes) {
+            Board board = new Board(size[0], size[1], size[2], random.nextLong());
+            board.open(random.nextInt(board.getCellCount()));
+            Board decoded = BoardCode.decode(BoardCode.encodeMines(board));
+            assertTrue(decoded.hasCustomMines());
+            assertSameMines(board, decoded);
+            // 自定义的雷再编码时也按位置编码
+            assertEquals(BoardCode.encodeMines(board), BoardCode.encode(decoded));
+        }
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void encodeMinesBeforePlacing() {
+        BoardCode.encodeMines(new Board(9, 9, 10, 1));
+    }
+
+    @Test
+    public void garbageIsRejected() {
+        assertRejected("");
+        assertRejected("!!!!");
+        assertRejected("AAAA");
+        assertRejected("////////");
+        Board seeded = new Board(16, 30, 99, 5);
+        seeded.open(0);
+        String code = BoardCode.encode(seeded);
+        assertRejected(code + "A");
+        for (int i = 0; i < code.length(); i++) {
+            assertRejected(code.substring(0, i));
+        }
+        String mines = BoardCode.encodeMines(seeded);
+        for (int i = 0; i < mines.length(); i++) {
+            assertRejected(mines.substring(0, i));
+        }
+    }
+
+    private static void assertRejected(String code) {
+        try {
+            BoardCode.decode(code);
+            fail(code);
+        } catch (IllegalArgumentException expected) {
+        }
+    }
+
+    private static void assertSameMines(Board expected, Board actual) {
+        assertEquals(expected.getRowCount(), actual.getRowCount());
+        assertEquals(expected.getColumnCount(), actual.getColumnCount());
+        assertEquals(expected.getMineTotal(), actual.getMineTotal());
+        for (int i = 0; i < expected.getCellCount(); i++) {
+            assertEquals(expected.isMine(i), actual.isMine(i));
+            assertEquals(expected.getMineCount(i), actual.getMineCount(i));
+        }
+    }
+
+}
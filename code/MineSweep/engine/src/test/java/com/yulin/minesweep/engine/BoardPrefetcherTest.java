@@ -0,0 +1,131 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BoardPrefetcherTest {
+
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() {
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+    }
+
+    // 一直生成到被取消为止，模拟找不到无需猜测棋盘的生成
+    private static class BlockingFactory implements BoardPrefetcher.Factory {
+
+        final CountDownLatch mStarted = new CountDownLatch(1);
+        final CountDownLatch mCancelled = new CountDownLatch(1);
+        final AtomicInteger mCreated = new AtomicInteger();
+
+        @Override
+        public Board create(AtomicBoolean cancelled) {
+            mCreated.incrementAndGet();
+            mStarted.countDown();
+            while (!cancelled.get()) {
+                Thread.yield();
+            }
+            mCancelled.countDown();
+            return null;
+        }
+    }
+
+    private static class PlainFactory implements BoardPrefetcher.Factory {
+
+        @Override
+        public Board create(AtomicBoolean cancelled) {
+            return new Board(9, 9, 10);
+        }
+    }
+
+    @Test
+    public void keyChangeCancelsRunningAndQueuedTasks() throws InterruptedException {
+        BoardPrefetcher prefetcher = new BoardPrefetcher(mExecutor, 2);
+        BlockingFactory blocking = new BlockingFactory();
+        prefetcher.setFactory("slow", blocking);
+        assertTrue(blocking.mStarted.await(1, TimeUnit.SECONDS));
+
+        prefetcher.setFactory("plain", new PlainFactory());
+        assertTrue(blocking.mCancelled.await(1, TimeUnit.SECONDS));
+
+        // 排在后面的旧任务不再运行，新的棋盘很快生成
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (prefetcher.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(2, prefetcher.size());
+        assertEquals(1, blocking.mCreated.get());
+    }
+
+    @Test
+    public void sameKeyKeepsQueuedBoards() throws InterruptedException {
+        BoardPrefetcher prefetcher = new BoardPrefetcher(mExecutor, 2);
+        prefetcher.setFactory("plain", new PlainFactory());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (prefetcher.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        BlockingFactory blocking = new BlockingFactory();
+        prefetcher.setFactory("plain", blocking);
+        assertEquals(2, prefetcher.size());
+        assertEquals(0, blocking.mCreated.get());
+    }
+
+    @Test
+    public void clearDropsBoardsOfThatKeyOnly() throws InterruptedException {
+        BoardPrefetcher prefetcher = new BoardPrefetcher(mExecutor, 2);
+        prefetcher.setFactory("plain", new PlainFactory());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (prefetcher.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        // 别的页面关闭，不影响当前的队列
+        prefetcher.clear("other");
+        assertEquals(2, prefetcher.size());
+
+        prefetcher.clear("plain");
+        assertEquals(0, prefetcher.size());
+        assertNull(prefetcher.take("plain"));
+        // 取走也不再补充
+        Thread.sleep(50);
+        assertEquals(0, prefetcher.size());
+    }
+
+    @Test
+    public void clearCancelsRunningTask() throws InterruptedException {
+        BoardPrefetcher prefetcher = new BoardPrefetcher(mExecutor, 2);
+        BlockingFactory blocking = new BlockingFactory();
+        prefetcher.setFactory("slow", blocking);
+        assertTrue(blocking.mStarted.await(1, TimeUnit.SECONDS));
+        prefetcher.clear("slow");
+        assertTrue(blocking.mCancelled.await(1, TimeUnit.SECONDS));
+
+        // 再次打开同一个页面时重新生成
+        prefetcher.setFactory("slow", new PlainFactory());
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(1);
+        while (prefetcher.size() < 2 && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertEquals(2, prefetcher.size());
+        assertEquals(1, blocking.mCreated.get());
+    }
+
+}
@@ -0,0 +1,113 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class BoardTest {
+
+    // 3 × 3，只有左上角是雷
+    private static Board cornerMine() {
+        Board board = new Board(3, 3, 1, 0);
+        board.setMine(0);
+        return board;
+    }
+
+    @Test
+    public void mineCountsAroundSetMines() {
+        Board board = cornerMine();
+        assertEquals(1, board.getMineCount(1));
+        assertEquals(1, board.getMineCount(3));
+        assertEquals(1, board.getMineCount(4));
+        assertEquals(0, board.getMineCount(8));
+    }
+
+    @Test
+    public void openingAllSafeCellsWins() {
+        Board board = cornerMine();
+        assertEquals(8, board.open(8));
+        assertEquals(Board.STATUS_WON, board.getStatus());
+        assertEquals(8, board.getOpenedCount());
+        // 胜利时剩下的雷自动插旗
+        assertEquals(Board.STATE_FLAG, board.getState(0));
+    }
+
+    @Test
+    public void openingAMineLoses() {
+        Board board = cornerMine();
+        board.open(0);
+        assertEquals(Board.STATUS_LOST, board.getStatus());
+        // 结束后不再响应操作
+        assertEquals(0, board.open(8));
+    }
+
+    @Test
+    public void markCyclesFlagQuestionIdle() {
+        Board board = cornerMine();
+        assertEquals(Board.STATE_FLAG, board.toggleMark(0));
+        assertEquals(1, board.getFlagCount());
+        assertEquals(Board.STATE_QUESTION, board.toggleMark(0));
+        assertEquals(0, board.getFlagCount());
+        assertEquals(Board.STATE_IDLE, board.toggleMark(0));
+        // 标记的方格不能翻开
+        board.toggleMark(0);
+        assertEquals(0, board.open(0));
+        assertEquals(Board.STATUS_PLAYING, board.getStatus());
+    }
+
+    @Test
+    public void chordOpensAroundWhenFlagsMatch() {
+        Board board = new Board(3, 3, 1, 0);
+        board.setMine(0);
+        board.open(1);
+        assertFalse(board.canChord(1));
+        board.toggleMark(0);
+        assertTrue(board.canChord(1));
+        board.chord(1);
+        assertEquals(Board.STATE_OPENED, board.getState(2));
+        assertEquals(Board.STATE_OPENED, board.getState(5));
+    }
+
+    @Test
+    public void sameSeedPlacesSameMines() {
+        Board a = new Board(16, 30, 99, 123);
+        Board b = new Board(16, 30, 99, 123);
+        a.open(200);
+        b.open(200);
+        for (int i = 0; i < a.getCellCount(); i++) {
+            assertEquals(a.isMine(i), b.isMine(i));
+        }
+    }
+
+    @Test
+    public void byteArrayRoundTripKeepsGame() {
+        Board board = new Board(16, 30, 99, 77);
+        board.open(240);
+        board.toggleMark(0);
+        board.toggleMark(1);
+        board.toggleMark(1);
+        byte[] data = board.toByteArray();
+
+        Board restored = Board.fromByteArray(data);
+        assertEquals(board.getStatus(), restored.getStatus());
+        assertEquals(board.getOpenedCount(), restored.getOpenedCount());
+        assertEquals(board.getFlagCount(), restored.getFlagCount());
+        assertEquals(board.getFirstIndex(), restored.getFirstIndex());
+        for (int i = 0; i < board.getCellCount(); i++) {
+            assertEquals(board.isMine(i), restored.isMine(i));
+            assertEquals(board.getState(i), restored.getState(i));
+            assertEquals(board.getMineCount(i), restored.getMineCount(i));
+        }
+        assertArrayEquals(data, restored.toByteArray());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void truncatedBytesAreRejected() {
+        byte[] data = new Board(9, 9, 10, 1).toByteArray();
+        Board.fromByteArray(java.util.Arrays.copyOf(data, data.length / 2));
+    }
+
+}
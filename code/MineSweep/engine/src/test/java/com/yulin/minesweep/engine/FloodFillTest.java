@@ -0,0 +1,116 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class FloodFillTest {
+
+    @Test
+    public void matchesNaiveBfs() {
+        Random random = new Random(2);
+        for (int round = 0; round < 200; round++) {
+            int rows = 1 + random.nextInt(20);
+            int cols = 1 + random.nextInt(20);
+            int cells = rows * cols;
+            Board board = randomBoard(random, rows, cols, random.nextInt(cells / 6 + 1));
+            markRandomly(random, board, cells / 10);
+            openAndCompare(board, random.nextInt(cells));
+        }
+    }
+
+    @Test
+    public void marksAreNotOpened() {
+        // 1 × 5 没有雷，中间插旗把空白分成两半
+        Board board = new Board(1, 5, 0, 0);
+        board.placeMines(0);
+        board.toggleMark(2);
+        board.toggleMark(3);
+        board.toggleMark(3);
+        assertEquals(2, board.open(0));
+        assertEquals(Board.STATE_FLAG, board.getState(2));
+        assertEquals(Board.STATE_QUESTION, board.getState(3));
+        assertEquals(Board.STATE_IDLE, board.getState(4));
+    }
+
+    static Board randomBoard(Random random, int rows, int cols, int mines) {
+        Board board = new Board(rows, cols, mines, 0);
+        int placed = 0;
+        while (placed < mines) {
+            int i = random.nextInt(rows * cols);
+            if (!board.isMine(i)) {
+                board.setMine(i);
+                placed++;
+            }
+        }
+        if (mines == 0) {
+            board.placeMines(0);
+        }
+        return board;
+    }
+
+    static void markRandomly(Random random, Board board, int count) {
+        for (int i = 0; i < count; i++) {
+            board.toggleMark(random.nextInt(board.getCellCount()));
+        }
+    }
+
+    /**
+     * 翻开index，和按定义逐格BFS得到的结果比较所有方格的状态
+     */
+    static void openAndCompare(Board board, int index) {
+        int rows = board.getRowCount();
+        int cols = board.getColumnCount();
+        int cells = board.getCellCount();
+        int[] expected = new int[cells];
+        for (int i = 0; i < cells; i++) {
+            expected[i] = board.getState(i);
+        }
+        if (expected[index] == Board.STATE_IDLE && !board.isMine(index)) {
+            ArrayDeque<Integer> queue = new ArrayDeque<Integer>();
+            expected[index] = Board.STATE_OPENED;
+            queue.add(index);
+            while (!queue.isEmpty()) {
+                int i = queue.poll();
+                if (board.getMineCount(i) != 0) {
+                    continue;
+                }
+                int r = i / cols;
+                int c = i % cols;
+                for (int dr = -1; dr <= 1; dr++) {
+                    for (int dc = -1; dc <= 1; dc++) {
+                        int nr = r + dr;
+                        int nc = c + dc;
+                        if (nr < 0 || nr >= rows || nc < 0 || nc >= cols) {
+                            continue;
+                        }
+                        int n = nr * cols + nc;
+                        if (expected[n] == Board.STATE_IDLE) {
+                            expected[n] = Board.STATE_OPENED;
+                            queue.add(n);
+                        }
+                    }
+                }
+            }
+        }
+        int before = board.getOpenedCount();
+        int opened = board.open(index);
+        // 踩雷时全部打开，胜利时雷自动插旗，不再和BFS比较
+        if (board.getStatus() != Board.STATUS_PLAYING) {
+            return;
+        }
+        int count = 0;
+        for (int i = 0; i < cells; i++) {
+            if (expected[i] == Board.STATE_OPENED) {
+                count++;
+            }
+            assertEquals("cell " + i, expected[i], board.getState(i));
+        }
+        assertEquals(count, board.getOpenedCount());
+        assertEquals(count - before, opened);
+    }
+
+}
@@ -0,0 +1,97 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class MinePlacerTest {
+
+    @Test
+    public void sameSeedSameMines() {
+        MinePlacer placer = new MinePlacer();
+        Board a = new Board(16, 30, 99);
+        Board b = new Board(16, 30, 99);
+        placer.place(a, 42, 100);
+        // 复用同1个实例，缓存不影响结果
+        placer.place(b, 7, 100);
+        placer.place(b, 42, 100);
+        for (int i = 0; i < a.getCellCount(); i++) {
+            assertEquals(a.isMine(i), b.isMine(i));
+        }
+    }
+
+    @Test
+    public void differentSeedDifferentMines() {
+        MinePlacer placer = new MinePlacer();
+        Board a = new Board(16, 30, 99);
+        Board b = new Board(16, 30, 99);
+        placer.place(a, 1, 100);
+        placer.place(b, 2, 100);
+        boolean same = true;
+        for (int i = 0; i < a.getCellCount(); i++) {
+            same &= a.isMine(i) == b.isMine(i);
+        }
+        assertFalse(same);
+    }
+
+    @Test
+    public void exactMineTotalAndSafeFirstClick() {
+        MinePlacer placer = new MinePlacer();
+        int[][] sizes = {{9, 9, 10}, {16, 16, 40}, {16, 30, 99}, {1, 64, 20}, {30, 1, 20}, {10, 10, 91}};
+        for (int[] size : sizes) {
+            Board board = new Board(size[0], size[1], size[2]);
+            for (long seed = 0; seed < 50; seed++) {
+                int safe = (int) (seed * 31 % board.getCellCount());
+                placer.place(board, seed, safe);
+                assertEquals(size[2], countMines(board));
+                assertFalse(board.isMine(safe));
+                // 放得下时周围8格也不是雷
+                if (board.getCellCount() - 9 >= size[2]) {
+                    assertEquals(0, board.getMineCount(safe));
+                }
+                assertCountsMatch(board);
+            }
+        }
+    }
+
+    @Test
+    public void fullBoardExceptSafeCell() {
+        Board board = new Board(5, 5, 24);
+        new MinePlacer().place(board, 3, 12);
+        assertEquals(24, countMines(board));
+        assertFalse(board.isMine(12));
+        assertEquals(8, board.getMineCount(12));
+    }
+
+    private static int countMines(Board board) {
+        int count = 0;
+        for (int i = 0; i < board.getCellCount(); i++) {
+            if (board.isMine(i)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    // 周围雷数和逐格数出来的一致
+    private static void assertCountsMatch(Board board) {
+        int rows = board.getRowCount();
+        int cols = board.getColumnCount();
+        for (int r = 0; r < rows; r++) {
+            for (int c = 0; c < cols; c++) {
+                int count = 0;
+                for (int nr = r - 1; nr <= r + 1; nr++) {
+                    for (int nc = c - 1; nc <= c + 1; nc++) {
+                        if ((nr != r || nc != c) && nr >= 0 && nr < rows && nc >= 0 && nc < cols
+                                && board.isMine(nr * cols + nc)) {
+                            count++;
+                        }
+                    }
+                }
+                assertEquals(count, board.getMineCount(r * cols + c));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,98 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class NeighborTableTest {
+
+    @Test
+    public void neighborsMatchNaive() {
+        int[][] sizes = {{1, 1}, {1, 5}, {5, 1}, {2, 2}, {9, 9}, {16, 30}, {3, 64}};
+        int[] out = new int[8];
+        for (int[] size : sizes) {
+            NeighborTable table = NeighborTable.get(size[0], size[1]);
+            for (int i = 0; i < size[0] * size[1]; i++) {
+                int count = table.getNeighbors(i, out);
+                int[] actual = Arrays.copyOf(out, count);
+                Arrays.sort(actual);
+                assertArrayEquals(naiveNeighbors(size[0], size[1], i), actual);
+            }
+        }
+    }
+
+    @Test
+    public void sameSizeSharesTable() {
+        assertSame(NeighborTable.get(16, 30), NeighborTable.get(16, 30));
+    }
+
+    @Test
+    public void markCountsAroundMatchNaive() {
+        Random random = new Random(5);
+        Board board = new Board(16, 30, 99, 3);
+        board.open(240);
+        for (int step = 0; step < 2000; step++) {
+            board.toggleMark(random.nextInt(board.getCellCount()));
+            if (step % 100 == 0) {
+                assertMarkCounts(board);
+            }
+        }
+        assertMarkCounts(board);
+
+        // 撤回标记后计数跟着变化
+        int[] indices = new int[board.getCellCount()];
+        int count = 0;
+        for (int i = 0; i < board.getCellCount(); i++) {
+            if (board.getState(i) != Board.STATE_OPENED) {
+                indices[count++] = i;
+            }
+        }
+        board.setStates(indices, count, (byte) Board.STATE_IDLE);
+        assertMarkCounts(board);
+        assertEquals(0, board.getFlagCount());
+    }
+
+    private static int[] naiveNeighbors(int rows, int cols, int index) {
+        int r = index / cols;
+        int c = index % cols;
+        int[] result = new int[8];
+        int count = 0;
+        for (int nr = r - 1; nr <= r + 1; nr++) {
+            for (int nc = c - 1; nc <= c + 1; nc++) {
+                if ((nr != r || nc != c) && nr >= 0 && nr < rows && nc >= 0 && nc < cols) {
+                    result[count++] = nr * cols + nc;
+                }
+            }
+        }
+        return Arrays.copyOf(result, count);
+    }
+
+    private static void assertMarkCounts(Board board) {
+        int rows = board.getRowCount();
+        int cols = board.getColumnCount();
+        int flags = 0;
+        for (int i = 0; i < board.getCellCount(); i++) {
+            int flagsAround = 0;
+            int questionsAround = 0;
+            for (int n : naiveNeighbors(rows, cols, i)) {
+                if (board.getState(n) == Board.STATE_FLAG) {
+                    flagsAround++;
+                } else if (board.getState(n) == Board.STATE_QUESTION) {
+                    questionsAround++;
+                }
+            }
+            assertEquals(flagsAround, board.getFlagCountAround(i));
+            assertEquals(questionsAround, board.getQuestionCountAround(i));
+            if (board.getState(i) == Board.STATE_FLAG) {
+                flags++;
+            }
+        }
+        assertEquals(flags, board.getFlagCount());
+    }
+
+}
@@ -0,0 +1,125 @@
+package com.yulin.minesweep.engine;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class UndoHistoryTest {
+
+    @Test
+    public void undoAllThenRedoAll() {
+        Random random = new Random(9);
+        int tested = 0;
+        for (int game = 0; game < 30; game++) {
+            Board board = new Board(16, 30, 99, random.nextLong());
+            UndoHistory history = new UndoHistory(board);
+            history.setPractice(true);
+            int moves = playRandomly(random, board, 60);
+            if (board.getStatus() == Board.STATUS_WON) {
+                // 胜利后不能撤销
+                assertFalse(history.undo());
+                continue;
+            }
+            tested++;
+            byte[] end = board.toByteArray();
+            assertEquals(moves, history.getUndoCount());
+
+            while (history.undo()) {
+            }
+            assertEquals(0, history.getUndoCount());
+            assertEquals(moves, history.getRedoCount());
+            assertEquals(Board.STATUS_PLAYING, board.getStatus());
+            assertEquals(0, board.getOpenedCount());
+            assertEquals(0, board.getFlagCount());
+            for (int i = 0; i < board.getCellCount(); i++) {
+                assertEquals(Board.STATE_IDLE, board.getState(i));
+                assertEquals(0, board.getFlagCountAround(i));
+                assertEquals(0, board.getQuestionCountAround(i));
+            }
+
+            while (history.redo()) {
+            }
+            assertEquals(0, history.getRedoCount());
+            assertArrayEquals(end, board.toByteArray());
+        }
+        assertTrue(tested > 0);
+    }
+
+    @Test
+    public void lossCanOnlyBeUndoneInPractice() {
+        Board board = new Board(1, 4, 2, 0);
+        board.setMine(1);
+        board.setMine(3);
+        UndoHistory history = new UndoHistory(board);
+        board.open(0);
+        board.open(3);
+        assertEquals(Board.STATUS_LOST, board.getStatus());
+        assertFalse(history.undo());
+
+        history.setPractice(true);
+        assertTrue(history.undo());
+        assertEquals(Board.STATUS_PLAYING, board.getStatus());
+        assertEquals(Board.STATE_OPENED, board.getState(0));
+        assertEquals(Board.STATE_IDLE, board.getState(3));
+    }
+
+    @Test
+    public void newMoveDropsRedo() {
+        Board board = new Board(1, 4, 2, 0);
+        board.setMine(1);
+        board.setMine(3);
+        UndoHistory history = new UndoHistory(board);
+        board.open(0);
+        board.toggleMark(1);
+        history.undo();
+        assertTrue(history.canRedo());
+        board.toggleMark(3);
+        assertFalse(history.canRedo());
+        assertEquals(2, history.getUndoCount());
+    }
+
+    @Test
+    public void batchChangeClearsHistory() {
+        Board board = new Board(9, 9, 10, 4);
+        UndoHistory history = new UndoHistory(board);
+        board.open(40);
+        board.setStates(new int[]{0}, 1, (byte) Board.STATE_FLAG);
+        assertFalse(history.canUndo());
+    }
+
+    /**
+     * 随机翻开、标记、双击，直到游戏结束或达到步数
+     * @return 实际改变了棋盘的操作数
+     */
+    private static int playRandomly(Random random, Board board, int maxMoves) {
+        int moves = 0;
+        int cells = board.getCellCount();
+        board.open(random.nextInt(cells));
+        moves++;
+        while (moves < maxMoves && board.getStatus() == Board.STATUS_PLAYING) {
+            int i = random.nextInt(cells);
+            int kind = random.nextInt(4);
+            if (kind == 0 && board.getState(i) == Board.STATE_IDLE && !board.isMine(i)) {
+                board.open(i);
+                moves++;
+            } else if (kind == 1 && board.getState(i) != Board.STATE_OPENED) {
+                board.toggleMark(i);
+                moves++;
+            } else if (kind == 2 && board.canChord(i)) {
+                board.chord(i);
+                moves++;
+            } else if (kind == 3 && moves > maxMoves / 2 && board.getState(i) == Board.STATE_IDLE) {
+                // 后半段允许踩雷
+                board.open(i);
+                moves++;
+            }
+        }
+        return moves;
+    }
+
+}
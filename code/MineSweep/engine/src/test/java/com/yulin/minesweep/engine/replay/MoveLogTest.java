@@ -0,0 +1,132 @@
+package com.yulin.minesweep.engine.replay;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class MoveLogTest {
+
+    // 依次翻开前count个不是雷的未打开方格
+    private static int openSafe(Board board, int count) {
+        int opened = 0;
+        for (int i = 0; i < board.getCellCount() && opened < count; i++) {
+            if (!board.isMine(i) && board.getState(i) != Board.STATE_OPENED) {
+                board.open(i);
+                opened++;
+            }
+        }
+        return opened;
+    }
+
+    private static byte[] states(Board board) {
+        byte[] states = new byte[board.getPackedStatesSize()];
+        board.packStates(states, 0);
+        return states;
+    }
+
+    private static void assertSameMines(Board expected, Board actual) {
+        for (int i = 0; i < expected.getCellCount(); i++) {
+            assertEquals("mine " + i, expected.isMine(i), actual.isMine(i));
+        }
+    }
+
+    @Test
+    public void customMinesReplayAsTheSameBoard() throws IOException {
+        Board expert = new Board(16, 30, 99, 42);
+        expert.placeMines(0);
+        Board board = BoardCode.decode(BoardCode.encodeMines(expert));
+        assertTrue(board.hasCustomMines());
+
+        MoveLog log = new MoveLog(board, 4, 0);
+        int moves = openSafe(board, 20);
+        log.detach();
+
+        MoveLogReader reader = new MoveLogReader(ByteBuffer.wrap(log.toByteArray()));
+        assertTrue(reader.hasCustomMines());
+        assertEquals(moves, reader.getMoveCount());
+
+        Board replay = reader.createBoard();
+        assertSameMines(board, replay);
+        reader.seek(replay, moves);
+        assertSameMines(board, replay);
+        assertArrayEquals(states(board), states(replay));
+        assertEquals(board.getStatus(), replay.getStatus());
+    }
+
+    @Test
+    public void seededBoardStillReplays() throws IOException {
+        Board board = new Board(16, 30, 99, 7);
+        MoveLog log = new MoveLog(board, 4, 0);
+        int moves = openSafe(board, 1);
+        moves += openSafe(board, 19);
+        log.detach();
+
+        MoveLogReader reader = new MoveLogReader(ByteBuffer.wrap(log.toByteArray()));
+        assertEquals(false, reader.hasCustomMines());
+        Board replay = reader.createBoard();
+        reader.seek(replay, moves);
+        assertSameMines(board, replay);
+        assertArrayEquals(states(board), states(replay));
+    }
+
+    @Test
+    public void drainedChunksFormTheWholeLog() throws IOException {
+        Board board = new Board(16, 30, 99, 11);
+        MoveLog log = new MoveLog(board, 4, 0);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        int moves = 0;
+        for (int i = 0; i < 10; i++) {
+            moves += openSafe(board, 3);
+            file.write(log.drainPending());
+        }
+        assertEquals(file.size(), log.size());
+        // 取走之后缓冲区中不再保留
+        assertEquals(0, log.drainPending().length);
+
+        MoveLogReader reader = new MoveLogReader(ByteBuffer.wrap(file.toByteArray()));
+        assertEquals(moves, reader.getMoveCount());
+        Board replay = reader.createBoard();
+        reader.seek(replay, moves);
+        assertArrayEquals(states(board), states(replay));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void toByteArrayAfterDrainFails() {
+        MoveLog log = new MoveLog(new Board(9, 9, 10, 1));
+        log.drainPending();
+        log.toByteArray();
+    }
+
+    @Test
+    public void resumedLogAppendsToTheSameFile() throws IOException {
+        Board board = new Board(16, 30, 99, 5);
+        MoveLog log = new MoveLog(board, 4, 0);
+        int moves = openSafe(board, 10);
+        ByteArrayOutputStream file = new ByteArrayOutputStream();
+        file.write(log.drainPending());
+        log.detach();
+
+        // 页面重建：从保存的字节恢复棋盘，接着原来的文件记录
+        Board restored = Board.fromByteArray(board.toByteArray());
+        MoveLog resumed = MoveLog.resume(restored);
+        restored.toggleMark(restored.getCellCount() - 1);
+        moves += 1 + openSafe(restored, 10);
+        file.write(resumed.drainPending());
+
+        MoveLogReader reader = new MoveLogReader(ByteBuffer.wrap(file.toByteArray()));
+        assertEquals(moves, reader.getMoveCount());
+        Board replay = reader.createBoard();
+        reader.seek(replay, moves);
+        assertArrayEquals(states(restored), states(replay));
+    }
+
+}
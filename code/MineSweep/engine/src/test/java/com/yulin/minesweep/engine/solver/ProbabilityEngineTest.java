@@ -0,0 +1,82 @@
+package com.yulin.minesweep.engine.solver;
+
+import com.yulin.minesweep.engine.Board;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ProbabilityEngineTest {
+
+    private static final double EPSILON = 1e-6;
+
+    @Test
+    public void forcedCells() {
+        // 1 × 3，中间是雷：翻开左边后中间一定是雷，右边一定安全
+        Board board = new Board(1, 3, 1, 0);
+        board.setMine(1);
+        board.open(0);
+        ProbabilityEngine engine = new ProbabilityEngine();
+        double[] p = engine.compute(board);
+        assertTrue(engine.isExact());
+        assertEquals(0, p[0], EPSILON);
+        assertEquals(1, p[1], EPSILON);
+        assertEquals(0, p[2], EPSILON);
+    }
+
+    @Test
+    public void uniformBeforeFirstOpen() {
+        Board board = new Board(9, 9, 10, 0);
+        ProbabilityEngine engine = new ProbabilityEngine();
+        // 还没有翻开任何方格，所有方格概率相同
+        double[] p = engine.compute(board);
+        for (int i = 0; i < board.getCellCount(); i++) {
+            assertEquals(10.0 / 81, p[i], EPSILON);
+        }
+    }
+
+    @Test
+    public void probabilitiesSumToMineTotal() {
+        Random random = new Random(11);
+        ProbabilityEngine engine = new ProbabilityEngine();
+        Solver solver = new Solver();
+        int[][] sizes = {{9, 9, 10}, {16, 16, 40}, {16, 30, 99}, {8, 8, 20}};
+        int exactCount = 0;
+        for (int game = 0; game < 40; game++) {
+            int[] size = sizes[game % sizes.length];
+            Board board = new Board(size[0], size[1], size[2], random.nextLong());
+            board.open(random.nextInt(board.getCellCount()));
+            while (board.getStatus() == Board.STATUS_PLAYING) {
+                double[] p = engine.compute(board);
+                double sum = 0;
+                for (int i = 0; i < board.getCellCount(); i++) {
+                    assertTrue(p[i] >= -EPSILON && p[i] <= 1 + EPSILON);
+                    if (board.getState(i) == Board.STATE_OPENED) {
+                        assertEquals(0, p[i], 0);
+                    }
+                    sum += p[i];
+                }
+                if (engine.isExact()) {
+                    exactCount++;
+                    assertEquals(board.getMineTotal(), sum, 1e-6 * board.getMineTotal());
+                }
+                // 求解器确定的方格概率是0或1
+                solver.solve(board);
+                for (int i = 0; i < solver.getSafeCellCount(); i++) {
+                    assertEquals(0, p[solver.getSafeCells()[i]], EPSILON);
+                }
+                for (int i = 0; i < solver.getMineCellCount(); i++) {
+                    assertEquals(1, p[solver.getMineCells()[i]], EPSILON);
+                }
+                int next = solver.getSafeCellCount() > 0
+                        ? solver.getSafeCells()[0] : SolverTest.randomSafeCell(random, board);
+                board.open(next);
+            }
+        }
+        assertTrue(exactCount > 0);
+    }
+
+}
@@ -0,0 +1,96 @@
+package com.yulin.minesweep.engine.solver;
+
+import com.yulin.minesweep.engine.Board;
+
+import org.junit.Test;
+
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class SolverTest {
+
+    @Test
+    public void singleNumberRule() {
+        // 1 × 3，中间是雷：翻开左边得到1，中间一定是雷，右边未知
+        Board board = new Board(1, 3, 1, 0);
+        board.setMine(1);
+        board.open(0);
+        Solver solver = new Solver();
+        assertTrue(solver.solve(board));
+        assertEquals(1, solver.getMineCellCount());
+        assertEquals(1, solver.getMineCells()[0]);
+        assertEquals(0, solver.getSafeCellCount());
+    }
+
+    @Test
+    public void solveIsSound() {
+        playRandomGames(new Solver(), false);
+    }
+
+    @Test
+    public void solveStepIsSound() {
+        playRandomGames(new Solver(), true);
+    }
+
+    @Test
+    public void parallelSolveIsSound() {
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            playRandomGames(new Solver(executor), false);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * 随机对局，每步检查推导出的安全方格和雷都和真实布局一致，再翻开1个安全方格继续
+     */
+    private static void playRandomGames(Solver solver, boolean step) {
+        Random random = new Random(7);
+        int[][] sizes = {{9, 9, 10}, {16, 16, 40}, {16, 30, 99}, {8, 8, 20}};
+        for (int game = 0; game < 40; game++) {
+            int[] size = sizes[game % sizes.length];
+            Board board = new Board(size[0], size[1], size[2], random.nextLong());
+            board.open(random.nextInt(board.getCellCount()));
+            while (board.getStatus() == Board.STATUS_PLAYING) {
+                if (step) {
+                    solver.solveStep(board);
+                } else {
+                    solver.solve(board);
+                }
+                assertSound(board, solver);
+                int next = solver.getSafeCellCount() > 0 ? solver.getSafeCells()[0] : randomSafeCell(random, board);
+                board.open(next);
+            }
+            assertEquals(Board.STATUS_WON, board.getStatus());
+        }
+    }
+
+    static void assertSound(Board board, Solver solver) {
+        int[] safe = solver.getSafeCells();
+        for (int i = 0; i < solver.getSafeCellCount(); i++) {
+            assertFalse(board.isMine(safe[i]));
+            assertEquals(Board.STATE_IDLE, board.getState(safe[i]));
+        }
+        int[] mines = solver.getMineCells();
+        for (int i = 0; i < solver.getMineCellCount(); i++) {
+            assertTrue(board.isMine(mines[i]));
+        }
+    }
+
+    // 推导不出时模拟猜中：随机选1个未打开的非雷方格
+    static int randomSafeCell(Random random, Board board) {
+        while (true) {
+            int i = random.nextInt(board.getCellCount());
+            if (!board.isMine(i) && board.getState(i) == Board.STATE_IDLE) {
+                return i;
+            }
+        }
+    }
+
+}
@@ -0,0 +1,119 @@
+package com.yulin.minesweep.engine.stats;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class StatsStoreTest {
+
+    private File mFile;
+    private ExecutorService mExecutor;
+
+    @Before
+    public void setUp() throws IOException {
+        mFile = File.createTempFile("stats", ".bin");
+        mExecutor = Executors.newSingleThreadExecutor();
+    }
+
+    @After
+    public void tearDown() {
+        mExecutor.shutdownNow();
+        mFile.delete();
+        new File(mFile.getPath() + ".bad").delete();
+    }
+
+    // 第i局用时1000 + i，种子为i，全部是初级胜局
+    private static GameRecord record(int i) {
+        return new GameRecord(i, GameRecord.LEVEL_BEGINNER, 9, 9, 10, 1000 + i, 20, 15, true, i);
+    }
+
+    private StatsStore load() throws InterruptedException {
+        StatsStore store = new StatsStore(mFile, mExecutor);
+        store.load();
+        drain(store);
+        return store;
+    }
+
+    // 等后台线程处理完之前提交的读写
+    private static void drain(StatsStore store) throws InterruptedException {
+        final CountDownLatch latch = new CountDownLatch(1);
+        store.execute(new Runnable() {
+            @Override
+            public void run() {
+                latch.countDown();
+            }
+        });
+        assertTrue(latch.await(10, TimeUnit.SECONDS));
+    }
+
+    private static void addAll(StatsStore store, int from, int to) throws InterruptedException {
+        for (int i = from; i < to; i++) {
+            store.add(record(i));
+        }
+        store.flush();
+        drain(store);
+    }
+
+    private static void assertRecords(StatsStore store, int count) {
+        assertEquals(count, store.getGameCount(GameRecord.LEVEL_BEGINNER));
+        List<GameRecord> best = store.getBestTimes(GameRecord.LEVEL_BEGINNER, count);
+        assertEquals(count, best.size());
+        for (int i = 0; i < count; i++) {
+            assertEquals(i, best.get(i).getSeed());
+            assertEquals(1000 + i, best.get(i).getTimeMillis());
+        }
+    }
+
+    @Test
+    public void tornTailIsTruncatedBeforeAppend() throws Exception {
+        addAll(load(), 0, 16);
+
+        // 最后1条写了一半时进程被杀
+        RandomAccessFile raf = new RandomAccessFile(mFile, "rw");
+        raf.setLength(raf.length() - 25);
+        raf.close();
+
+        StatsStore store = load();
+        assertRecords(store, 15);
+        addAll(store, 15, 31);
+        assertRecords(load(), 31);
+        assertEquals(StatsStore.HEADER_SIZE + 31 * StatsStore.RECORD_SIZE, mFile.length());
+    }
+
+    @Test
+    public void badHeaderIsMovedAside() throws Exception {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[]{'X', 'X', 'X', 'X', 1, 2, 3});
+        out.close();
+
+        StatsStore store = load();
+        assertRecords(store, 0);
+        addAll(store, 0, 3);
+        assertRecords(load(), 3);
+        assertTrue(new File(mFile.getPath() + ".bad").exists());
+    }
+
+    @Test
+    public void shortFileGetsHeader() throws Exception {
+        FileOutputStream out = new FileOutputStream(mFile);
+        out.write(new byte[]{'M', 'S'});
+        out.close();
+
+        addAll(new StatsStore(mFile, mExecutor), 0, 2);
+        assertRecords(load(), 2);
+    }
+
+}
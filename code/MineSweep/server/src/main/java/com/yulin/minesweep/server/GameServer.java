@@ -0,0 +1,239 @@
+package com.yulin.minesweep.server;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 同时托管大量对局的命令行服务器，规则和界面相同，全部由{@link Board}处理
+ *
+ * 只监听本机地址，文本协议，每行1条命令，每条命令回复1行：
+ * <pre>
+ * NEW rows columns mines [seed]   -> OK id
+ * LOAD code                       -> OK id，按{@link BoardCode}编码重新生成棋盘
+ * OPEN id index                   -> OK opened status
+ * FLAG id index                   -> OK state status
+ * CHORD id index                  -> OK opened status
+ * STATE id                        -> OK status openedCount flagCount
+ * CODE id                         -> OK code
+ * CLOSE id                        -> OK
+ * 出错时                          -> ERR message
+ * </pre>
+ * status为{@link Board#STATUS_PLAYING}等数值。每个连接1个虚拟线程，按顺序执行并回复，客户端可以不等回复连续发送多条命令，
+ * 输入读空时才刷新输出。同一局的命令在对局上加锁依次执行，对局表按序号分片，没有全局锁。
+ * 长时间没有命令的对局被定期清理。
+ *
+ * 用法：GameServer [--port P] [--shards N] [--idle-minutes M]
+ */
+public class GameServer {
+
+    public static final int DEFAULT_PORT = 7070;
+
+    private static final int DEFAULT_SHARDS = 64;
+    private static final int DEFAULT_IDLE_MINUTES = 30;
+
+    // 防止1条命令创建过大的棋盘
+    private static final int MAX_CELLS = 1 << 22;
+
+    private final SessionMap mSessions;
+
+    GameServer(int shards) {
+        mSessions = new SessionMap(shards);
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = DEFAULT_PORT;
+        int shards = DEFAULT_SHARDS;
+        int idleMinutes = DEFAULT_IDLE_MINUTES;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("missing value for " + arg);
+                return;
+            }
+            String value = args[++i];
+            if ("--port".equals(arg)) {
+                port = Integer.parseInt(value);
+            } else if ("--shards".equals(arg)) {
+                shards = Integer.parseInt(value);
+            } else if ("--idle-minutes".equals(arg)) {
+                idleMinutes = Integer.parseInt(value);
+            } else {
+                usage("unknown option " + arg);
+                return;
+            }
+        }
+        if (shards <= 0 || idleMinutes <= 0) {
+            usage("shards and idle-minutes must be positive");
+            return;
+        }
+
+        final GameServer server = new GameServer(shards);
+        final long idleNanos = TimeUnit.MINUTES.toNanos(idleMinutes);
+        ScheduledExecutorService cleaner = Executors.newSingleThreadScheduledExecutor();
+        cleaner.scheduleWithFixedDelay(new Runnable() {
+            @Override
+            public void run() {
+                server.mSessions.evictIdle(System.nanoTime() - idleNanos);
+            }
+        }, 1, 1, TimeUnit.MINUTES);
+
+        ServerSocket serverSocket = new ServerSocket(port, 1024, InetAddress.getLoopbackAddress());
+        System.out.println(String.format(Locale.US, "listening on %s, shards %d",
+                serverSocket.getLocalSocketAddress(), shards));
+        // 阻塞在读socket上的虚拟线程不占用平台线程，连接数不受线程数限制
+        server.serve(serverSocket, Executors.newVirtualThreadPerTaskExecutor());
+    }
+
+    /**
+     * 接受连接直到serverSocket关闭，每个连接交给executor中的1个线程
+     */
+    void serve(ServerSocket serverSocket, ExecutorService executor) throws IOException {
+        try {
+            while (true) {
+                final Socket socket = serverSocket.accept();
+                socket.setTcpNoDelay(true);
+                executor.execute(new Runnable() {
+                    @Override
+                    public void run() {
+                        handle(socket);
+                    }
+                });
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private void handle(Socket socket) {
+        try {
+            BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(),
+                    StandardCharsets.US_ASCII));
+            Writer out = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(),
+                    StandardCharsets.US_ASCII));
+            String line;
+            while ((line = in.readLine()) != null) {
+                out.write(execute(line));
+                out.write('\n');
+                // 客户端连续发送的命令一起回复
+                if (!in.ready()) {
+                    out.flush();
+                }
+            }
+        } catch (IOException ignored) {
+            // 客户端断开
+        } finally {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+            }
+        }
+    }
+
+    /**
+     * 执行1条命令
+     * @return 回复，不含换行
+     */
+    String execute(String line) {
+        String[] parts = line.trim().split("\\s+");
+        String command = parts[0].toUpperCase(Locale.US);
+        try {
+            if ("NEW".equals(command)) {
+                return create(parts);
+            }
+            if ("LOAD".equals(command)) {
+                return load(parts);
+            }
+            boolean cellCommand = "OPEN".equals(command) || "FLAG".equals(command) || "CHORD".equals(command);
+            if (!cellCommand && !"CLOSE".equals(command) && !"STATE".equals(command) && !"CODE".equals(command)) {
+                return "ERR unknown command " + command;
+            }
+            if (parts.length < 2) {
+                return "ERR missing session id";
+            }
+            long id = Long.parseLong(parts[1]);
+            if ("CLOSE".equals(command)) {
+                return mSessions.remove(id) != null ? "OK" : "ERR no session " + id;
+            }
+            Session session = mSessions.get(id);
+            if (session == null) {
+                return "ERR no session " + id;
+            }
+            if ("STATE".equals(command)) {
+                return "OK " + session.describe();
+            }
+            if ("CODE".equals(command)) {
+                return "OK " + session.code();
+            }
+            if (parts.length < 3) {
+                return "ERR missing cell index";
+            }
+            int index = Integer.parseInt(parts[2]);
+            if ("OPEN".equals(command)) {
+                return "OK " + session.open(index);
+            } else if ("FLAG".equals(command)) {
+                return "OK " + session.toggleMark(index);
+            }
+            return "OK " + session.chord(index);
+        } catch (NumberFormatException e) {
+            return "ERR bad number";
+        } catch (IllegalArgumentException e) {
+            return "ERR " + e.getMessage();
+        }
+    }
+
+    private String create(String[] parts) {
+        if (parts.length < 4) {
+            return "ERR usage: NEW rows columns mines [seed]";
+        }
+        int rowCount = Integer.parseInt(parts[1]);
+        int columnCount = Integer.parseInt(parts[2]);
+        int mineTotal = Integer.parseInt(parts[3]);
+        if ((long) rowCount * columnCount > MAX_CELLS) {
+            return "ERR board too large";
+        }
+        Board board = parts.length > 4
+                ? new Board(rowCount, columnCount, mineTotal, Long.parseLong(parts[4]))
+                : new Board(rowCount, columnCount, mineTotal);
+        return add(board);
+    }
+
+    private String load(String[] parts) {
+        if (parts.length < 2) {
+            return "ERR usage: LOAD code";
+        }
+        // 解码时棋盘大小不超过BoardCode.MAX_CELLS，再大的编码直接报错
+        Board board = BoardCode.decode(parts[1]);
+        if (board.getCellCount() > MAX_CELLS) {
+            return "ERR board too large";
+        }
+        return add(board);
+    }
+
+    private String add(Board board) {
+        Session session = new Session(mSessions.nextId(), board);
+        mSessions.put(session);
+        return "OK " + session.id;
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("usage: GameServer [--port P] [--shards N] [--idle-minutes M]");
+    }
+
+}
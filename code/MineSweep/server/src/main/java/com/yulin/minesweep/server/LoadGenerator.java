@@ -0,0 +1,245 @@
+package com.yulin.minesweep.server;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * {@link GameServer}的压力测试：多个连接同时对各自的一组对局随机发送翻开、插旗、双击命令，
+ * 统计每秒命令数和延迟分位数
+ *
+ * 每个连接1个线程，发送1条命令后等待回复再发下1条，延迟为发送到收到回复的时间。
+ * 延迟按微秒记入对数分桶的直方图：64微秒以下每微秒1格，之后每个2的幂区间分32格，分位数的误差不超过约3%，
+ * 范围覆盖任意long；最大值另外精确记录。统计时不分配内存。对局结束后关闭并开始新的一局
+ *
+ * 用法：LoadGenerator [--port P] [--connections C] [--sessions S] [--seconds T] [--size rows,columns,mines]
+ */
+public class LoadGenerator {
+
+    // 每个2的幂区间分成2^SUB_BUCKET_BITS格
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;
+    // 最大的long落在最后1格
+    private static final int HISTOGRAM_SIZE = bucket(Long.MAX_VALUE) + 1;
+
+    private static final class Client implements Callable<Client> {
+
+        private final int mPort;
+        private final int mSessionCount;
+        private final long mDeadline;
+        private final int mRowCount;
+        private final int mColumnCount;
+        private final int mMineTotal;
+        private final Random mRandom;
+
+        final long[] histogram = new long[HISTOGRAM_SIZE];
+        long maxMicros;
+        long commands;
+        long games;
+        long errors;
+
+        private BufferedReader mIn;
+        private Writer mOut;
+
+        Client(int port, int sessionCount, long deadline, int rowCount, int columnCount, int mineTotal, long seed) {
+            mPort = port;
+            mSessionCount = sessionCount;
+            mDeadline = deadline;
+            mRowCount = rowCount;
+            mColumnCount = columnCount;
+            mMineTotal = mineTotal;
+            mRandom = new Random(seed);
+        }
+
+        @Override
+        public Client call() throws IOException {
+            Socket socket = new Socket(InetAddress.getLoopbackAddress(), mPort);
+            try {
+                socket.setTcpNoDelay(true);
+                mIn = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.US_ASCII));
+                mOut = new BufferedWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.US_ASCII));
+
+                long[] sessions = new long[mSessionCount];
+                for (int i = 0; i < mSessionCount; i++) {
+                    sessions[i] = newGame();
+                }
+                int cellCount = mRowCount * mColumnCount;
+                while (System.nanoTime() < mDeadline) {
+                    int i = mRandom.nextInt(mSessionCount);
+                    int cell = mRandom.nextInt(cellCount);
+                    int kind = mRandom.nextInt(10);
+                    String command = kind < 7 ? "OPEN " : kind < 9 ? "FLAG " : "CHORD ";
+                    String reply = send(command + sessions[i] + " " + cell);
+                    if (!reply.startsWith("OK")) {
+                        errors++;
+                        continue;
+                    }
+                    // 回复的最后1项是游戏状态，不是0表示已结束
+                    if (reply.charAt(reply.length() - 1) != '0') {
+                        send("CLOSE " + sessions[i]);
+                        sessions[i] = newGame();
+                    }
+                }
+                for (long session : sessions) {
+                    send("CLOSE " + session);
+                }
+            } finally {
+                socket.close();
+            }
+            return this;
+        }
+
+        private long newGame() throws IOException {
+            games++;
+            String reply = send("NEW " + mRowCount + " " + mColumnCount + " " + mMineTotal + " " + mRandom.nextLong());
+            if (!reply.startsWith("OK ")) {
+                throw new IOException("NEW failed: " + reply);
+            }
+            return Long.parseLong(reply.substring(3));
+        }
+
+        private String send(String command) throws IOException {
+            long start = System.nanoTime();
+            mOut.write(command);
+            mOut.write('\n');
+            mOut.flush();
+            String reply = mIn.readLine();
+            if (reply == null) {
+                throw new IOException("server closed connection");
+            }
+            long micros = (System.nanoTime() - start) / 1000;
+            histogram[bucket(micros)]++;
+            if (micros > maxMicros) {
+                maxMicros = micros;
+            }
+            commands++;
+            return reply;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        int port = GameServer.DEFAULT_PORT;
+        int connections = Runtime.getRuntime().availableProcessors() * 4;
+        int sessions = 16;
+        int seconds = 10;
+        int rowCount = 16;
+        int columnCount = 30;
+        int mineTotal = 99;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("missing value for " + arg);
+                return;
+            }
+            String value = args[++i];
+            if ("--port".equals(arg)) {
+                port = Integer.parseInt(value);
+            } else if ("--connections".equals(arg)) {
+                connections = Integer.parseInt(value);
+            } else if ("--sessions".equals(arg)) {
+                sessions = Integer.parseInt(value);
+            } else if ("--seconds".equals(arg)) {
+                seconds = Integer.parseInt(value);
+            } else if ("--size".equals(arg)) {
+                String[] size = value.split(",");
+                if (size.length != 3) {
+                    usage("size must be rows,columns,mines");
+                    return;
+                }
+                rowCount = Integer.parseInt(size[0]);
+                columnCount = Integer.parseInt(size[1]);
+                mineTotal = Integer.parseInt(size[2]);
+            } else {
+                usage("unknown option " + arg);
+                return;
+            }
+        }
+        if (connections <= 0 || sessions <= 0 || seconds <= 0) {
+            usage("connections, sessions and seconds must be positive");
+            return;
+        }
+
+        System.out.println(String.format(Locale.US, "connections %d, sessions %d, board %d rows x %d columns/%d, %ds",
+                connections, connections * sessions, rowCount, columnCount, mineTotal, seconds));
+        ExecutorService executor = Executors.newFixedThreadPool(connections);
+        try {
+            long start = System.nanoTime();
+            long deadline = start + seconds * 1000000000L;
+            List<Client> clients = new ArrayList<>(connections);
+            for (int i = 0; i < connections; i++) {
+                clients.add(new Client(port, sessions, deadline, rowCount, columnCount, mineTotal, i));
+            }
+            List<Future<Client>> futures = executor.invokeAll(clients);
+            double elapsed = (System.nanoTime() - start) / 1e9;
+
+            long[] histogram = new long[HISTOGRAM_SIZE];
+            long maxMicros = 0;
+            long commands = 0;
+            long games = 0;
+            long errors = 0;
+            for (Future<Client> future : futures) {
+                Client client = future.get();
+                for (int i = 0; i < HISTOGRAM_SIZE; i++) {
+                    histogram[i] += client.histogram[i];
+                }
+                maxMicros = Math.max(maxMicros, client.maxMicros);
+                commands += client.commands;
+                games += client.games;
+                errors += client.errors;
+            }
+            System.out.println(String.format(Locale.US,
+                    "commands %d  commands/s %.0f  games %d  errors %d  p50 %dus  p99 %dus  p99.9 %dus  max %dus",
+                    commands, commands / elapsed, games, errors, percentile(histogram, commands, 0.5),
+                    percentile(histogram, commands, 0.99), percentile(histogram, commands, 0.999), maxMicros));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    // 值所在的格：小于2 * SUB_BUCKET_COUNT时就是值本身，之后按最高位所在的2的幂区间再取接下来的SUB_BUCKET_BITS位
+    private static int bucket(long value) {
+        int shift = Math.max(0, 63 - SUB_BUCKET_BITS - Long.numberOfLeadingZeros(value));
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    // 格中最大的值
+    private static long bucketMax(int bucket) {
+        int shift = Math.max(0, bucket / SUB_BUCKET_COUNT - 1);
+        long base = bucket - (long) shift * SUB_BUCKET_COUNT;
+        return ((base + 1) << shift) - 1;
+    }
+
+    // 直方图中的分位数，单位微秒，取所在格的上界
+    private static long percentile(long[] histogram, long total, double percentile) {
+        long target = (long) Math.ceil(total * percentile);
+        long count = 0;
+        for (int i = 0; i < histogram.length; i++) {
+            count += histogram[i];
+            if (count >= target && count > 0) {
+                return bucketMax(i);
+            }
+        }
+        return bucketMax(histogram.length - 1);
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("usage: LoadGenerator [--port P] [--connections C] [--sessions S] [--seconds T]"
+                + " [--size rows,columns,mines]");
+    }
+
+}
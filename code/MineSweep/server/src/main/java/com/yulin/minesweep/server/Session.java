@@ -0,0 +1,77 @@
+package com.yulin.minesweep.server;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+
+/**
+ * 1局对局。Board不是线程安全的，同一局的命令在本对象上加锁依次执行，不同对局之间互不等待
+ */
+final class Session {
+
+    final long id;
+    private final Board mBoard;
+    // 最后一次执行命令的时间，清理长时间不用的对局
+    private volatile long mLastAccess;
+
+    Session(long id, Board board) {
+        this.id = id;
+        mBoard = board;
+        mLastAccess = System.nanoTime();
+    }
+
+    /*
+    * 操作结果和操作后的游戏状态在同一次加锁中读出，其它连接对同一局的操作不会插在中间
+    * */
+
+    /**
+     * @return "本次打开的方格数 游戏状态"
+     */
+    synchronized String open(int index) {
+        touch();
+        int opened = mBoard.open(index);
+        return opened + " " + mBoard.getStatus();
+    }
+
+    /**
+     * @return "方格的新状态 游戏状态"，游戏已结束或序号越界时方格状态为-1
+     */
+    synchronized String toggleMark(int index) {
+        touch();
+        int state = mBoard.toggleMark(index);
+        return state + " " + mBoard.getStatus();
+    }
+
+    /**
+     * @return "本次打开的方格数 游戏状态"
+     */
+    synchronized String chord(int index) {
+        touch();
+        int opened = mBoard.chord(index);
+        return opened + " " + mBoard.getStatus();
+    }
+
+    /**
+     * 状态、已打开数和插旗数一起读出，保证是同一时刻的值
+     */
+    synchronized String describe() {
+        touch();
+        return mBoard.getStatus() + " " + mBoard.getOpenedCount() + " " + mBoard.getFlagCount();
+    }
+
+    /**
+     * @return {@link BoardCode}编码，用LOAD命令可以重新开始同一局
+     */
+    synchronized String code() {
+        touch();
+        return BoardCode.encode(mBoard);
+    }
+
+    long getLastAccess() {
+        return mLastAccess;
+    }
+
+    private void touch() {
+        mLastAccess = System.nanoTime();
+    }
+
+}
@@ -0,0 +1,89 @@
+package com.yulin.minesweep.server;
+
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按对局序号分片的对局表，每个分片1个HashMap和1把锁，不同分片的查找、创建、删除互不等待。
+ * 序号依次递增，按低位分片时各分片的对局数基本相同
+ */
+final class SessionMap {
+
+    private final HashMap<Long, Session>[] mShards;
+    private final int mMask;
+    private final AtomicLong mNextId = new AtomicLong(1);
+
+    /**
+     * @param shardCount 分片数，取不小于它的2的幂
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    SessionMap(int shardCount) {
+        int size = Integer.highestOneBit(Math.max(1, shardCount - 1)) << 1;
+        mShards = new HashMap[size];
+        for (int i = 0; i < size; i++) {
+            mShards[i] = new HashMap<>();
+        }
+        mMask = size - 1;
+    }
+
+    long nextId() {
+        return mNextId.getAndIncrement();
+    }
+
+    private HashMap<Long, Session> shard(long id) {
+        return mShards[(int) id & mMask];
+    }
+
+    void put(Session session) {
+        HashMap<Long, Session> shard = shard(session.id);
+        synchronized (shard) {
+            shard.put(session.id, session);
+        }
+    }
+
+    Session get(long id) {
+        HashMap<Long, Session> shard = shard(id);
+        synchronized (shard) {
+            return shard.get(id);
+        }
+    }
+
+    Session remove(long id) {
+        HashMap<Long, Session> shard = shard(id);
+        synchronized (shard) {
+            return shard.remove(id);
+        }
+    }
+
+    int size() {
+        int size = 0;
+        for (HashMap<Long, Session> shard : mShards) {
+            synchronized (shard) {
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+
+    /**
+     * 逐个分片删除lastAccess早于deadline的对局，每次只锁1个分片
+     * @return 删除的对局数
+     */
+    int evictIdle(long deadline) {
+        int count = 0;
+        for (HashMap<Long, Session> shard : mShards) {
+            synchronized (shard) {
+                Iterator<Session> it = shard.values().iterator();
+                while (it.hasNext()) {
+                    if (it.next().getLastAccess() < deadline) {
+                        it.remove();
+                        count++;
+                    }
+                }
+            }
+        }
+        return count;
+    }
+
+}
@@ -0,0 +1,244 @@
+package com.yulin.minesweep.simulator;
+
+import com.yulin.minesweep.engine.Board;
+import com.yulin.minesweep.engine.BoardCode;
+import com.yulin.minesweep.engine.SplitMix64;
+import com.yulin.minesweep.engine.solver.ProbabilityEngine;
+import com.yulin.minesweep.engine.solver.Solver;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 命令行对局模拟器：不需要界面，用{@link Board}和自带的求解器自动下棋，统计胜率、每局猜测次数和每秒对局数
+ *
+ * 每局从中心方格开始，能确定安全的方格全部翻开；没有时翻开是雷概率最小的方格，记为1次猜测。
+ * 第i局的种子由基础种子和i决定，结果和线程数无关，同样的参数总是得到同样的胜率。
+ * 每个线程的Board、Solver、ProbabilityEngine在对局之间复用，确定性推导的部分不分配内存。
+ *
+ * --board按{@link BoardCode}的编码重新生成1局，只下这1局并打印结果，用于复现分享的棋盘。
+ *
+ * 用法：Simulator [--games N] [--threads T] [--seed S] [--level beginner,intermediate,expert] [--board CODE]
+ */
+public class Simulator {
+
+    private static final long SEED_GAMMA = 0x9e3779b97f4a7c15L;
+
+    // 每个线程一次领取的对局数，减少争用
+    private static final int BATCH = 256;
+
+    private static final Level[] LEVELS = {
+            new Level("beginner", 9, 9, 10),
+            new Level("intermediate", 16, 16, 40),
+            new Level("expert", 16, 30, 99),
+    };
+
+    private static final class Level {
+
+        final String name;
+        final int rowCount;
+        final int columnCount;
+        final int mineTotal;
+
+        Level(String name, int rowCount, int columnCount, int mineTotal) {
+            this.name = name;
+            this.rowCount = rowCount;
+            this.columnCount = columnCount;
+            this.mineTotal = mineTotal;
+        }
+    }
+
+    /**
+     * 1个线程的对局状态和统计，对局之间复用
+     */
+    private static final class Worker implements Callable<Worker> {
+
+        private final Level mLevel;
+        private final long mSeed;
+        private final long mGames;
+        private final AtomicLong mNext;
+
+        private final Board mBoard;
+        private final Solver mSolver = new Solver();
+        private final ProbabilityEngine mProbabilityEngine = new ProbabilityEngine();
+        private final int mFirstIndex;
+
+        long games;
+        long wins;
+        long guesses;
+
+        Worker(Level level, long seed, long games, AtomicLong next) {
+            mLevel = level;
+            mSeed = seed;
+            mGames = games;
+            mNext = next;
+            mBoard = new Board(level.rowCount, level.columnCount, level.mineTotal, seed);
+            mFirstIndex = mBoard.getIndex(level.rowCount / 2, level.columnCount / 2);
+        }
+
+        @Override
+        public Worker call() {
+            while (true) {
+                long start = mNext.getAndAdd(BATCH);
+                if (start >= mGames) {
+                    return this;
+                }
+                long end = Math.min(start + BATCH, mGames);
+                for (long i = start; i < end; i++) {
+                    play(SplitMix64.mix64(mSeed + i * SEED_GAMMA));
+                }
+            }
+        }
+
+        private void play(long seed) {
+            mBoard.reset(seed);
+            play(mBoard, mFirstIndex);
+        }
+
+        /**
+         * 下完1局
+         * @param firstIndex 第1次翻开的方格
+         */
+        void play(Board board, int firstIndex) {
+            board.open(firstIndex);
+            while (board.getStatus() == Board.STATUS_PLAYING) {
+                mSolver.solveStep(board);
+                int count = mSolver.getSafeCellCount();
+                if (count > 0) {
+                    int[] safeCells = mSolver.getSafeCells();
+                    for (int i = 0; i < count; i++) {
+                        board.open(safeCells[i]);
+                    }
+                } else {
+                    guesses++;
+                    board.open(safestCell(board));
+                }
+            }
+            games++;
+            if (board.getStatus() == Board.STATUS_WON) {
+                wins++;
+            }
+        }
+
+        private int safestCell(Board board) {
+            double[] probabilities = mProbabilityEngine.compute(board);
+            int best = -1;
+            for (int i = 0; i < board.getCellCount(); i++) {
+                if (board.getState(i) == Board.STATE_IDLE && (best < 0 || probabilities[i] < probabilities[best])) {
+                    best = i;
+                }
+            }
+            return best;
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        long games = 100000;
+        int threads = Runtime.getRuntime().availableProcessors();
+        long seed = 0;
+        String levels = null;
+        String code = null;
+        for (int i = 0; i < args.length; i++) {
+            String arg = args[i];
+            if (i + 1 >= args.length) {
+                usage("missing value for " + arg);
+                return;
+            }
+            String value = args[++i];
+            if ("--games".equals(arg)) {
+                games = Long.parseLong(value);
+            } else if ("--threads".equals(arg)) {
+                threads = Integer.parseInt(value);
+            } else if ("--seed".equals(arg)) {
+                seed = Long.parseLong(value);
+            } else if ("--level".equals(arg)) {
+                levels = value;
+            } else if ("--board".equals(arg)) {
+                code = value;
+            } else {
+                usage("unknown option " + arg);
+                return;
+            }
+        }
+        if (games <= 0 || threads <= 0) {
+            usage("games and threads must be positive");
+            return;
+        }
+
+        if (code != null) {
+            playCode(code);
+            return;
+        }
+
+        System.out.println(String.format(Locale.US, "games %d, threads %d, seed %d", games, threads, seed));
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            for (Level level : LEVELS) {
+                if (levels == null || ("," + levels + ",").contains("," + level.name + ",")) {
+                    run(executor, threads, level, games, seed);
+                }
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private static void run(ExecutorService executor, int threads, Level level, long games, long seed)
+            throws Exception {
+        AtomicLong next = new AtomicLong();
+        List<Worker> workers = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            workers.add(new Worker(level, seed, games, next));
+        }
+
+        long start = System.nanoTime();
+        List<Future<Worker>> futures = executor.invokeAll(workers);
+        long wins = 0;
+        long guesses = 0;
+        long played = 0;
+        for (Future<Worker> future : futures) {
+            Worker worker = future.get();
+            wins += worker.wins;
+            guesses += worker.guesses;
+            played += worker.games;
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.println(String.format(Locale.US,
+                "%-12s %dx%d/%d  games %d  win %.4f  guesses/game %.3f  games/s %.0f  time %.2fs",
+                level.name, level.columnCount, level.rowCount, level.mineTotal, played,
+                (double) wins / played, (double) guesses / played, played / seconds, seconds));
+    }
+
+    // 下编码对应的1局，已经布雷时从原来第1次翻开的方格开始
+    private static void playCode(String code) {
+        Board board;
+        try {
+            board = BoardCode.decode(code);
+        } catch (IllegalArgumentException e) {
+            usage("bad board code: " + e.getMessage());
+            return;
+        }
+        Level level = new Level("code", board.getRowCount(), board.getColumnCount(), board.getMineTotal());
+        Worker worker = new Worker(level, 0, 0, new AtomicLong());
+        int firstIndex = board.getFirstIndex() >= 0 ? board.getFirstIndex()
+                : board.getIndex(level.rowCount / 2, level.columnCount / 2);
+        worker.play(board, firstIndex);
+        System.out.println(String.format(Locale.US, "%s %dx%d/%d  %s  guesses %d  opened %d",
+                BoardCode.encode(board), level.columnCount, level.rowCount, level.mineTotal,
+                board.getStatus() == Board.STATUS_WON ? "won" : "lost", worker.guesses, board.getOpenedCount()));
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("usage: Simulator [--games N] [--threads T] [--seed S] [--level beginner,intermediate,expert]"
+                + " [--board CODE]");
+    }
+
+}